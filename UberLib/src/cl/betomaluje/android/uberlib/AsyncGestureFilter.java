@@ -0,0 +1,272 @@
+package cl.betomaluje.android.uberlib;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import cl.betomaluje.android.uberlib.SimpleGestureFilter.SimpleGestureListener;
+import cl.betomaluje.android.uberlib.core.GestureRecognizer;
+import cl.betomaluje.android.uberlib.core.SwipeClassifier;
+import cl.betomaluje.android.uberlib.core.TouchEventQueue;
+import cl.betomaluje.android.uberlib.core.TouchEventRecord;
+
+/**
+ * Alternative to SimpleGestureFilter that recognizes the gestures on a
+ * background thread. onTouchEvent only copies the position, time, action and
+ * pointer id of the event into a preallocated record; the MotionEvent isn't
+ * modified nor dispatched again.
+ * <p>
+ * The results are posted back to the main thread coalesced: while a delivery
+ * is pending new results are merged into it (the last swipe wins), so a slow
+ * listener gets at most one call per kind of gesture per frame instead of a
+ * growing backlog during fast flings. The calls keep the order in which each
+ * kind of gesture was last recognized.</p>
+ * <p>
+ * If the worker falls behind and the queue fills up, the gesture that lost
+ * events is cancelled where they were lost instead of recognized from
+ * incomplete data.</p>
+ *
+ * @author Alberto Maluje
+ *
+ *         Usage: in your activity
+ *         mFilter = new AsyncGestureFilter(this, mySimpleGestureListener);
+ *
+ *         public boolean dispatchTouchEvent(MotionEvent me) {
+ *         		mFilter.onTouchEvent(me);
+ *         		return super.dispatchTouchEvent(me);
+ *         }
+ *
+ *         protected void onDestroy() {
+ *         		mFilter.release();
+ *         		super.onDestroy();
+ *         }
+ *
+ */
+public class AsyncGestureFilter {
+
+	private static final int GESTURE_SINGLE_TAP = 0;
+	private static final int GESTURE_DOUBLE_TAP = 1;
+	private static final int GESTURE_SWIPE = 2;
+
+	private final TouchEventQueue mQueue;
+	private final GestureRecognizer mRecognizer;
+
+	private final HandlerThread mThread;
+	private final Handler mWorkerHandler;
+	private final Handler mMainHandler;
+
+	private final SimpleGestureListener mListener;
+
+	private volatile boolean mRunning = true;
+
+	/** True once release() stopped the worker thread */
+	private volatile boolean mReleased = false;
+
+	/**
+	 * True if events were lost and the CANCEL that resets the recognizer
+	 * didn't fit in the queue yet. Only used from the main thread.
+	 */
+	private boolean mCancelPending = false;
+
+	/** True while mDrain is waiting on the worker thread */
+	private final AtomicBoolean mDrainPosted = new AtomicBoolean();
+
+	/** Results waiting to be delivered, guarded by mPendingLock */
+	private final Object mPendingLock = new Object();
+	private boolean mPendingPosted = false;
+	private int mPendingSwipe = SwipeClassifier.SWIPE_NONE;
+
+	/** Kinds of gesture pending, from the least to the most recent */
+	private final int[] mPendingOrder = new int[3];
+	private int mPendingCount = 0;
+
+	/** Copy of mPendingOrder for mDeliver, on the main thread */
+	private final int[] mDeliverOrder = new int[3];
+
+	/**
+	 * Feeds the queued events to the recognizer, on the worker thread
+	 */
+	private final Runnable mDrain = new Runnable() {
+
+		@Override
+		public void run() {
+			mDrainPosted.set(false);
+
+			// a lost event is followed by a CANCEL in the queue, which resets
+			// the recognizer at the right place
+			TouchEventRecord record;
+			while ((record = mQueue.peek()) != null) {
+				mRecognizer.onTouchEvent(record);
+				mQueue.remove();
+			}
+		}
+	};
+
+	/**
+	 * Delivers the pending results, on the main thread
+	 */
+	private final Runnable mDeliver = new Runnable() {
+
+		@Override
+		public void run() {
+			final int count, swipe;
+			synchronized (mPendingLock) {
+				count = mPendingCount;
+				swipe = mPendingSwipe;
+				System.arraycopy(mPendingOrder, 0, mDeliverOrder, 0, count);
+				mPendingCount = 0;
+				mPendingSwipe = SwipeClassifier.SWIPE_NONE;
+				mPendingPosted = false;
+			}
+
+			for (int i = 0; i < count; i++) {
+				switch (mDeliverOrder[i]) {
+				case GESTURE_SINGLE_TAP:
+					mListener.onSingleTap();
+					break;
+				case GESTURE_DOUBLE_TAP:
+					mListener.onDoubleTap();
+					break;
+				default:
+					mListener.onSwipe(swipe);
+					break;
+				}
+			}
+		}
+	};
+
+	/**
+	 * Collects the results on the worker thread
+	 */
+	private final GestureRecognizer.Listener mResults = new GestureRecognizer.SimpleListener() {
+
+		@Override
+		public void onSwipe(int direction, int pointers) {
+			synchronized (mPendingLock) {
+				mPendingSwipe = direction;
+				postDeliver(GESTURE_SWIPE);
+			}
+		}
+
+		@Override
+		public void onDoubleTap() {
+			synchronized (mPendingLock) {
+				postDeliver(GESTURE_DOUBLE_TAP);
+			}
+		}
+
+		@Override
+		public void onSingleTap() {
+			synchronized (mPendingLock) {
+				postDeliver(GESTURE_SINGLE_TAP);
+			}
+		}
+
+		/**
+		 * Moves the kind of gesture to the end of the pending ones and posts
+		 * the delivery if it isn't yet
+		 */
+		private void postDeliver(int gesture) {
+			int i = 0;
+			while (i < mPendingCount && mPendingOrder[i] != gesture)
+				i++;
+			if (i < mPendingCount) {
+				System.arraycopy(mPendingOrder, i + 1, mPendingOrder, i,
+						mPendingCount - i - 1);
+				mPendingCount--;
+			}
+			mPendingOrder[mPendingCount++] = gesture;
+
+			if (!mPendingPosted) {
+				mPendingPosted = true;
+				mMainHandler.post(mDeliver);
+			}
+		}
+	};
+
+	/**
+	 * @param context
+	 *            : the context, for the touch slop of the device
+	 * @param listener
+	 *            : the listener, called on the main thread
+	 */
+	public AsyncGestureFilter(Context context, SimpleGestureListener listener) {
+		if (listener == null)
+			throw new NullPointerException("Listener can't be null");
+
+		mListener = listener;
+		mQueue = new TouchEventQueue();
+		mRecognizer = new GestureRecognizer(mResults, context.getResources()
+				.getDisplayMetrics().density);
+
+		ViewConfiguration configuration = ViewConfiguration.get(context);
+		mRecognizer.setTouchSlop(configuration.getScaledTouchSlop());
+		mRecognizer.setDoubleTapSlop(configuration.getScaledDoubleTapSlop());
+		mRecognizer.setLongPressTimeout(ViewConfiguration.getLongPressTimeout());
+		mRecognizer.setDoubleTapTimeout(ViewConfiguration.getDoubleTapTimeout());
+
+		mThread = new HandlerThread("AsyncGestureFilter");
+		mThread.start();
+		mWorkerHandler = new Handler(mThread.getLooper());
+		mMainHandler = new Handler(Looper.getMainLooper());
+	}
+
+	/**
+	 * Queues the event for recognition. It doesn't modify the event.
+	 *
+	 * @param event
+	 *            : the event, from the main thread
+	 */
+	public void onTouchEvent(MotionEvent event) {
+		if (!mRunning)
+			return;
+
+		// after lost events the gesture is cancelled before any other event,
+		// the ones that come until the CANCEL fits are lost too
+		if (mCancelPending) {
+			if (mQueue.add(TouchEventRecord.ACTION_CANCEL, 0, 0, 0,
+					event.getEventTime()))
+				mCancelPending = false;
+		}
+
+		if (!mCancelPending && !TouchEvents.copy(event, mQueue))
+			mCancelPending = !mQueue.add(TouchEventRecord.ACTION_CANCEL, 0,
+					0, 0, event.getEventTime());
+
+		if (mDrainPosted.compareAndSet(false, true)
+				&& !mWorkerHandler.post(mDrain))
+			mDrainPosted.set(false);
+	}
+
+	/**
+	 * Stops the worker thread, the filter can't be used afterwards
+	 */
+	public void release() {
+		mReleased = true;
+		mRunning = false;
+		mThread.quit();
+		mMainHandler.removeCallbacks(mDeliver);
+	}
+
+	/**
+	 * Enables or disables the recognition. Once released it stays disabled.
+	 *
+	 * @param status
+	 *            : true to recognize the events
+	 */
+	public void setEnabled(boolean status) {
+		this.mRunning = status && !mReleased;
+	}
+
+	/**
+	 * Gets the recognizer to change its thresholds. It runs on the worker
+	 * thread, so change them before the first event.
+	 */
+	public GestureRecognizer getRecognizer() {
+		return mRecognizer;
+	}
+}
@@ -0,0 +1,136 @@
+package cl.betomaluje.android.uberlib;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+/**
+ * Runs a callback on the next display frame, at most once per frame however
+ * many times it's scheduled. From Jelly Bean on it's a Choreographer frame
+ * callback, aligned with the vsync; before, a message posted a frame period
+ * later. Scheduling doesn't allocate.
+ * <p>
+ * Create it and use it from the UI thread.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class FrameScheduler {
+
+	/** Delay of the frames before Jelly Bean, in milliseconds */
+	public static final int FALLBACK_FRAME_DELAY = 16;
+
+	/**
+	 * Interface for the frames
+	 */
+	public interface Callback {
+
+		/**
+		 * @param frameTimeNanos
+		 *            : when the frame started, in the clock of
+		 *            System.nanoTime()
+		 */
+		void doFrame(long frameTimeNanos);
+	}
+
+	private final Callback mCallback;
+
+	/** Choreographer callback, null before Jelly Bean */
+	private final ChoreographerFrame mChoreographerFrame;
+
+	private final Handler mHandler;
+	private final Runnable mFallbackFrame;
+
+	private boolean mScheduled = false;
+
+	/**
+	 * @param callback
+	 *            : what to run on the frames
+	 */
+	public FrameScheduler(Callback callback) {
+		if (callback == null)
+			throw new NullPointerException("Callback can't be null");
+
+		mCallback = callback;
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			mChoreographerFrame = new ChoreographerFrame(this);
+			mHandler = null;
+			mFallbackFrame = null;
+		} else {
+			mChoreographerFrame = null;
+			mHandler = new Handler();
+			mFallbackFrame = new Runnable() {
+
+				@Override
+				public void run() {
+					doFrame(SystemClock.uptimeMillis() * 1000000);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Runs the callback on the next frame, unless it's already scheduled
+	 */
+	public void schedule() {
+		if (mScheduled)
+			return;
+
+		mScheduled = true;
+		if (mChoreographerFrame != null)
+			mChoreographerFrame.post();
+		else
+			mHandler.postDelayed(mFallbackFrame, FALLBACK_FRAME_DELAY);
+	}
+
+	/**
+	 * Removes the scheduled frame, if any
+	 */
+	public void cancel() {
+		if (!mScheduled)
+			return;
+
+		mScheduled = false;
+		if (mChoreographerFrame != null)
+			mChoreographerFrame.remove();
+		else
+			mHandler.removeCallbacks(mFallbackFrame);
+	}
+
+	public boolean isScheduled() {
+		return mScheduled;
+	}
+
+	private void doFrame(long frameTimeNanos) {
+		mScheduled = false;
+		mCallback.doFrame(frameTimeNanos);
+	}
+
+	/**
+	 * The Choreographer callback, in its own class so older versions never
+	 * load Choreographer
+	 */
+	private static class ChoreographerFrame implements
+			Choreographer.FrameCallback {
+
+		private final FrameScheduler mScheduler;
+
+		ChoreographerFrame(FrameScheduler scheduler) {
+			mScheduler = scheduler;
+		}
+
+		void post() {
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		void remove() {
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			mScheduler.doFrame(frameTimeNanos);
+		}
+	}
+}
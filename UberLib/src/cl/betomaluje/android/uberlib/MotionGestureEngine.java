@@ -0,0 +1,151 @@
+package cl.betomaluje.android.uberlib;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import cl.betomaluje.android.uberlib.core.DoubleTapMotionDetector;
+import cl.betomaluje.android.uberlib.core.FlipMotionDetector;
+import cl.betomaluje.android.uberlib.core.MotionDetector;
+import cl.betomaluje.android.uberlib.core.MotionProcessor;
+import cl.betomaluje.android.uberlib.core.ShakeMotionDetector;
+import cl.betomaluje.android.uberlib.core.TiltMotionDetector;
+
+/**
+ * Detects several motion gestures (shake, tilt, flip, double tap...) with a
+ * single accelerometer registration. Each sample is filtered once and handed
+ * to every detector added, and all the gestures arrive at one listener.
+ *
+ * @author Alberto Maluje
+ *
+ *         Usage:
+ *         mEngine = new MotionGestureEngine();
+ *         mEngine.addDetector(new ShakeMotionDetector());
+ *         mEngine.addDetector(new FlipMotionDetector());
+ *         mEngine.setOnMotionGestureListener(new MotionGestureEngine.OnMotionGestureListener() {
+ *
+ *         		public void onMotionGesture(int gesture, long timestampNanos) {
+ *         			if (gesture == MotionProcessor.GESTURE_FACE_DOWN) {
+ *         				//MUTE HERE!
+ *         			}
+ *         		}
+ *         });
+ *
+ *         protected void onResume() {
+ *         		super.onResume();
+ *         		mEngine.register(mSensorManager, SensorManager.SENSOR_DELAY_UI);
+ *         }
+ *
+ *         protected void onPause() {
+ *         		mEngine.unregister(mSensorManager);
+ *         		super.onPause();
+ *         }
+ *
+ */
+public class MotionGestureEngine implements SensorEventListener {
+
+	/**
+	 * Interface for the motion gestures.
+	 */
+	public interface OnMotionGestureListener extends MotionProcessor.Listener {
+	}
+
+	/** The filtering and the detectors, kept free of Android */
+	private final MotionProcessor mProcessor = new MotionProcessor();
+
+	/**
+	 * Creates an engine without detectors
+	 */
+	public MotionGestureEngine() {
+	}
+
+	/**
+	 * Creates an engine with all the built-in detectors: shake, tilt, flip
+	 * and double tap
+	 *
+	 * @return the engine
+	 */
+	public static MotionGestureEngine withAllGestures() {
+		MotionGestureEngine engine = new MotionGestureEngine();
+		engine.addDetector(new ShakeMotionDetector());
+		engine.addDetector(new TiltMotionDetector());
+		engine.addDetector(new FlipMotionDetector());
+		engine.addDetector(new DoubleTapMotionDetector());
+		return engine;
+	}
+
+	/**
+	 * Registers the engine for the accelerometer
+	 *
+	 * @param sensorManager
+	 *            : the SensorManager
+	 * @param samplingPeriodUs
+	 *            : the rate of the samples, one of the SENSOR_DELAY_*
+	 *            constants or a period in microseconds
+	 * @return true if the accelerometer was registered
+	 */
+	public boolean register(SensorManager sensorManager, int samplingPeriodUs) {
+		Sensor accelerometer = sensorManager
+				.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+		if (accelerometer == null)
+			return false;
+
+		mProcessor.reset();
+		return sensorManager.registerListener(this, accelerometer,
+				samplingPeriodUs);
+	}
+
+	/**
+	 * Unregisters the engine
+	 *
+	 * @param sensorManager
+	 *            : the SensorManager
+	 */
+	public void unregister(SensorManager sensorManager) {
+		sensorManager.unregisterListener(this);
+	}
+
+	@Override
+	public void onSensorChanged(SensorEvent se) {
+		mProcessor.onSample(se.values[SensorManager.DATA_X],
+				se.values[SensorManager.DATA_Y],
+				se.values[SensorManager.DATA_Z], se.timestamp);
+	}
+
+	@Override
+	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+	}
+
+	/**
+	 * Adds a detector, it shares the filtered samples with the others
+	 *
+	 * @param detector
+	 *            : the detector
+	 */
+	public void addDetector(MotionDetector detector) {
+		mProcessor.addDetector(detector);
+	}
+
+	/**
+	 * Removes a detector
+	 *
+	 * @param detector
+	 *            : the detector
+	 * @return true if it was added
+	 */
+	public boolean removeDetector(MotionDetector detector) {
+		return mProcessor.removeDetector(detector);
+	}
+
+	public void setOnMotionGestureListener(OnMotionGestureListener listener) {
+		mProcessor.setListener(listener);
+	}
+
+	/**
+	 * Gets the processor, to feed it samples from somewhere else (a recorded
+	 * trace) or read the shared state
+	 */
+	public MotionProcessor getProcessor() {
+		return mProcessor;
+	}
+}
@@ -2,6 +2,8 @@ package cl.betomaluje.android.uberlib;
 
 import android.view.GestureDetector.SimpleOnGestureListener;
 import android.view.MotionEvent;
+import cl.betomaluje.android.uberlib.core.GestureRecognizer;
+import cl.betomaluje.android.uberlib.core.SwipeClassifier;
 import cl.betomaluje.android.uberlib.interfaces.GestureListener;
 import cl.betomaluje.android.uberlib.interfaces.GestureListener.Direction;
 
@@ -13,14 +15,63 @@ public class MyGestureDetector extends SimpleOnGestureListener {
 
 	private GestureListener listener;
 
+	/** Measures onFling, null unless it's set */
+	private TouchInstrumentation instrumentation;
+
+	/** The recognition, this class only adapts it to GestureDetector */
+	private final GestureRecognizer recognizer = new GestureRecognizer(
+			new GestureRecognizer.SimpleListener() {
+
+				@Override
+				public void onSwipe(int direction, int pointers) {
+					if (direction == SwipeClassifier.SWIPE_LEFT) {
+						// left swipe
+						listener.onSwipe(Direction.LEFT);
+					} else if (direction == SwipeClassifier.SWIPE_RIGHT) {
+						// right swipe
+						listener.onSwipe(Direction.RIGHT);
+					}
+				}
+			});
+
 	public MyGestureDetector(GestureListener l) {
 		this.listener = l;
+
+		recognizer.setSwipeMode(GestureRecognizer.SWIPE_MODE_HORIZONTAL);
+		recognizer.setSwipeMinDistance(SWIPE_MIN_DISTANCE);
+		recognizer.setSwipeMaxDistance(SWIPE_MAX_OFF_PATH);
+		recognizer.setSwipeMinVelocity(SWIPE_THRESHOLD_VELOCITY);
 	}
 
 	public void setGestureListener(GestureListener l) {
 		this.listener = l;
 	}
 
+	/**
+	 * Gets the recognizer behind this detector, the same one
+	 * SimpleGestureFilter uses, to change its thresholds
+	 */
+	public GestureRecognizer getRecognizer() {
+		return recognizer;
+	}
+
+	/**
+	 * Sets the instrumentation that measures each fling. The events aren't
+	 * recorded here, this class only gets the flings: record them where the
+	 * GestureDetector is fed (for example with the instrumentation of
+	 * TouchImageView).
+	 *
+	 * @param instrumentation
+	 *            : the instrumentation, null to stop measuring
+	 */
+	public void setInstrumentation(TouchInstrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public TouchInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
 	@Override
 	public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX,
 			float velocityY) {
@@ -29,22 +80,19 @@ public class MyGestureDetector extends SimpleOnGestureListener {
 			throw new NullPointerException(
 					"You must set a GestureListener object. Please use setGestureListener() method.");
 
-		try {
-			if (Math.abs(e1.getY() - e2.getY()) > SWIPE_MAX_OFF_PATH)
-				return false;
-			// right to left swipe
-			if (e1.getX() - e2.getX() > SWIPE_MIN_DISTANCE
-					&& Math.abs(velocityX) > SWIPE_THRESHOLD_VELOCITY) {
-				// left swipe
-				listener.onSwipe(Direction.LEFT);
-			} else if (e2.getX() - e1.getX() > SWIPE_MIN_DISTANCE
-					&& Math.abs(velocityX) > SWIPE_THRESHOLD_VELOCITY) {
-				// right swipe
-				listener.onSwipe(Direction.RIGHT);
-			}
-		} catch (Exception e) {
-			// nothing
-		}
+		// GestureDetector can give no down event when it missed it
+		if (e1 == null || e2 == null)
+			return false;
+
+		final TouchInstrumentation instrumentation = this.instrumentation;
+		final long start = instrumentation == null ? 0 : instrumentation
+				.begin();
+
+		recognizer.onFling(e1.getX(), e1.getY(), e2.getX(), e2.getY(),
+				velocityX, velocityY);
+
+		if (instrumentation != null)
+			instrumentation.end(start);
 		return false;
 	}
 
@@ -53,4 +101,4 @@ public class MyGestureDetector extends SimpleOnGestureListener {
 		// TODO Auto-generated method stub
 		return true;
 	}
-}
\ No newline at end of file
+}
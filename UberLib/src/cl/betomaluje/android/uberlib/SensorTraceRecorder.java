@@ -0,0 +1,154 @@
+package cl.betomaluje.android.uberlib;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import cl.betomaluje.android.uberlib.core.SensorTrace;
+import cl.betomaluje.android.uberlib.core.SensorTraceWriter;
+import cl.betomaluje.android.uberlib.core.ShakeReplay;
+
+/**
+ * Records the raw accelerometer samples to a file, to replay them later
+ * off-device with {@link SensorTrace} and {@link ShakeReplay} and tune the
+ * shake detection against real streams.
+ *
+ * @author Alberto Maluje
+ *
+ *         Usage:
+ *         mRecorder = new SensorTraceRecorder();
+ *         mRecorder.start(mSensorManager, new File(getExternalFilesDir(null),
+ *         "shake.trace"), SensorManager.SENSOR_DELAY_UI);
+ *
+ *         and when done:
+ *         mRecorder.stop(mSensorManager);
+ *
+ */
+public class SensorTraceRecorder implements SensorEventListener {
+
+	private static final String TAG = "SensorTraceRecorder";
+
+	/** Thread receiving the samples, so the writes never block the UI */
+	private HandlerThread mThread;
+
+	private Handler mHandler;
+
+	private SensorTraceWriter mWriter;
+
+	/** First error writing the file, the recording stops there */
+	private volatile IOException mError;
+
+	/**
+	 * Starts recording the accelerometer
+	 *
+	 * @param sensorManager
+	 *            : the SensorManager
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @param samplingPeriodUs
+	 *            : the rate of the samples, one of the SENSOR_DELAY_*
+	 *            constants or a period in microseconds
+	 * @return true if the accelerometer was registered
+	 * @throws IOException
+	 *             if the file can't be created
+	 */
+	public boolean start(SensorManager sensorManager, File file,
+			int samplingPeriodUs) throws IOException {
+		Sensor accelerometer = sensorManager
+				.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+		if (accelerometer == null || mWriter != null)
+			return false;
+
+		mWriter = new SensorTraceWriter(file);
+		mError = null;
+
+		mThread = new HandlerThread(TAG);
+		mThread.start();
+
+		mHandler = new Handler(mThread.getLooper());
+
+		boolean registered = sensorManager.registerListener(this,
+				accelerometer, samplingPeriodUs, mHandler);
+		if (!registered)
+			stop(sensorManager);
+
+		return registered;
+	}
+
+	/**
+	 * Stops recording and closes the file
+	 *
+	 * @param sensorManager
+	 *            : the SensorManager
+	 * @throws IOException
+	 *             if the file couldn't be written
+	 */
+	public void stop(SensorManager sensorManager) throws IOException {
+		sensorManager.unregisterListener(this);
+
+		if (mThread == null)
+			return;
+
+		// let the samples already queued be written before closing
+		final HandlerThread thread = mThread;
+		mHandler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				thread.quit();
+			}
+		});
+		try {
+			mThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mThread = null;
+		mHandler = null;
+
+		SensorTraceWriter writer = mWriter;
+		mWriter = null;
+		writer.close();
+
+		if (mError != null)
+			throw mError;
+	}
+
+	@Override
+	public void onSensorChanged(SensorEvent se) {
+		SensorTraceWriter writer = mWriter;
+		if (writer == null || mError != null)
+			return;
+
+		try {
+			writer.write(se.timestamp, se.values[SensorManager.DATA_X],
+					se.values[SensorManager.DATA_Y],
+					se.values[SensorManager.DATA_Z]);
+		} catch (IOException e) {
+			Log.e(TAG, "Couldn't write the sample, recording stopped", e);
+			mError = e;
+		}
+	}
+
+	@Override
+	public void onAccuracyChanged(Sensor sensor, int accuracy) {
+	}
+
+	/**
+	 * Gets the number of samples recorded so far
+	 */
+	public long getCount() {
+		SensorTraceWriter writer = mWriter;
+		return writer == null ? 0 : writer.getCount();
+	}
+
+	public boolean isRecording() {
+		return mWriter != null;
+	}
+}
@@ -4,6 +4,14 @@ import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import cl.betomaluje.android.uberlib.core.BaseShakeDetector;
+import cl.betomaluje.android.uberlib.core.RingBufferShakeDetector;
+import cl.betomaluje.android.uberlib.core.ShakeDetector;
+import cl.betomaluje.android.uberlib.core.SimpleShakeDetector;
 
 /**
  * Listener that detects shake gesture.
@@ -41,52 +49,140 @@ import android.hardware.SensorManager;
  *           	super.onStop();
  *         }
  * 
+ *         To save battery on long sessions, use the batched mode instead:
+ *         the samples are processed on a background thread, in bursts
+ *         delivered by the sensor FIFO (KitKat and later), and only onShake
+ *         and onStopShake are posted to the main thread:
+ * 		   protected void onResume() { 
+ * 				super.onResume();
+ *           	mSensorListener.registerBatched(mSensorManager,
+ *           	SensorManager.SENSOR_DELAY_UI, 500000);
+ *         }
+ *           
+ * 		   protected void onPause() {
+ *           	mSensorListener.unregisterBatched(mSensorManager);
+ *           	super.onStop();
+ *         }
+ * 
  */
 public class ShakeEventListener implements SensorEventListener {
 
-	/** Minimum movement force to consider. */
-	private int MIN_FORCE = 10;
+	/** Default number of samples buffered in the batched mode. */
+	public static final int DEFAULT_BATCH_SIZE = 256;
 
-	/**
-	 * Minimum times in a shake gesture that the direction of movement needs to
-	 * change.
-	 */
-	private int MIN_DIRECTION_CHANGE = 3;
+	/** The detection logic, kept free of Android so it can run on a JVM. */
+	private final BaseShakeDetector mDetector;
+
+	/** OnShakeListener that is called when shake is detected. */
+	private OnShakeListener mShakeListener;
+
+	/** True while registered with registerBatched. */
+	private volatile boolean mBatched = false;
+
+	/** Thread receiving the sensor events in the batched mode. */
+	private HandlerThread mSensorThread;
+
+	private Handler mSensorHandler;
+
+	private Handler mMainHandler;
 
-	/** Maximum pause between movements. */
-	private int MAX_PAUSE_BETWEEN_DIRECTION_CHANGE = 200;
+	/** Samples of the current burst, as x, y, z. */
+	private final float[] mBatch;
 
-	/** Maximum allowed time for shake gesture. */
-	private int MAX_TOTAL_DURATION_OF_SHAKE = 400;
+	/** Timestamps of the current burst, in nanoseconds. */
+	private final long[] mBatchTimes;
 
-	/** Time when the gesture started. */
-	private long mFirstDirectionChangeTime = 0;
+	/** Number of samples in the current burst. */
+	private int mBatchCount = 0;
 
-	/** Time when the last movement started. */
-	private long mLastDirectionChangeTime;
+	/** True while mDrainBatch is waiting on the sensor thread. */
+	private boolean mDrainPosted = false;
 
 	/**
-	 * How many movements are considered so far. The number of shakes to be
-	 * done.
+	 * Processes the burst in one pass. It's posted when the first sample of a
+	 * burst arrives, so it runs after the whole burst has been delivered.
 	 */
-	private int mDirectionChangeCount = 0;
+	private final Runnable mDrainBatch = new Runnable() {
 
-	/** The last x position. */
-	private float lastX = 0;
+		@Override
+		public void run() {
+			mDrainPosted = false;
+			drainBatch();
+		}
+	};
 
-	/** The last y position. */
-	private float lastY = 0;
+	private final Runnable mPostShake = new Runnable() {
 
-	/** The last z position. */
-	private float lastZ = 0;
+		@Override
+		public void run() {
+			if (mShakeListener != null)
+				mShakeListener.onShake();
+		}
+	};
 
-	/** OnShakeListener that is called when shake is detected. */
-	private OnShakeListener mShakeListener;
+	private final Runnable mPostStopShake = new Runnable() {
+
+		@Override
+		public void run() {
+			if (mShakeListener != null)
+				mShakeListener.onStopShake();
+		}
+	};
+
+	/** Listener used in the batched mode, it hops to the main thread. */
+	private final ShakeDetector.Listener mMainThreadListener = new ShakeDetector.Listener() {
+
+		@Override
+		public void onShake() {
+			mMainHandler.post(mPostShake);
+		}
+
+		@Override
+		public void onStopShake() {
+			mMainHandler.post(mPostStopShake);
+		}
+	};
+
+	/**
+	 * Creates a listener with the original detection
+	 */
+	public ShakeEventListener() {
+		this(new SimpleShakeDetector());
+	}
+
+	/**
+	 * Creates a listener with the given detection, for example a
+	 * {@link RingBufferShakeDetector} to filter gravity and walking out
+	 * 
+	 * @param detector
+	 *            : the detector fed with the sensor samples
+	 */
+	public ShakeEventListener(BaseShakeDetector detector) {
+		this(detector, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates a listener with the given detection
+	 * 
+	 * @param detector
+	 *            : the detector fed with the sensor samples
+	 * @param batchSize
+	 *            : the number of samples buffered in the batched mode
+	 */
+	public ShakeEventListener(BaseShakeDetector detector, int batchSize) {
+		if (batchSize <= 0)
+			throw new IllegalArgumentException("Batch size must be positive: "
+					+ batchSize);
+
+		mDetector = detector;
+		mBatch = new float[batchSize * 3];
+		mBatchTimes = new long[batchSize];
+	}
 
 	/**
 	 * Interface for shake gesture.
 	 */
-	public interface OnShakeListener {
+	public interface OnShakeListener extends ShakeDetector.Listener {
 
 		/**
 		 * Called when shake gesture is detected.
@@ -101,6 +197,101 @@ public class ShakeEventListener implements SensorEventListener {
 
 	public void setOnShakeListener(OnShakeListener listener) {
 		mShakeListener = listener;
+		if (!mBatched)
+			mDetector.setListener(listener);
+	}
+
+	/**
+	 * Registers this listener for the accelerometer in the batched mode. The
+	 * samples are delivered to a dedicated thread instead of the UI one and,
+	 * from KitKat on, the sensor can keep them in its FIFO for up to
+	 * maxReportLatencyUs, waking the CPU much less often. Each burst is then
+	 * processed in one pass and only onShake and onStopShake are posted to
+	 * the main thread.
+	 * 
+	 * @param sensorManager
+	 *            : the SensorManager
+	 * @param samplingPeriodUs
+	 *            : the rate of the samples, one of the SENSOR_DELAY_*
+	 *            constants or a period in microseconds
+	 * @param maxReportLatencyUs
+	 *            : maximum time a sample can be delayed, in microseconds
+	 * @return true if the accelerometer was registered
+	 */
+	public boolean registerBatched(SensorManager sensorManager,
+			int samplingPeriodUs, int maxReportLatencyUs) {
+		Sensor accelerometer = sensorManager
+				.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+		if (accelerometer == null || mBatched)
+			return false;
+
+		mSensorThread = new HandlerThread("ShakeEventListener");
+		mSensorThread.start();
+		mSensorHandler = new Handler(mSensorThread.getLooper());
+		mMainHandler = new Handler(Looper.getMainLooper());
+
+		mBatchCount = 0;
+		mDrainPosted = false;
+		mDetector.reset();
+		mDetector.setListener(mMainThreadListener);
+		mBatched = true;
+
+		boolean registered;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+			registered = sensorManager.registerListener(this, accelerometer,
+					samplingPeriodUs, maxReportLatencyUs, mSensorHandler);
+		else
+			registered = sensorManager.registerListener(this, accelerometer,
+					samplingPeriodUs, mSensorHandler);
+
+		if (!registered)
+			unregisterBatched(sensorManager);
+
+		return registered;
+	}
+
+	/**
+	 * Unregisters a listener registered with registerBatched and stops its
+	 * thread, waiting for the burst it's processing
+	 * 
+	 * @param sensorManager
+	 *            : the SensorManager
+	 */
+	public void unregisterBatched(SensorManager sensorManager) {
+		sensorManager.unregisterListener(this);
+
+		if (mSensorThread != null) {
+			// the burst being drained still calls the detector, it must end
+			// before the detector gets mShakeListener or onShake would run
+			// on the sensor thread
+			if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2)
+				mSensorThread.quitSafely();
+			else
+				mSensorThread.quit();
+
+			boolean interrupted = false;
+			while (true) {
+				try {
+					mSensorThread.join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+
+			mSensorThread = null;
+			mSensorHandler = null;
+		}
+		// after the join, so the last burst can't post anything
+		if (mMainHandler != null) {
+			mMainHandler.removeCallbacks(mPostShake);
+			mMainHandler.removeCallbacks(mPostStopShake);
+		}
+
+		mBatched = false;
+		mDetector.setListener(mShakeListener);
 	}
 
 	@Override
@@ -110,61 +301,41 @@ public class ShakeEventListener implements SensorEventListener {
 		float y = se.values[SensorManager.DATA_Y];
 		float z = se.values[SensorManager.DATA_Z];
 
-		// calculate movement
-		float totalMovement = Math.abs(x + y + z - lastX - lastY - lastZ);
-
-		if (totalMovement > MIN_FORCE) {
-
-			// get time
-			long now = System.currentTimeMillis();
-
-			// store first movement time
-			if (mFirstDirectionChangeTime == 0) {
-				mFirstDirectionChangeTime = now;
-				mLastDirectionChangeTime = now;
-			}
-
-			// check if the last movement was not long ago
-			long lastChangeWasAgo = now - mLastDirectionChangeTime;
-			if (lastChangeWasAgo < MAX_PAUSE_BETWEEN_DIRECTION_CHANGE) {
-
-				// store movement data
-				mLastDirectionChangeTime = now;
-				mDirectionChangeCount++;
+		// the time the sample was taken (monotonic), not when it arrived
+		if (!mBatched) {
+			mDetector.onSample(x, y, z, se.timestamp);
+			return;
+		}
 
-				// store last sensor data
-				lastX = x;
-				lastY = y;
-				lastZ = z;
+		if (mBatchCount == mBatchTimes.length)
+			drainBatch();
 
-				// check how many movements are so far
-				if (mDirectionChangeCount >= MIN_DIRECTION_CHANGE) {
+		int index = mBatchCount * 3;
+		mBatch[index] = x;
+		mBatch[index + 1] = y;
+		mBatch[index + 2] = z;
+		mBatchTimes[mBatchCount] = se.timestamp;
+		mBatchCount++;
 
-					// check total duration
-					long totalDuration = now - mFirstDirectionChangeTime;
-					if (totalDuration < MAX_TOTAL_DURATION_OF_SHAKE) {
-						mShakeListener.onShake();
-						resetShakeParameters();
-					}
-				}
-
-			} else {
-				resetShakeParameters();
-			}
+		if (!mDrainPosted && mSensorHandler != null) {
+			mDrainPosted = true;
+			mSensorHandler.post(mDrainBatch);
 		}
 	}
 
 	/**
-	 * Resets the shake parameters to their default values.
+	 * Feeds the buffered burst to the detector
 	 */
-	private void resetShakeParameters() {
-		mFirstDirectionChangeTime = 0;
-		mDirectionChangeCount = 0;
-		mLastDirectionChangeTime = 0;
-		lastX = 0;
-		lastY = 0;
-		lastZ = 0;
-		mShakeListener.onStopShake();
+	private void drainBatch() {
+		final float[] batch = mBatch;
+		final long[] times = mBatchTimes;
+		final int count = mBatchCount;
+
+		for (int i = 0, index = 0; i < count; i++, index += 3)
+			mDetector.onSample(batch[index], batch[index + 1],
+					batch[index + 2], times[i]);
+
+		mBatchCount = 0;
 	}
 
 	@Override
@@ -172,7 +343,7 @@ public class ShakeEventListener implements SensorEventListener {
 	}
 
 	public int getMinForce() {
-		return MIN_FORCE;
+		return mDetector.getMinForce();
 	}
 
 	/**
@@ -180,11 +351,11 @@ public class ShakeEventListener implements SensorEventListener {
 	 * @param minForce: the minimum force
 	 */
 	public void setMinForce(int minForce) {
-		MIN_FORCE = minForce;
+		mDetector.setMinForce(minForce);
 	}
 
 	public int getMinDirectionChange() {
-		return MIN_DIRECTION_CHANGE;
+		return mDetector.getMinDirectionChange();
 	}
 
 	/**
@@ -193,11 +364,11 @@ public class ShakeEventListener implements SensorEventListener {
 	 * @param minDirectionChange
 	 */
 	public void setMinDirectionChange(int minDirectionChange) {
-		MIN_DIRECTION_CHANGE = minDirectionChange;
+		mDetector.setMinDirectionChange(minDirectionChange);
 	}
 
 	public int getMaxPauseBetweenDirectionChange() {
-		return MAX_PAUSE_BETWEEN_DIRECTION_CHANGE;
+		return mDetector.getMaxPauseBetweenDirectionChange();
 	}
 
 	/** Sets the number of maximum pause between shakes
@@ -206,19 +377,19 @@ public class ShakeEventListener implements SensorEventListener {
 	 */
 	public void setMaxPauseBetweenDirectionChange(
 			int pause) {
-		MAX_PAUSE_BETWEEN_DIRECTION_CHANGE = pause;
+		mDetector.setMaxPauseBetweenDirectionChange(pause);
 	}
 
 	public int getMaxTotalDurationOfShake() {
-		return MAX_TOTAL_DURATION_OF_SHAKE;
+		return mDetector.getMaxTotalDurationOfShake();
 	}
 
 	public void setMaxTotalDurationOfShake(int maxTotalDurationOfShake) {
-		MAX_TOTAL_DURATION_OF_SHAKE = maxTotalDurationOfShake;
+		mDetector.setMaxTotalDurationOfShake(maxTotalDurationOfShake);
 	}
 
 	public int getmDirectionChangeCount() {
-		return mDirectionChangeCount;
+		return mDetector.getDirectionChangeCount();
 	}
 
 	/**
@@ -227,7 +398,7 @@ public class ShakeEventListener implements SensorEventListener {
 	 * @param mDirectionChangeCount
 	 */
 	public void setmDirectionChangeCount(int mDirectionChangeCount) {
-		this.mDirectionChangeCount = mDirectionChangeCount;
+		mDetector.setDirectionChangeCount(mDirectionChangeCount);
 	}
 
 }
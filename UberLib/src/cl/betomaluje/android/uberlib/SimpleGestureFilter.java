@@ -1,39 +1,131 @@
 package cl.betomaluje.android.uberlib;
 
 import android.app.Activity;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.view.GestureDetector;
 import android.view.GestureDetector.SimpleOnGestureListener;
 import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import cl.betomaluje.android.uberlib.core.FlingClassifier;
+import cl.betomaluje.android.uberlib.core.GestureRecognizer;
+import cl.betomaluje.android.uberlib.core.SwipeClassifier;
 
 public class SimpleGestureFilter extends SimpleOnGestureListener {
 
-	public final static int SWIPE_UP = 1;
-	public final static int SWIPE_DOWN = 2;
-	public final static int SWIPE_LEFT = 3;
-	public final static int SWIPE_RIGHT = 4;
+	public final static int SWIPE_UP = SwipeClassifier.SWIPE_UP;
+	public final static int SWIPE_DOWN = SwipeClassifier.SWIPE_DOWN;
+	public final static int SWIPE_LEFT = SwipeClassifier.SWIPE_LEFT;
+	public final static int SWIPE_RIGHT = SwipeClassifier.SWIPE_RIGHT;
+
+	// only with setVelocityTracking(true)
+	public final static int SWIPE_UP_LEFT = SwipeClassifier.SWIPE_UP_LEFT;
+	public final static int SWIPE_UP_RIGHT = SwipeClassifier.SWIPE_UP_RIGHT;
+	public final static int SWIPE_DOWN_LEFT = SwipeClassifier.SWIPE_DOWN_LEFT;
+	public final static int SWIPE_DOWN_RIGHT = SwipeClassifier.SWIPE_DOWN_RIGHT;
 
 	public final static int MODE_TRANSPARENT = 0;
 	public final static int MODE_SOLID = 1;
 	public final static int MODE_DYNAMIC = 2;
 
 	private final static int ACTION_FAKE = -13; // just an unlikely number
-	private int swipe_Min_Distance = 100;
-	private int swipe_Max_Distance = 500;
-	private int swipe_Min_Velocity = 100;
 
 	private int mode = MODE_DYNAMIC;
 	private boolean running = true;
 	private boolean tapIndicator = false;
 
+	/** True while an event is being recognized */
+	private boolean inTouchEvent = false;
+
 	private Activity context;
-	private GestureDetector detector;
 	private SimpleGestureListener listener;
 
+	/** Measures and records the events, null unless it's set */
+	private TouchInstrumentation instrumentation;
+
+	/** The recognition, this class only adapts it to MotionEvents */
+	private final GestureRecognizer recognizer;
+
+	/**
+	 * Gives the flings with the velocity of its VelocityTracker, unless the
+	 * least-squares velocity is on (see setLeastSquaresVelocity)
+	 */
+	private final GestureDetector detector;
+
+	private final Handler handler = new Handler();
+
+	/** Confirms the last single tap once no double tap can follow */
+	private final Runnable confirmTap = new Runnable() {
+
+		@Override
+		public void run() {
+			recognizer.onTimeout(SystemClock.uptimeMillis());
+		}
+	};
+
+	private final GestureRecognizer.Listener gestures = new GestureRecognizer.SimpleListener() {
+
+		@Override
+		public void onSwipe(int direction, int pointers) {
+			listener.onSwipe(direction);
+		}
+
+		@Override
+		public void onSingleTap() {
+			listener.onSingleTap();
+			tapIndicator = true;
+
+			handler.removeCallbacks(confirmTap);
+			handler.postDelayed(confirmTap, recognizer.getDoubleTapTimeout());
+		}
+
+		@Override
+		public void onDoubleTap() {
+			handler.removeCallbacks(confirmTap);
+			listener.onDoubleTap();
+		}
+
+		@Override
+		public void onSingleTapConfirmed() {
+			// a new touch already started, it takes the place of the
+			// ACTION_UP we owe
+			if (inTouchEvent)
+				return;
+
+			dispatchFakeUp(recognizer.getTapX(), recognizer.getTapY());
+		}
+	};
+
 	public SimpleGestureFilter(Activity context, SimpleGestureListener sgl) {
 
 		this.context = context;
-		this.detector = new GestureDetector(context, this);
 		this.listener = sgl;
+
+		this.recognizer = new GestureRecognizer(gestures, context
+				.getResources().getDisplayMetrics().density);
+		this.recognizer.setSwipeMinDistance(100);
+		this.recognizer.setSwipeMaxDistance(500);
+		this.recognizer.setSwipeMinVelocity(100);
+		this.recognizer.setTouchSlop(ViewConfiguration.get(context)
+				.getScaledTouchSlop());
+		this.recognizer.setDoubleTapSlop(ViewConfiguration.get(context)
+				.getScaledDoubleTapSlop());
+		this.recognizer.setLongPressTimeout(ViewConfiguration
+				.getLongPressTimeout());
+		this.recognizer.setDoubleTapTimeout(ViewConfiguration
+				.getDoubleTapTimeout());
+		// the four-way swipes keep the velocity of the GestureDetector
+		this.recognizer.setLeastSquaresVelocity(false);
+
+		this.detector = new GestureDetector(context,
+				new SimpleOnGestureListener() {
+
+					@Override
+					public boolean onFling(MotionEvent e1, MotionEvent e2,
+							float velocityX, float velocityY) {
+						return fling(e1, e2, velocityX, velocityY);
+					}
+				});
 	}
 
 	public void onTouchEvent(MotionEvent event) {
@@ -41,7 +133,26 @@ public class SimpleGestureFilter extends SimpleOnGestureListener {
 		if (!this.running)
 			return;
 
-		boolean result = this.detector.onTouchEvent(event);
+		// the fake ACTION_UP isn't a touch, it isn't recognized, measured
+		// nor recorded
+		final boolean fake = event.getAction() == ACTION_FAKE;
+		TouchInstrumentation instrumentation = this.instrumentation;
+		if (fake)
+			instrumentation = null;
+		final long start = instrumentation == null ? 0 : instrumentation
+				.begin(event);
+
+		boolean result = false;
+		if (!fake) {
+			this.inTouchEvent = true;
+			result = TouchEvents.feed(event, this.recognizer);
+			if (!this.recognizer.isLeastSquaresVelocity())
+				result |= this.detector.onTouchEvent(event);
+			this.inTouchEvent = false;
+		}
+
+		if (instrumentation != null)
+			instrumentation.end(start);
 
 		if (this.mode == MODE_SOLID)
 			event.setAction(MotionEvent.ACTION_CANCEL);
@@ -60,6 +171,113 @@ public class SimpleGestureFilter extends SimpleOnGestureListener {
 		// else just do nothing, it's Transparent
 	}
 
+	/**
+	 * Classifies a fling of the GestureDetector with the recognizer
+	 */
+	private boolean fling(MotionEvent e1, MotionEvent e2, float velocityX,
+			float velocityY) {
+		// the recognizer already classified it when the finger went up
+		if (this.recognizer.isLeastSquaresVelocity() || isVelocityTracking())
+			return false;
+
+		// GestureDetector can give no down event when it missed it
+		if (e1 == null || e2 == null)
+			return false;
+
+		return this.recognizer.onFling(e1.getX(), e1.getY(), e2.getX(),
+				e2.getY(), velocityX, velocityY) != SwipeClassifier.SWIPE_NONE;
+	}
+
+	private void dispatchFakeUp(float x, float y) {
+		if (this.mode != MODE_DYNAMIC)
+			return;
+
+		// we owe an ACTION_UP, so we fake an action which will be converted
+		// to an ACTION_UP later.
+		long now = SystemClock.uptimeMillis();
+		MotionEvent fake = MotionEvent.obtain(now, now, ACTION_FAKE, x, y, 0);
+		this.context.dispatchTouchEvent(fake);
+		fake.recycle();
+	}
+
+	/**
+	 * Classifies the four-way swipes with the least-squares velocity of the
+	 * recognizer, over the recent points of the finger, instead of the
+	 * VelocityTracker of a GestureDetector. AsyncGestureFilter always does.
+	 * 
+	 * @param enabled
+	 *            : true to enable it
+	 */
+	public void setLeastSquaresVelocity(boolean enabled) {
+		this.recognizer.setLeastSquaresVelocity(enabled);
+	}
+
+	public boolean isLeastSquaresVelocity() {
+		return this.recognizer.isLeastSquaresVelocity();
+	}
+
+	/**
+	 * Classifies the swipes with a least-squares velocity over the recent
+	 * points of every finger instead of the first and last events: diagonal
+	 * (SWIPE_UP_LEFT...) and multi-finger swipes are recognized, and the
+	 * thresholds are the ones of the FlingClassifier, in dp. The swipe
+	 * distance and velocity setters of this class don't apply then.
+	 * 
+	 * @param enabled
+	 *            : true to enable it
+	 */
+	public void setVelocityTracking(boolean enabled) {
+		this.recognizer
+				.setSwipeMode(enabled ? GestureRecognizer.SWIPE_MODE_VELOCITY
+						: GestureRecognizer.SWIPE_MODE_FOUR_WAY);
+	}
+
+	public boolean isVelocityTracking() {
+		return this.recognizer.getSwipeMode() == GestureRecognizer.SWIPE_MODE_VELOCITY;
+	}
+
+	/**
+	 * Gets the classifier of the velocity tracking, to change its thresholds
+	 * 
+	 * @return the classifier, null if the velocity tracking is off
+	 */
+	public FlingClassifier getFlingClassifier() {
+		return isVelocityTracking() ? this.recognizer.getFlingClassifier()
+				: null;
+	}
+
+	/**
+	 * Gets the number of fingers of the last swipe, with the velocity
+	 * tracking on (for example from onSwipe)
+	 */
+	public int getSwipePointerCount() {
+		return isVelocityTracking() ? this.recognizer.getFlingClassifier()
+				.getSwipePointerCount() : 1;
+	}
+
+	/**
+	 * Gets the recognizer behind this filter, the same one MyGestureDetector
+	 * and AsyncGestureFilter use
+	 */
+	public GestureRecognizer getRecognizer() {
+		return this.recognizer;
+	}
+
+	/**
+	 * Sets the instrumentation that measures the recognition of each event
+	 * and can record them
+	 * 
+	 * @param instrumentation
+	 *            : the instrumentation, null to stop measuring
+	 */
+	public void setInstrumentation(TouchInstrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public TouchInstrumentation getInstrumentation() {
+		return this.instrumentation;
+	}
+
 	public void setMode(int m) {
 		this.mode = m;
 	}
@@ -73,92 +291,80 @@ public class SimpleGestureFilter extends SimpleOnGestureListener {
 	}
 
 	public void setSwipeMaxDistance(int distance) {
-		this.swipe_Max_Distance = distance;
+		this.recognizer.setSwipeMaxDistance(distance);
 	}
 
 	public void setSwipeMinDistance(int distance) {
-		this.swipe_Min_Distance = distance;
+		this.recognizer.setSwipeMinDistance(distance);
 	}
 
 	public void setSwipeMinVelocity(int distance) {
-		this.swipe_Min_Velocity = distance;
+		this.recognizer.setSwipeMinVelocity(distance);
 	}
 
 	public int getSwipeMaxDistance() {
-		return this.swipe_Max_Distance;
+		return this.recognizer.getSwipeMaxDistance();
 	}
 
 	public int getSwipeMinDistance() {
-		return this.swipe_Min_Distance;
+		return this.recognizer.getSwipeMinDistance();
 	}
 
 	public int getSwipeMinVelocity() {
-		return this.swipe_Min_Velocity;
+		return this.recognizer.getSwipeMinVelocity();
 	}
 
+	/**
+	 * @deprecated the swipes are recognized from {@link #onTouchEvent}, this
+	 *             is only kept for the GestureDetectors fed by the caller
+	 */
+	@Deprecated
 	@Override
 	public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX,
 			float velocityY) {
-
-		final float xDistance = Math.abs(e1.getX() - e2.getX());
-		final float yDistance = Math.abs(e1.getY() - e2.getY());
-
-		if (xDistance > this.swipe_Max_Distance
-				|| yDistance > this.swipe_Max_Distance)
-			return false;
-
-		velocityX = Math.abs(velocityX);
-		velocityY = Math.abs(velocityY);
-		boolean result = false;
-
-		if (velocityX > this.swipe_Min_Velocity
-				&& xDistance > this.swipe_Min_Distance) {
-			if (e1.getX() > e2.getX()) // right to left
-				this.listener.onSwipe(SWIPE_LEFT);
-			else
-				this.listener.onSwipe(SWIPE_RIGHT);
-
-			result = true;
-		} else if (velocityY > this.swipe_Min_Velocity
-				&& yDistance > this.swipe_Min_Distance) {
-			if (e1.getY() > e2.getY()) // bottom to up
-				this.listener.onSwipe(SWIPE_UP);
-			else
-				this.listener.onSwipe(SWIPE_DOWN);
-
-			result = true;
-		}
-
-		return result;
+		return fling(e1, e2, velocityX, velocityY);
 	}
 
+	/**
+	 * @deprecated the taps are recognized from {@link #onTouchEvent}, this is
+	 *             only kept for the GestureDetectors fed by the caller
+	 */
+	@Deprecated
 	@Override
 	public boolean onSingleTapUp(MotionEvent e) {
-		this.listener.onSingleTap();
-		this.tapIndicator = true;
+		this.gestures.onSingleTap();
 		return true;
 	}
 
+	/**
+	 * @deprecated the taps are recognized from {@link #onTouchEvent}, this is
+	 *             only kept for the GestureDetectors fed by the caller
+	 */
+	@Deprecated
 	@Override
-	public boolean onDoubleTap(MotionEvent arg0) {
-		this.listener.onDoubleTap();
+	public boolean onDoubleTap(MotionEvent e) {
+		this.gestures.onDoubleTap();
 		return true;
 	}
 
+	/**
+	 * @deprecated the taps are recognized from {@link #onTouchEvent}, this is
+	 *             only kept for the GestureDetectors fed by the caller
+	 */
+	@Deprecated
 	@Override
-	public boolean onDoubleTapEvent(MotionEvent arg0) {
+	public boolean onDoubleTapEvent(MotionEvent e) {
 		return true;
 	}
 
+	/**
+	 * @deprecated the taps are recognized from {@link #onTouchEvent}, this is
+	 *             only kept for the GestureDetectors fed by the caller
+	 */
+	@Deprecated
 	@Override
-	public boolean onSingleTapConfirmed(MotionEvent arg0) {
-
-		if (this.mode == MODE_DYNAMIC) { // we owe an ACTION_UP, so we fake an
-			arg0.setAction(ACTION_FAKE); // action which will be converted to an
-											// ACTION_UP later.
-			this.context.dispatchTouchEvent(arg0);
-		}
-
+	public boolean onSingleTapConfirmed(MotionEvent e) {
+		dispatchFakeUp(e.getX(), e.getY());
 		return true;
 	}
 
@@ -0,0 +1,127 @@
+package cl.betomaluje.android.uberlib;
+
+import java.io.IOException;
+
+import android.view.MotionEvent;
+import cl.betomaluje.android.uberlib.core.GestureRecognizer;
+import cl.betomaluje.android.uberlib.core.TouchEventQueue;
+import cl.betomaluje.android.uberlib.core.TouchEventRecord;
+import cl.betomaluje.android.uberlib.core.TouchTraceWriter;
+
+/**
+ * Copies MotionEvents into the primitive events of the gesture recognition:
+ * one event per pointer for the moves, including the historical points
+ * batched into the MotionEvent, and one for the pointer of any other action.
+ * Actions that aren't touches (TouchEventRecord.isTouchAction) are ignored,
+ * their action index isn't valid.
+ *
+ * @author Alberto Maluje
+ */
+final class TouchEvents {
+
+	private TouchEvents() {
+	}
+
+	/**
+	 * Feeds a MotionEvent to a recognizer
+	 *
+	 * @return true if any of its events is part of a recognized gesture
+	 */
+	static boolean feed(MotionEvent event, GestureRecognizer recognizer) {
+		final int action = event.getActionMasked();
+		if (!TouchEventRecord.isTouchAction(action))
+			return false;
+
+		if (action != MotionEvent.ACTION_MOVE) {
+			final int index = event.getActionIndex();
+			return recognizer.onTouchEvent(action, event.getPointerId(index),
+					event.getX(index), event.getY(index),
+					event.getEventTime());
+		}
+
+		boolean handled = false;
+		final int pointers = event.getPointerCount();
+		final int history = event.getHistorySize();
+		for (int h = 0; h < history; h++) {
+			final long time = event.getHistoricalEventTime(h);
+			for (int p = 0; p < pointers; p++)
+				handled |= recognizer.onTouchEvent(
+						TouchEventRecord.ACTION_MOVE, event.getPointerId(p),
+						event.getHistoricalX(p, h),
+						event.getHistoricalY(p, h), time);
+		}
+		for (int p = 0; p < pointers; p++)
+			handled |= recognizer.onTouchEvent(TouchEventRecord.ACTION_MOVE,
+					event.getPointerId(p), event.getX(p), event.getY(p),
+					event.getEventTime());
+
+		return handled;
+	}
+
+	/**
+	 * Copies a MotionEvent into a queue
+	 *
+	 * @return false if the queue was full and events were lost
+	 */
+	static boolean copy(MotionEvent event, TouchEventQueue queue) {
+		final int action = event.getActionMasked();
+		if (!TouchEventRecord.isTouchAction(action))
+			return true;
+
+		if (action != MotionEvent.ACTION_MOVE) {
+			final int index = event.getActionIndex();
+			return queue.add(action, event.getPointerId(index),
+					event.getX(index), event.getY(index),
+					event.getEventTime());
+		}
+
+		boolean added = true;
+		final int pointers = event.getPointerCount();
+		final int history = event.getHistorySize();
+		for (int h = 0; h < history; h++) {
+			final long time = event.getHistoricalEventTime(h);
+			for (int p = 0; p < pointers; p++)
+				added &= queue.add(TouchEventRecord.ACTION_MOVE,
+						event.getPointerId(p), event.getHistoricalX(p, h),
+						event.getHistoricalY(p, h), time);
+		}
+		for (int p = 0; p < pointers; p++)
+			added &= queue.add(TouchEventRecord.ACTION_MOVE,
+					event.getPointerId(p), event.getX(p), event.getY(p),
+					event.getEventTime());
+
+		return added;
+	}
+
+	/**
+	 * Writes a MotionEvent to a trace
+	 *
+	 * @throws IOException
+	 */
+	static void write(MotionEvent event, TouchTraceWriter writer)
+			throws IOException {
+		final int action = event.getActionMasked();
+		if (!TouchEventRecord.isTouchAction(action))
+			return;
+
+		if (action != MotionEvent.ACTION_MOVE) {
+			final int index = event.getActionIndex();
+			writer.write(action, event.getPointerId(index), event.getX(index),
+					event.getY(index), event.getEventTime());
+			return;
+		}
+
+		final int pointers = event.getPointerCount();
+		final int history = event.getHistorySize();
+		for (int h = 0; h < history; h++) {
+			final long time = event.getHistoricalEventTime(h);
+			for (int p = 0; p < pointers; p++)
+				writer.write(TouchEventRecord.ACTION_MOVE,
+						event.getPointerId(p), event.getHistoricalX(p, h),
+						event.getHistoricalY(p, h), time);
+		}
+		for (int p = 0; p < pointers; p++)
+			writer.write(TouchEventRecord.ACTION_MOVE, event.getPointerId(p),
+					event.getX(p), event.getY(p), event.getEventTime());
+	}
+}
@@ -0,0 +1,172 @@
+package cl.betomaluje.android.uberlib;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.util.Log;
+import android.view.MotionEvent;
+import cl.betomaluje.android.uberlib.core.LatencyHistogram;
+import cl.betomaluje.android.uberlib.core.TouchTrace;
+import cl.betomaluje.android.uberlib.core.TouchTraceWriter;
+
+/**
+ * Opt-in instrumentation of a touch handler: it measures how long the handler
+ * takes per event in a {@link LatencyHistogram} and, while recording, writes
+ * the events it gets to a trace that {@link TouchReplayer} (or
+ * {@link TouchTrace} off-device) can feed back later. Handlers without one
+ * set only pay a null check.
+ * <p>
+ * Use it from the thread of the handler, usually the UI thread.</p>
+ *
+ * @author Alberto Maluje
+ *
+ *         Usage:
+ *         mInstrumentation = new TouchInstrumentation("SimpleGestureFilter");
+ *         mFilter.setInstrumentation(mInstrumentation);
+ *         mInstrumentation.startRecording(new File(getExternalFilesDir(null),
+ *         "touch.trace"));
+ *
+ *         and when done:
+ *         mInstrumentation.stopRecording();
+ *         mInstrumentation.log();
+ *
+ */
+public class TouchInstrumentation {
+
+	private static final String TAG = "TouchInstrumentation";
+
+	private final String mName;
+	private final LatencyHistogram mHistogram;
+
+	private TouchTraceWriter mWriter;
+
+	/** First error writing the file, the recording stops there */
+	private IOException mError;
+
+	/**
+	 * @param name
+	 *            : the name of the handler, for the log
+	 */
+	public TouchInstrumentation(String name) {
+		this(name, new LatencyHistogram());
+	}
+
+	/**
+	 * @param name
+	 *            : the name of the handler, for the log
+	 * @param histogram
+	 *            : where the time per event is recorded, in nanoseconds
+	 */
+	public TouchInstrumentation(String name, LatencyHistogram histogram) {
+		if (histogram == null)
+			throw new NullPointerException("Histogram can't be null");
+
+		mName = name;
+		mHistogram = histogram;
+	}
+
+	/**
+	 * Called by the handler when an event arrives
+	 *
+	 * @param event
+	 *            : the event, written to the trace while recording
+	 * @return the start time, to give to {@link #end(long)}
+	 */
+	public long begin(MotionEvent event) {
+		if (mWriter != null && mError == null) {
+			try {
+				TouchEvents.write(event, mWriter);
+			} catch (IOException e) {
+				Log.e(TAG, "Couldn't write the event, recording stopped", e);
+				mError = e;
+			}
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Called by a handler that doesn't get the events themselves (like the
+	 * callbacks of a GestureDetector), nothing is recorded
+	 *
+	 * @return the start time, to give to {@link #end(long)}
+	 */
+	public long begin() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Called by the handler when it's done with the event
+	 *
+	 * @param start
+	 *            : the value returned by {@link #begin(MotionEvent)}
+	 */
+	public void end(long start) {
+		mHistogram.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Starts writing the events to a file
+	 *
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @return false if it was already recording
+	 * @throws IOException
+	 *             if the file can't be created
+	 */
+	public boolean startRecording(File file) throws IOException {
+		if (mWriter != null)
+			return false;
+
+		mWriter = new TouchTraceWriter(file);
+		mError = null;
+		return true;
+	}
+
+	/**
+	 * Stops recording and closes the file
+	 *
+	 * @throws IOException
+	 *             if the file couldn't be written
+	 */
+	public void stopRecording() throws IOException {
+		TouchTraceWriter writer = mWriter;
+		if (writer == null)
+			return;
+
+		mWriter = null;
+		writer.close();
+
+		if (mError != null)
+			throw mError;
+	}
+
+	public boolean isRecording() {
+		return mWriter != null;
+	}
+
+	/**
+	 * Gets the number of events recorded so far
+	 */
+	public long getRecordedCount() {
+		TouchTraceWriter writer = mWriter;
+		return writer == null ? 0 : writer.getCount();
+	}
+
+	/**
+	 * Gets the time per event, in nanoseconds
+	 */
+	public LatencyHistogram getHistogram() {
+		return mHistogram;
+	}
+
+	public String getName() {
+		return mName;
+	}
+
+	/**
+	 * Logs the summary of the histogram
+	 */
+	public void log() {
+		Log.i(TAG, mName + ": " + mHistogram);
+	}
+}
@@ -0,0 +1,256 @@
+package cl.betomaluje.android.uberlib;
+
+import android.os.Build;
+import android.view.GestureDetector;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.MotionEvent.PointerCoords;
+import android.view.View;
+import cl.betomaluje.android.uberlib.core.TouchEventRecord;
+import cl.betomaluje.android.uberlib.core.TouchTrace;
+
+/**
+ * Feeds a recorded {@link TouchTrace} back through the touch handlers as
+ * MotionEvents, as fast as they take them, to reproduce a problematic
+ * interaction or measure the handlers with a {@link TouchInstrumentation}.
+ * <p>
+ * The moves of every pointer with the same time are merged into one
+ * MotionEvent again. Before Gingerbread a MotionEvent can't be built with
+ * several pointers, so only the first pointer of each gesture is replayed
+ * there.</p>
+ *
+ * @author Alberto Maluje
+ *
+ *         Usage:
+ *         TouchReplayer replayer = new TouchReplayer(TouchTrace.read(file));
+ *         replayer.replay(TouchReplayer.target(mImageView));
+ *
+ */
+public class TouchReplayer {
+
+	/** Maximum number of pointers down at the same time */
+	public static final int MAX_POINTERS = 10;
+
+	/**
+	 * Handler the events are fed to
+	 */
+	public interface Target {
+
+		/**
+		 * @param event
+		 *            : the event, recycled after this returns
+		 */
+		void onTouchEvent(MotionEvent event);
+	}
+
+	private final TouchTrace mTrace;
+
+	// pointers down, in the order they went down
+	private final int[] mIds = new int[MAX_POINTERS];
+	private final float[] mX = new float[MAX_POINTERS];
+	private final float[] mY = new float[MAX_POINTERS];
+	private int mPointers;
+
+	private long mDownTime;
+
+	/**
+	 * @param trace
+	 *            : the events to replay
+	 */
+	public TouchReplayer(TouchTrace trace) {
+		if (trace == null)
+			throw new NullPointerException("Trace can't be null");
+
+		mTrace = trace;
+	}
+
+	/**
+	 * Feeds the whole trace to a handler
+	 *
+	 * @param target
+	 *            : the handler
+	 * @return the number of MotionEvents fed
+	 */
+	public int replay(Target target) {
+		final TouchTrace trace = mTrace;
+		final int size = trace.size();
+		final boolean multiTouch = Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD;
+
+		int dispatched = 0;
+		mPointers = 0;
+
+		for (int i = 0; i < size; i++) {
+			final int action = trace.getAction(i);
+			final int id = trace.getPointerId(i);
+			final long time = trace.getTime(i);
+
+			if (action == TouchEventRecord.ACTION_DOWN) {
+				mPointers = 0;
+				mDownTime = time;
+				add(id, trace.getX(i), trace.getY(i));
+				dispatched += dispatch(target, MotionEvent.ACTION_DOWN, time);
+				continue;
+			}
+
+			if (mPointers == 0)
+				continue;
+
+			if (action == TouchEventRecord.ACTION_CANCEL) {
+				dispatched += dispatch(target, MotionEvent.ACTION_CANCEL, time);
+				mPointers = 0;
+				continue;
+			}
+
+			if (action == TouchEventRecord.ACTION_POINTER_DOWN) {
+				if (!multiTouch || mPointers == MAX_POINTERS)
+					continue;
+
+				final int index = add(id, trace.getX(i), trace.getY(i));
+				dispatched += dispatch(target, MotionEvent.ACTION_POINTER_DOWN
+						| (index << MotionEvent.ACTION_POINTER_INDEX_SHIFT),
+						time);
+				continue;
+			}
+
+			final int index = indexOf(id);
+			if (index < 0)
+				continue;
+			mX[index] = trace.getX(i);
+			mY[index] = trace.getY(i);
+
+			switch (action) {
+			case TouchEventRecord.ACTION_MOVE:
+				// one MotionEvent for the moves of all the pointers
+				if (i + 1 < size
+						&& trace.getAction(i + 1) == TouchEventRecord.ACTION_MOVE
+						&& trace.getTime(i + 1) == time)
+					break;
+
+				dispatched += dispatch(target, MotionEvent.ACTION_MOVE, time);
+				break;
+
+			case TouchEventRecord.ACTION_POINTER_UP:
+				dispatched += dispatch(target, MotionEvent.ACTION_POINTER_UP
+						| (index << MotionEvent.ACTION_POINTER_INDEX_SHIFT),
+						time);
+				remove(index);
+				break;
+
+			case TouchEventRecord.ACTION_UP:
+				dispatched += dispatch(target, MotionEvent.ACTION_UP, time);
+				mPointers = 0;
+				break;
+			}
+		}
+
+		return dispatched;
+	}
+
+	private int add(int id, float x, float y) {
+		final int index = mPointers++;
+		mIds[index] = id;
+		mX[index] = x;
+		mY[index] = y;
+		return index;
+	}
+
+	private int indexOf(int id) {
+		for (int i = 0; i < mPointers; i++) {
+			if (mIds[i] == id)
+				return i;
+		}
+		return -1;
+	}
+
+	private void remove(int index) {
+		mPointers--;
+		for (int i = index; i < mPointers; i++) {
+			mIds[i] = mIds[i + 1];
+			mX[i] = mX[i + 1];
+			mY[i] = mY[i + 1];
+		}
+	}
+
+	private int dispatch(Target target, int action, long time) {
+		MotionEvent event;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD)
+			event = GingerbreadEvents.obtain(mDownTime, time, action,
+					mPointers, mIds, mX, mY);
+		else
+			event = MotionEvent.obtain(mDownTime, time, action, mX[0], mY[0],
+					0);
+
+		target.onTouchEvent(event);
+		event.recycle();
+		return 1;
+	}
+
+	/**
+	 * Multi-pointer MotionEvents, in their own class so older versions never
+	 * load PointerCoords
+	 */
+	private static class GingerbreadEvents {
+
+		private static final PointerCoords[] sCoords = new PointerCoords[MAX_POINTERS];
+
+		static {
+			for (int i = 0; i < MAX_POINTERS; i++) {
+				sCoords[i] = new PointerCoords();
+				sCoords[i].pressure = 1;
+				sCoords[i].size = 1;
+			}
+		}
+
+		@SuppressWarnings("deprecation")
+		static MotionEvent obtain(long downTime, long time, int action,
+				int pointers, int[] ids, float[] x, float[] y) {
+			for (int i = 0; i < pointers; i++) {
+				sCoords[i].x = x[i];
+				sCoords[i].y = y[i];
+			}
+			return MotionEvent.obtain(downTime, time, action, pointers, ids,
+					sCoords, 0, 1, 1, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+		}
+	}
+
+	/**
+	 * Replays into a SimpleGestureFilter
+	 */
+	public static Target target(final SimpleGestureFilter filter) {
+		return new Target() {
+
+			@Override
+			public void onTouchEvent(MotionEvent event) {
+				filter.onTouchEvent(event);
+			}
+		};
+	}
+
+	/**
+	 * Replays into a GestureDetector, for example one with a
+	 * MyGestureDetector
+	 */
+	public static Target target(final GestureDetector detector) {
+		return new Target() {
+
+			@Override
+			public void onTouchEvent(MotionEvent event) {
+				detector.onTouchEvent(event);
+			}
+		};
+	}
+
+	/**
+	 * Replays into a view, through its touch listener (for example the one of
+	 * TouchImageView)
+	 */
+	public static Target target(final View view) {
+		return new Target() {
+
+			@Override
+			public void onTouchEvent(MotionEvent event) {
+				view.dispatchTouchEvent(event);
+			}
+		};
+	}
+}
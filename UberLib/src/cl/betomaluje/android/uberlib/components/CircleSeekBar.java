@@ -2,6 +2,7 @@ package cl.betomaluje.android.uberlib.components;
 
 import cl.betomaluje.android.uberlib.R;
 import cl.betomaluje.android.uberlib.R.styleable;
+import cl.betomaluje.android.uberlib.core.CircleSeekBarMath;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
@@ -272,12 +273,8 @@ public class CircleSeekBar extends View {
 			mOnCircleSeekBarChangeListener.onProgressChanged(this, progress,
 					true);
 
-			if (INTERVAL != 0) {
-				progress = progress / INTERVAL;
-				progress = progress * INTERVAL;
-			}
-
-			newProgressWithInterval = progress;
+			newProgressWithInterval = CircleSeekBarMath.progressWithInterval(
+					progress, INTERVAL);
 
 			mOnCircleSeekBarChangeListener.onIntervalProgressChanged(this,
 					newProgressWithInterval, true);
@@ -772,48 +769,25 @@ public class CircleSeekBar extends View {
 	 *            the angle of the pointer
 	 */
 	private int calculateTextFromAngle(float angle) {
-		float m = angle - start_angle;
-
-		float f = (float) ((end_angle - start_angle) / m);
-
-		return (int) (max / f);
+		return CircleSeekBarMath.textFromAngle(angle, start_angle, end_angle,
+				max);
 	}
 
 	public int calculateTextFromStartAngle(float angle) {
-		float m = angle;
-
-		float f = (float) ((end_angle - start_angle) / m);
-
-		return (int) (max / f);
+		return CircleSeekBarMath.textFromStartAngle(angle, start_angle,
+				end_angle, max);
 	}
 
 	public double calculateAngleFromText(int position) {
-		if (position == 0 || position >= max)
-			return (float) 90;
-
-		double f = (double) max / (double) position;
-
-		double f_r = 360 / f;
-
-		double ang = f_r + 90;
-
-		return ang;
-
+		return CircleSeekBarMath.angleFromText(position, max);
 	}
 
 	private int calculateRadiansFromAngle(float angle) {
-		float unit = (float) (angle / (2 * Math.PI));
-		if (unit < 0) {
-			unit += 1;
-		}
-		int radians = (int) ((unit * 360) - ((360 / 4) * 3));
-		if (radians < 0)
-			radians += 360;
-		return radians;
+		return CircleSeekBarMath.radiansFromAngle(angle);
 	}
 
 	private float calculateAngleFromRadians(int radians) {
-		return (float) (((radians + 270) * (2 * Math.PI)) / 360);
+		return CircleSeekBarMath.angleFromRadians(radians);
 	}
 
 	/**
@@ -941,12 +915,8 @@ public class CircleSeekBar extends View {
 					mOnCircleSeekBarChangeListener.onProgressChanged(this,
 							progress, true);
 
-					if(INTERVAL != 0){
-						progress = progress / INTERVAL;
-						progress = progress * INTERVAL;
-					}
-
-					newProgressWithInterval = progress;
+					newProgressWithInterval = CircleSeekBarMath
+							.progressWithInterval(progress, INTERVAL);
 
 					mOnCircleSeekBarChangeListener.onIntervalProgressChanged(
 							this, newProgressWithInterval, true);
@@ -1,15 +1,50 @@
 package cl.betomaluje.android.uberlib.components;
 
+import android.os.Build;
 import android.os.Vibrator;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.View.OnTouchListener;
 import android.view.ViewGroup;
 import android.widget.RelativeLayout;
+import cl.betomaluje.android.uberlib.FrameScheduler;
+import cl.betomaluje.android.uberlib.core.DropTargetRegistry;
+import cl.betomaluje.android.uberlib.core.SpringSimulation;
+import cl.betomaluje.android.uberlib.core.TouchPredictor;
+import cl.betomaluje.android.uberlib.interfaces.DragBatchListener;
 import cl.betomaluje.android.uberlib.interfaces.DragListener;
 
+import com.nineoldandroids.view.ViewHelper;
+
 public class DragDropTouchView implements OnTouchListener {
 
+	/** The view is moved by its layout params on every move */
+	public final static int RENDER_LAYOUT = 0;
+
+	/**
+	 * The view is moved by its translation, drawn from a hardware layer, and
+	 * its layout params are set once when it's dropped
+	 */
+	public final static int RENDER_TRANSLATION = 1;
+
+	/** DragListener.isDragging is called on every move */
+	public final static int DELIVERY_IMMEDIATE = 0;
+
+	/**
+	 * DragListener.isDragging is called at most once per frame, with the last
+	 * position
+	 */
+	public final static int DELIVERY_FRAME = 1;
+
+	/**
+	 * Default distance a released view looks for a drop target to snap to,
+	 * in pixels
+	 */
+	public final static int DEFAULT_SNAP_DISTANCE = 48;
+
+	/** Positions kept for the DragBatchListener until the array grows */
+	private final static int INITIAL_BATCH_CAPACITY = 64;
+
 	private final static int START_DRAGGING = 0;
 	private final static int STOP_DRAGGING = 1;
 
@@ -27,6 +62,68 @@ public class DragDropTouchView implements OnTouchListener {
 
 	private DragListener dragListener;
 
+	// predicts the finger to draw the view where it will be, null if off
+	private TouchPredictor predictor = null;
+	private int predictionHorizon = TouchPredictor.DEFAULT_HORIZON;
+
+	private int renderMode = RENDER_LAYOUT;
+
+	// layer type of the view before the drag, to restore it
+	private int previousLayerType;
+
+	private int deliveryMode = DELIVERY_IMMEDIATE;
+
+	// delivers the moves on the frames, null unless DELIVERY_FRAME was set
+	private FrameScheduler frameScheduler = null;
+
+	// true if a move is waiting for the next frame
+	private boolean pendingMove = false;
+
+	private DragBatchListener batchListener;
+
+	// positions since the last frame, x and y interleaved
+	private int[] batch = new int[INITIAL_BATCH_CAPACITY * 2];
+	private int batchCount = 0;
+
+	// drop targets under the finger, null if there are none
+	private DropTargetRegistry dropTargets = null;
+
+	// scratch for the location of the views registered as targets
+	private final int[] location = new int[2];
+
+	private final FrameScheduler.Callback moveFrame = new FrameScheduler.Callback() {
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			deliverMove();
+		}
+	};
+
+	// moves a released view to its place, null unless the release animation
+	// is on
+	private SpringSimulation spring = null;
+	private FrameScheduler releaseScheduler = null;
+
+	// velocity of the finger for the release when there is no predictor
+	private TouchPredictor releaseTracker = null;
+
+	// the view being released, null if none
+	private View releasing = null;
+	private long releaseFrameTime = -1;
+
+	private int snapDistance = DEFAULT_SNAP_DISTANCE;
+
+	// scratch for the bounds of the target a view snaps to
+	private final int[] bounds = new int[4];
+
+	private final FrameScheduler.Callback releaseFrame = new FrameScheduler.Callback() {
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			stepRelease(frameTimeNanos);
+		}
+	};
+
 	/**
 	 * Allows a view to be draggable
 	 * 
@@ -56,15 +153,29 @@ public class DragDropTouchView implements OnTouchListener {
 					crashX = (int) event.getRawX();
 					crashY = (int) event.getRawY();
 
+					// follows the velocity of the finger, null if unused
+					final TouchPredictor tracker = velocityTracker();
+
 					switch (event.getActionMasked()) {
 					case MotionEvent.ACTION_DOWN:
 
+						// a view still settling goes straight to its place
+						finishRelease();
+
 						// we get the initial values of the view, just in case
-						// we need to use it afterwards
-						topY = target.getTop();
-						leftX = target.getLeft();
-						rightX = target.getRight();
-						bottomY = target.getBottom();
+						// we need to use it afterwards. It's the view touched,
+						// not necessarily the target of this init
+						topY = selected_item.getTop();
+						leftX = selected_item.getLeft();
+						rightX = selected_item.getRight();
+						bottomY = selected_item.getBottom();
+
+						if (tracker != null)
+							tracker.reset(crashX, crashY,
+									event.getEventTime());
+
+						if (renderMode == RENDER_TRANSLATION)
+							startTranslation(selected_item);
 
 						if (dragListener != null)
 							dragListener.onDragStart(crashX, crashY);
@@ -75,47 +186,109 @@ public class DragDropTouchView implements OnTouchListener {
 						x = crashX - offset_x;
 						y = crashY - offset_y;
 
+						if (tracker != null)
+							addSamples(tracker, event);
+
 						if (y >= marginTop) {
 							if (x > screenWidth)
 								x = screenWidth;
 							if (y > screenHeight)
 								y = screenHeight;
 
+							// where the view is drawn, the finger itself
+							// unless it's predicted
+							int drawX = x, drawY = y;
+							if (predictor != null) {
+								drawX = clamp((int) predictor
+										.getPredictedX(predictionHorizon)
+										- offset_x, Integer.MIN_VALUE,
+										screenWidth);
+								drawY = clamp((int) predictor
+										.getPredictedY(predictionHorizon)
+										- offset_y, marginTop, screenHeight);
+							}
+
 							lp.height = height;
 							lp.width = width;
 
 							if (allowHorizontal) {
-								lp.setMargins(x, y, 0, 0);
+								lp.setMargins(drawX, drawY, 0, 0);
 							} else {
 
-								if (y >= lastPosition - marginTop) {
-									lp.setMargins(0, y, 0, -y);
+								if (drawY >= lastPosition - marginTop) {
+									lp.setMargins(0, drawY, 0, -drawY);
 								}
 							}
 
-							selected_item.setLayoutParams(lp);
+							if (renderMode == RENDER_TRANSLATION) {
+								// only where it's drawn changes, no layout
+								ViewHelper.setTranslationX(selected_item,
+										lp.leftMargin - leftX);
+								ViewHelper.setTranslationY(selected_item,
+										lp.topMargin - topY);
+							} else {
+								selected_item.setLayoutParams(lp);
+							}
 						}
 
-						if (dragListener != null)
-							dragListener.isDragging(x, y);
+						if (deliveryMode == DELIVERY_FRAME) {
+							if (batchListener != null)
+								addBatch(event);
+
+							pendingMove = true;
+							frameScheduler.schedule();
+						} else {
+							if (dropTargets != null)
+								dropTargets.onDragMove(crashX, crashY);
+							if (dragListener != null)
+								dragListener.isDragging(x, y);
+						}
 
 						break;
 					case MotionEvent.ACTION_UP:
 
+						// the last move goes before the drop
+						if (frameScheduler != null) {
+							frameScheduler.cancel();
+							deliverMove();
+						}
+
 						x = crashX - offset_x;
 						y = crashY - offset_y;
 
 						lastPosition = y;
 
 						status = STOP_DRAGGING;
+
+						float velocityX = 0, velocityY = 0;
+						if (tracker != null) {
+							velocityX = tracker.getVelocityX();
+							velocityY = tracker.getVelocityY();
+							tracker.clear();
+						}
 						
 						//lp.height = height;
 						//lp.width = width;
 
-						if (y <= lastPosition + marginTop) {
-							// restore to initial position
-							lp.setMargins(0, initialPosition, 0, 0);
-							selected_item.setLayoutParams(lp);
+						if (renderMode == RENDER_TRANSLATION)
+							stopTranslation(selected_item);
+
+						if (spring != null) {
+							release(selected_item, allowHorizontal, velocityX,
+									velocityY);
+						} else {
+							if (y <= lastPosition + marginTop) {
+								// restore to initial position
+								lp.setMargins(0, initialPosition, 0, 0);
+								selected_item.setLayoutParams(lp);
+							} else if (renderMode == RENDER_TRANSLATION) {
+								// the layout params were only drawn, commit
+								// them
+								selected_item.setLayoutParams(lp);
+							}
+
+							if (dropTargets != null)
+								dropTargets.onDrop(crashX, crashY);
 						}
 
 						if (dragListener != null)
@@ -133,6 +306,195 @@ public class DragDropTouchView implements OnTouchListener {
 		target.setOnTouchListener(this);
 	}
 
+	/**
+	 * Feeds the raw positions of a move to the predictor, including the
+	 * historical ones batched into it
+	 */
+	private void addSamples(TouchPredictor tracker, MotionEvent event) {
+		// the historical positions are relative to the view, like getX()
+		final float rawOffsetX = event.getRawX() - event.getX();
+		final float rawOffsetY = event.getRawY() - event.getY();
+
+		final int history = event.getHistorySize();
+		for (int h = 0; h < history; h++)
+			tracker.addSample(event.getHistoricalX(h) + rawOffsetX,
+					event.getHistoricalY(h) + rawOffsetY,
+					event.getHistoricalEventTime(h));
+
+		tracker.addSample(event.getRawX(), event.getRawY(),
+				event.getEventTime());
+	}
+
+	/**
+	 * Gets what follows the velocity of the finger, null if nothing needs it
+	 */
+	private TouchPredictor velocityTracker() {
+		return predictor != null ? predictor : releaseTracker;
+	}
+
+	/**
+	 * Adds the positions of a move to the batch, with the bounds of x and y
+	 */
+	private void addBatch(MotionEvent event) {
+		final float rawOffsetX = event.getRawX() - event.getX();
+		final float rawOffsetY = event.getRawY() - event.getY();
+
+		final int history = event.getHistorySize();
+		for (int h = 0; h < history; h++) {
+			int px = (int) (event.getHistoricalX(h) + rawOffsetX) - offset_x;
+			int py = (int) (event.getHistoricalY(h) + rawOffsetY) - offset_y;
+			if (py >= marginTop) {
+				if (px > screenWidth)
+					px = screenWidth;
+				if (py > screenHeight)
+					py = screenHeight;
+			}
+			addBatch(px, py);
+		}
+
+		addBatch(x, y);
+	}
+
+	private void addBatch(int px, int py) {
+		if (batchCount * 2 == batch.length) {
+			int[] grown = new int[batch.length * 2];
+			System.arraycopy(batch, 0, grown, 0, batch.length);
+			batch = grown;
+		}
+
+		batch[batchCount * 2] = px;
+		batch[batchCount * 2 + 1] = py;
+		batchCount++;
+	}
+
+	/**
+	 * Delivers the move waiting for the frame, if any
+	 */
+	private void deliverMove() {
+		if (!pendingMove)
+			return;
+		pendingMove = false;
+
+		if (batchListener != null && batchCount > 0)
+			batchListener.onDragBatch(batch, batchCount);
+		batchCount = 0;
+
+		if (dropTargets != null)
+			dropTargets.onDragMove(crashX, crashY);
+		if (dragListener != null)
+			dragListener.isDragging(x, y);
+	}
+
+	private void startTranslation(View view) {
+		lp.setMargins(leftX, topY, 0, 0);
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			previousLayerType = view.getLayerType();
+			view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+		}
+	}
+
+	private void stopTranslation(View view) {
+		ViewHelper.setTranslationX(view, 0);
+		ViewHelper.setTranslationY(view, 0);
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
+			view.setLayerType(previousLayerType, null);
+	}
+
+	/**
+	 * Lays the dropped view out where it goes, the nearest drop target the
+	 * fling carries it to or its initial position, and springs it there from
+	 * where it was released by its translation
+	 */
+	private void release(View view, boolean allowHorizontal, float velocityX,
+			float velocityY) {
+		final int fromX = lp.leftMargin, fromY = lp.topMargin;
+		int toX = fromX, toY = fromY;
+		if (y <= lastPosition + marginTop) {
+			toX = 0;
+			toY = initialPosition;
+		}
+
+		// the drop is where the fling would stop, on the screen
+		int dropX = (int) SpringSimulation.projectFling(crashX, velocityX);
+		int dropY = (int) SpringSimulation.projectFling(crashY, velocityY);
+		if (dropTargets != null) {
+			final int target = dropTargets.findNearestTarget(dropX, dropY,
+					snapDistance);
+			if (target != DropTargetRegistry.NO_TARGET
+					&& dropTargets.getBounds(target, bounds)) {
+				// the point grabbed goes to the center of the target
+				dropX = (bounds[0] + bounds[2]) / 2;
+				dropY = (bounds[1] + bounds[3]) / 2;
+				if (allowHorizontal)
+					toX = dropX - offset_x;
+				toY = dropY - offset_y;
+			}
+			dropTargets.onDrop(dropX, dropY);
+		}
+
+		if (!allowHorizontal)
+			velocityX = 0;
+
+		lp.setMargins(toX, toY, 0, 0);
+		view.setLayoutParams(lp);
+
+		releasing = view;
+		releaseFrameTime = -1;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			previousLayerType = view.getLayerType();
+			view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+		}
+
+		// the translation takes it back to where it was released
+		spring.start(fromX - toX, fromY - toY, velocityX, velocityY, 0, 0);
+		ViewHelper.setTranslationX(view, spring.getX());
+		ViewHelper.setTranslationY(view, spring.getY());
+
+		if (spring.isRunning())
+			releaseScheduler.schedule();
+		else
+			finishRelease();
+	}
+
+	private void stepRelease(long frameTimeNanos) {
+		if (releasing == null)
+			return;
+
+		// the first frame is taken as a whole frame
+		final float seconds = releaseFrameTime < 0 ? FrameScheduler.FALLBACK_FRAME_DELAY / 1000f
+				: (frameTimeNanos - releaseFrameTime) / 1e9f;
+		releaseFrameTime = frameTimeNanos;
+
+		if (spring.step(seconds)) {
+			ViewHelper.setTranslationX(releasing, spring.getX());
+			ViewHelper.setTranslationY(releasing, spring.getY());
+			releaseScheduler.schedule();
+		} else {
+			finishRelease();
+		}
+	}
+
+	/**
+	 * Puts the view being released, if any, at its place
+	 */
+	private void finishRelease() {
+		if (releasing == null)
+			return;
+
+		releaseScheduler.cancel();
+		spring.finish();
+		stopTranslation(releasing);
+		releasing = null;
+	}
+
+	private static int clamp(int value, int min, int max) {
+		if (value < min)
+			return min;
+		return value > max ? max : value;
+	}
+
 	@Override
 	public boolean onTouch(View v, MotionEvent event) {
 		// TODO Auto-generated method stub
@@ -206,4 +568,209 @@ public class DragDropTouchView implements OnTouchListener {
 	public void setInitialPosition (int pos) {
 		this.initialPosition = pos;
 	}
+
+	/**
+	 * Sets how the dragged view is moved. The DragListener gets the same
+	 * callbacks in both modes.
+	 * 
+	 * @param mode
+	 *            : RENDER_LAYOUT (default) to set its layout params on every
+	 *            move, or RENDER_TRANSLATION to translate it and set them only
+	 *            when it's dropped, without a layout pass per move
+	 */
+	public void setRenderMode(int mode) {
+		if (mode != RENDER_LAYOUT && mode != RENDER_TRANSLATION)
+			throw new IllegalArgumentException("Invalid render mode: " + mode);
+
+		this.renderMode = mode;
+	}
+
+	public int getRenderMode() {
+		return this.renderMode;
+	}
+
+	/**
+	 * Sets how often DragListener.isDragging is called. Use it from the UI
+	 * thread.
+	 * 
+	 * @param mode
+	 *            : DELIVERY_IMMEDIATE (default) for every move, or
+	 *            DELIVERY_FRAME for at most once per display frame with the
+	 *            last position
+	 */
+	public void setDeliveryMode(int mode) {
+		if (mode != DELIVERY_IMMEDIATE && mode != DELIVERY_FRAME)
+			throw new IllegalArgumentException("Invalid delivery mode: "
+					+ mode);
+
+		if (mode == DELIVERY_FRAME && frameScheduler == null)
+			frameScheduler = new FrameScheduler(moveFrame);
+
+		if (mode == DELIVERY_IMMEDIATE && frameScheduler != null) {
+			frameScheduler.cancel();
+			deliverMove();
+		}
+
+		this.deliveryMode = mode;
+	}
+
+	public int getDeliveryMode() {
+		return this.deliveryMode;
+	}
+
+	/**
+	 * Sets a listener for every position of the drag, delivered with
+	 * DELIVERY_FRAME only
+	 * 
+	 * @param listener
+	 *            : the listener, null to remove it
+	 */
+	public void setDragBatchListener(DragBatchListener listener) {
+		this.batchListener = listener;
+		this.batchCount = 0;
+	}
+
+	/**
+	 * Sets the drop targets of the drags. They are hit-tested with the
+	 * position of the finger on the screen, and get their enter, over, leave
+	 * and drop callbacks together with the DragListener ones.
+	 * 
+	 * @param registry
+	 *            : the targets, null to remove them
+	 */
+	public void setDropTargets(DropTargetRegistry registry) {
+		this.dropTargets = registry;
+	}
+
+	public DropTargetRegistry getDropTargets() {
+		return this.dropTargets;
+	}
+
+	/**
+	 * Registers the area a view covers on the screen as a drop target. The
+	 * view must be laid out, and registered again when it moves.
+	 * 
+	 * @param id
+	 *            : the id given back in the callbacks of the targets
+	 * @param view
+	 *            : the view
+	 */
+	public void registerDropTarget(int id, View view) {
+		if (this.dropTargets == null)
+			throw new IllegalStateException(
+					"You must set a DropTargetRegistry object. Please use setDropTargets() method.");
+
+		view.getLocationOnScreen(location);
+		this.dropTargets.register(id, location[0], location[1], location[0]
+				+ view.getWidth(), location[1] + view.getHeight());
+	}
+
+	/**
+	 * Removes a drop target
+	 * 
+	 * @param id
+	 *            : the id of the target
+	 */
+	public void unregisterDropTarget(int id) {
+		if (this.dropTargets != null)
+			this.dropTargets.unregister(id);
+	}
+
+	/**
+	 * Animates the dropped view to its place instead of jumping there: it
+	 * keeps the velocity it was released with and springs, by its
+	 * translation, to its initial position or to the nearest drop target
+	 * within the snap distance of where the fling would stop. Use it from the
+	 * UI thread.
+	 * 
+	 * @param enabled
+	 *            : true to animate
+	 */
+	public void setReleaseAnimation(boolean enabled) {
+		if (!enabled) {
+			finishRelease();
+			this.spring = null;
+			this.releaseScheduler = null;
+			this.releaseTracker = null;
+		} else if (this.spring == null) {
+			this.spring = new SpringSimulation();
+			this.releaseScheduler = new FrameScheduler(releaseFrame);
+			this.releaseTracker = new TouchPredictor();
+		}
+	}
+
+	public boolean isReleaseAnimation() {
+		return this.spring != null;
+	}
+
+	/**
+	 * Gets the spring of the release animation to tune it, null if it's off
+	 */
+	public SpringSimulation getReleaseSpring() {
+		return this.spring;
+	}
+
+	/**
+	 * Sets how far from where a fling would stop a drop target can be to
+	 * snap the released view to it
+	 * 
+	 * @param pixels
+	 *            : the distance, 0 to snap only when it stops over one
+	 */
+	public void setSnapDistance(int pixels) {
+		if (pixels < 0)
+			throw new IllegalArgumentException("Invalid snap distance: "
+					+ pixels);
+
+		this.snapDistance = pixels;
+	}
+
+	public int getSnapDistance() {
+		return this.snapDistance;
+	}
+
+	/**
+	 * Draws the dragged view where the finger is predicted to be when the
+	 * frame is shown instead of where it was, so it doesn't trail behind
+	 * it. The listener still gets the real positions.
+	 * 
+	 * @param enabled
+	 *            : true to predict
+	 */
+	public void setPrediction(boolean enabled) {
+		if (!enabled)
+			this.predictor = null;
+		else if (this.predictor == null)
+			this.predictor = new TouchPredictor();
+	}
+
+	public boolean isPrediction() {
+		return this.predictor != null;
+	}
+
+	/**
+	 * Sets how far ahead the finger is predicted, usually the time until the
+	 * next vsync plus the time to show the frame
+	 * 
+	 * @param ms
+	 *            : the horizon, in milliseconds, up to
+	 *            TouchPredictor.MAX_HORIZON
+	 */
+	public void setPredictionHorizon(int ms) {
+		if (ms < 0 || ms > TouchPredictor.MAX_HORIZON)
+			throw new IllegalArgumentException("Invalid horizon: " + ms);
+
+		this.predictionHorizon = ms;
+	}
+
+	public int getPredictionHorizon() {
+		return this.predictionHorizon;
+	}
+
+	/**
+	 * Gets the predictor to tune its filter, null if the prediction is off
+	 */
+	public TouchPredictor getPredictor() {
+		return this.predictor;
+	}
 }
@@ -0,0 +1,350 @@
+package cl.betomaluje.android.uberlib.components;
+
+import java.util.ArrayList;
+
+import android.os.Build;
+import android.util.SparseArray;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.OnTouchListener;
+import android.view.ViewGroup;
+import cl.betomaluje.android.uberlib.interfaces.DragListener;
+
+import com.nineoldandroids.view.ViewHelper;
+
+/**
+ * Drags several views of a container at the same time, one per finger. Unlike
+ * DragDropTouchView, which keeps a single dragged view and installs a
+ * container listener per view, the manager installs one listener on the
+ * container for all of its targets and keeps a drag session per pointer id.
+ * <p>
+ * The view under a finger is only looked up when it goes down; each move
+ * then updates the session of each pointer directly. The views are moved by
+ * their translation, drawn from a hardware layer, and their margins are set
+ * once when they're dropped. Positions are in the coordinates of the
+ * container, and the targets shouldn't consume the touches themselves (not
+ * clickable).</p>
+ *
+ * @author Alberto Maluje
+ *
+ *         Usage:
+ *         mDragManager = new DragManager(container);
+ *         mDragManager.addTarget(firstView, true, firstListener);
+ *         mDragManager.addTarget(secondView, true, secondListener);
+ *
+ */
+public class DragManager implements OnTouchListener {
+
+	/** Maximum number of views dragged at the same time */
+	public final static int MAX_SESSIONS = 10;
+
+	/**
+	 * A view that can be dragged
+	 */
+	private static class Target {
+		View view;
+		boolean allowHorizontal;
+		DragListener listener;
+
+		/** True while a finger drags it */
+		boolean dragging;
+	}
+
+	/**
+	 * The drag of a view by a finger
+	 */
+	private static class Session {
+		Target target;
+
+		// layout position of the view and where the finger grabbed it
+		int left, top;
+		float grabX, grabY;
+
+		// current position of the view, in the container
+		int x, y;
+
+		// translation of the view before the drag, to put it back
+		float startTranslationX, startTranslationY;
+
+		int previousLayerType;
+	}
+
+	private final ViewGroup container;
+
+	private final ArrayList<Target> targets = new ArrayList<Target>();
+
+	/** Sessions by pointer id */
+	private final SparseArray<Session> sessions = new SparseArray<Session>(
+			MAX_SESSIONS);
+
+	/** Sessions not in use, reused for the next fingers */
+	private final Session[] pool = new Session[MAX_SESSIONS];
+	private int pooled;
+
+	private boolean enabled = true;
+
+	/**
+	 * Installs the listener of the manager on the container
+	 *
+	 * @param container
+	 *            : the container of all the views
+	 */
+	public DragManager(ViewGroup container) {
+		if (container == null)
+			throw new NullPointerException("Container can't be null");
+
+		this.container = container;
+		for (int i = 0; i < MAX_SESSIONS; i++)
+			pool[i] = new Session();
+		pooled = MAX_SESSIONS;
+
+		container.setOnTouchListener(this);
+	}
+
+	/**
+	 * Allows a view to be dragged. Views added later are on top when they
+	 * overlap.
+	 *
+	 * @param view
+	 *            : the view, a child of the container
+	 * @param allowHorizontal
+	 *            : true if also horizontal drag and drop is allowed, false
+	 *            otherwise
+	 * @param listener
+	 *            : the listener of the drags of this view, can be null
+	 */
+	public void addTarget(View view, boolean allowHorizontal,
+			DragListener listener) {
+		removeTarget(view);
+
+		Target target = new Target();
+		target.view = view;
+		target.allowHorizontal = allowHorizontal;
+		target.listener = listener;
+		targets.add(target);
+	}
+
+	/**
+	 * Stops a view from being dragged, a drag in progress is dropped where it
+	 * is
+	 *
+	 * @param view
+	 *            : the view
+	 */
+	public void removeTarget(View view) {
+		for (int i = targets.size() - 1; i >= 0; i--) {
+			Target target = targets.get(i);
+			if (target.view != view)
+				continue;
+
+			for (int s = sessions.size() - 1; s >= 0; s--) {
+				if (sessions.valueAt(s).target == target)
+					endSession(sessions.keyAt(s), true);
+			}
+			targets.remove(i);
+		}
+	}
+
+	@Override
+	public boolean onTouch(View v, MotionEvent event) {
+		if (!enabled)
+			return false;
+
+		final int action = event.getActionMasked();
+		switch (action) {
+		case MotionEvent.ACTION_DOWN:
+		case MotionEvent.ACTION_POINTER_DOWN: {
+			final int index = event.getActionIndex();
+			startSession(event.getPointerId(index), event.getX(index),
+					event.getY(index));
+			break;
+		}
+
+		case MotionEvent.ACTION_MOVE:
+			for (int i = 0, count = event.getPointerCount(); i < count; i++) {
+				Session session = sessions.get(event.getPointerId(i));
+				if (session != null)
+					move(session, event.getX(i), event.getY(i));
+			}
+			break;
+
+		case MotionEvent.ACTION_POINTER_UP:
+		case MotionEvent.ACTION_UP: {
+			final int index = event.getActionIndex();
+			final int id = event.getPointerId(index);
+			Session session = sessions.get(id);
+			if (session != null) {
+				move(session, event.getX(index), event.getY(index));
+				endSession(id, true);
+			}
+			break;
+		}
+
+		case MotionEvent.ACTION_CANCEL:
+			endAll(false);
+			break;
+		}
+
+		// keep getting the touches while something is dragged, a down that
+		// doesn't start a drag is left to the rest of the container
+		return sessions.size() > 0;
+	}
+
+	private void startSession(int id, float x, float y) {
+		if (pooled == 0 || sessions.get(id) != null)
+			return;
+
+		Target target = findTarget(x, y);
+		if (target == null)
+			return;
+
+		final View view = target.view;
+		Session session = pool[--pooled];
+		session.target = target;
+		session.left = view.getLeft();
+		session.top = view.getTop();
+		session.startTranslationX = ViewHelper.getTranslationX(view);
+		session.startTranslationY = ViewHelper.getTranslationY(view);
+		session.x = (int) (session.left + session.startTranslationX);
+		session.y = (int) (session.top + session.startTranslationY);
+		session.grabX = x - session.x;
+		session.grabY = y - session.y;
+		sessions.put(id, session);
+		target.dragging = true;
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			session.previousLayerType = view.getLayerType();
+			view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+		}
+
+		if (target.listener != null)
+			target.listener.onDragStart(session.x, session.y);
+	}
+
+	/**
+	 * Finds the topmost target under a finger that isn't already dragged
+	 */
+	private Target findTarget(float x, float y) {
+		for (int i = targets.size() - 1; i >= 0; i--) {
+			Target target = targets.get(i);
+			if (target.dragging)
+				continue;
+
+			final View view = target.view;
+			final float left = view.getLeft() + ViewHelper.getTranslationX(view);
+			final float top = view.getTop() + ViewHelper.getTranslationY(view);
+			if (x >= left && x < left + view.getWidth() && y >= top
+					&& y < top + view.getHeight())
+				return target;
+		}
+		return null;
+	}
+
+	private void move(Session session, float x, float y) {
+		final View view = session.target.view;
+
+		int newX = session.target.allowHorizontal ? (int) (x - session.grabX)
+				: (int) (session.left + session.startTranslationX);
+		int newY = (int) (y - session.grabY);
+
+		// inside the container
+		newX = Math.max(0, Math.min(newX, container.getWidth() - view.getWidth()));
+		newY = Math.max(0,
+				Math.min(newY, container.getHeight() - view.getHeight()));
+
+		if (newX == session.x && newY == session.y)
+			return;
+
+		session.x = newX;
+		session.y = newY;
+		ViewHelper.setTranslationX(view, newX - session.left);
+		ViewHelper.setTranslationY(view, newY - session.top);
+
+		if (session.target.listener != null)
+			session.target.listener.isDragging(newX, newY);
+	}
+
+	/**
+	 * Ends the drag of a pointer
+	 *
+	 * @param drop
+	 *            : true to drop it where it is, false to put it back where
+	 *            the drag started
+	 */
+	private void endSession(int id, boolean drop) {
+		Session session = sessions.get(id);
+		if (session == null)
+			return;
+		sessions.remove(id);
+
+		final Target target = session.target;
+		final View view = target.view;
+		target.dragging = false;
+
+		if (drop) {
+			// commit the position to the layout, once
+			ViewGroup.LayoutParams params = view.getLayoutParams();
+			if (params instanceof ViewGroup.MarginLayoutParams) {
+				ViewGroup.MarginLayoutParams margins = (ViewGroup.MarginLayoutParams) params;
+				margins.leftMargin += session.x - session.left;
+				margins.topMargin += session.y - session.top;
+				view.setLayoutParams(margins);
+				ViewHelper.setTranslationX(view, 0);
+				ViewHelper.setTranslationY(view, 0);
+			} else {
+				ViewHelper.setTranslationX(view, session.x - session.left);
+				ViewHelper.setTranslationY(view, session.y - session.top);
+			}
+		} else {
+			// where it was, with the translation it had
+			ViewHelper.setTranslationX(view, session.startTranslationX);
+			ViewHelper.setTranslationY(view, session.startTranslationY);
+		}
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
+			view.setLayerType(session.previousLayerType, null);
+
+		session.target = null;
+		pool[pooled++] = session;
+
+		if (drop && target.listener != null)
+			target.listener.onDrop(session.x, session.y);
+	}
+
+	private void endAll(boolean drop) {
+		for (int i = sessions.size() - 1; i >= 0; i--)
+			endSession(sessions.keyAt(i), drop);
+	}
+
+	/**
+	 * Gets the number of views being dragged
+	 */
+	public int getDragCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * Enables or disables the drags, the ones in progress are put back
+	 *
+	 * @param enabled
+	 *            : false to ignore the touches
+	 */
+	public void setEnabled(boolean enabled) {
+		if (!enabled)
+			endAll(false);
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Removes the listener from the container, the drags in progress are put
+	 * back
+	 */
+	public void release() {
+		endAll(false);
+		container.setOnTouchListener(null);
+	}
+}
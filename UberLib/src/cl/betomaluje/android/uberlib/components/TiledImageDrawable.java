@@ -0,0 +1,383 @@
+package cl.betomaluje.android.uberlib.components;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import cl.betomaluje.android.uberlib.core.LongHashSet;
+import cl.betomaluje.android.uberlib.core.TileCache;
+import cl.betomaluje.android.uberlib.core.TileGrid;
+
+/**
+ * Drawable of an image file too large to decode whole, for the tiled mode of
+ * TouchImageView. Its intrinsic size is the one of the full image, so the
+ * matrix of the view maps it like any other drawable, but it only decodes
+ * the tiles of the viewport at the sample size of the current scale, on a
+ * background thread, over a low resolution base layer of the whole image.
+ * The tiles are kept in a byte-bounded LRU cache and recycled when evicted.
+ * <p>
+ * Before Gingerbread MR1 there is no BitmapRegionDecoder, and only the base
+ * layer is drawn. Use it from the UI thread.</p>
+ *
+ * @author Alberto Maluje
+ */
+class TiledImageDrawable extends Drawable {
+
+	/** Longest side of the base layer, in pixels */
+	static final int BASE_MAX_SIZE = 1024;
+
+	/** Part of the heap the tiles can take by default */
+	static final int DEFAULT_CACHE_FRACTION = 8;
+
+	/** Bytes per pixel of the decoded tiles, RGB_565 */
+	private static final int BYTES_PER_PIXEL = 2;
+
+	/** Decodes the tiles of every image, one at a time */
+	private static ExecutorService decodeExecutor;
+
+	private final String path;
+	private final TileGrid grid;
+
+	/** Decodes the tiles, null before Gingerbread MR1 */
+	private final RegionDecoder decoder;
+
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	private final TileCache<Bitmap> cache;
+
+	/** Tiles waiting to be decoded */
+	private final LongHashSet pending = new LongHashSet();
+
+	private Bitmap base;
+	private final int baseSampleSize;
+
+	private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+	// the viewport, in image pixels, and its sample size. Read by the
+	// decoding thread to skip the tiles that aren't needed anymore.
+	private volatile int sampleSize;
+	private volatile float left, top, right, bottom;
+
+	private volatile boolean recycled = false;
+
+	// scratch for drawing
+	private final int[] range = new int[4];
+	private final int[] bounds = new int[4];
+	private final RectF dst = new RectF();
+
+	// scratch of the decoding thread
+	private final int[] decodeRange = new int[4];
+	private final int[] decodeBounds = new int[4];
+
+	/**
+	 * Reads the size of the image and starts decoding its base layer
+	 *
+	 * @param path
+	 *            : the image file
+	 * @throws IOException
+	 *             if it isn't an image that can be decoded
+	 */
+	TiledImageDrawable(String path) throws IOException {
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inJustDecodeBounds = true;
+		BitmapFactory.decodeFile(path, options);
+		if (options.outWidth <= 0 || options.outHeight <= 0)
+			throw new IOException("Can't decode " + path);
+
+		this.path = path;
+		this.grid = new TileGrid(options.outWidth, options.outHeight);
+		this.baseSampleSize = TileGrid.sampleSizeToFit(options.outWidth,
+				options.outHeight, BASE_MAX_SIZE);
+		this.sampleSize = baseSampleSize;
+
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD_MR1)
+			decoder = new RegionDecoder(path);
+		else
+			decoder = null;
+
+		cache = new TileCache<Bitmap>(Runtime.getRuntime().maxMemory()
+				/ DEFAULT_CACHE_FRACTION) {
+
+			@Override
+			protected void onEvicted(long key, Bitmap tile) {
+				tile.recycle();
+			}
+		};
+
+		getDecodeExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				decodeBase();
+			}
+		});
+	}
+
+	/**
+	 * Sets the part of the image shown, to decode its tiles
+	 *
+	 * @param left
+	 *            , top, right, bottom: the viewport, in image pixels
+	 * @param scale
+	 *            : pixels on the screen per pixel of the image
+	 */
+	void setViewport(float left, float top, float right, float bottom,
+			float scale) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+		this.sampleSize = TileGrid.sampleSizeForScale(scale);
+	}
+
+	void setCacheSize(long bytes) {
+		cache.setMaxBytes(bytes);
+	}
+
+	long getCacheSize() {
+		return cache.getMaxBytes();
+	}
+
+	@Override
+	public void draw(Canvas canvas) {
+		if (recycled)
+			return;
+
+		if (base != null) {
+			dst.set(0, 0, grid.getImageWidth(), grid.getImageHeight());
+			canvas.drawBitmap(base, null, dst, paint);
+		}
+
+		if (decoder == null)
+			return;
+
+		// the coarser tiles already decoded cover for the missing ones
+		final int sample = this.sampleSize;
+		for (int s = baseSampleSize / 2; s >= sample; s /= 2) {
+			if (!grid.getTiles(s, left, top, right, bottom, range))
+				return;
+
+			// the tiles must fit in the cache together, or decoding one would
+			// evict another one forever
+			final long tileBytes = (long) grid.getTileSize()
+					* grid.getTileSize() * BYTES_PER_PIXEL;
+			final boolean fits = (range[2] - range[0] + 1)
+					* (range[3] - range[1] + 1) * tileBytes <= cache
+					.getMaxBytes();
+
+			for (int row = range[1]; row <= range[3]; row++) {
+				for (int column = range[0]; column <= range[2]; column++) {
+					final long key = TileGrid.key(s, column, row);
+					final Bitmap tile = cache.get(key);
+					if (tile != null) {
+						grid.getTileBounds(s, column, row, bounds);
+						dst.set(bounds[0], bounds[1], bounds[2], bounds[3]);
+						canvas.drawBitmap(tile, null, dst, paint);
+					} else if (s == sample && fits) {
+						request(key);
+					}
+				}
+			}
+		}
+	}
+
+	private void request(final long key) {
+		if (!pending.add(key))
+			return;
+
+		getDecodeExecutor().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				final Bitmap tile = isWanted(key) ? decodeTile(key) : null;
+
+				handler.post(new Runnable() {
+
+					@Override
+					public void run() {
+						pending.remove(key);
+						if (tile == null)
+							return;
+
+						if (recycled) {
+							tile.recycle();
+						} else {
+							cache.put(key, tile,
+									tile.getRowBytes() * tile.getHeight());
+							invalidateSelf();
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Checks, from the decoding thread, if a tile is still in the viewport at
+	 * its sample size
+	 */
+	private boolean isWanted(long key) {
+		final int sample = TileGrid.sampleSizeOf(key);
+		if (recycled || sample != sampleSize)
+			return false;
+
+		final int[] range = decodeRange;
+		if (!grid.getTiles(sample, left, top, right, bottom, range))
+			return false;
+
+		final int column = TileGrid.columnOf(key);
+		final int row = TileGrid.rowOf(key);
+		return column >= range[0] && column <= range[2] && row >= range[1]
+				&& row <= range[3];
+	}
+
+	private Bitmap decodeTile(long key) {
+		final int sample = TileGrid.sampleSizeOf(key);
+		final int[] bounds = decodeBounds;
+		grid.getTileBounds(sample, TileGrid.columnOf(key),
+				TileGrid.rowOf(key), bounds);
+
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = sample;
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		try {
+			return decoder.decodeRegion(new Rect(bounds[0], bounds[1],
+					bounds[2], bounds[3]), options);
+		} catch (OutOfMemoryError e) {
+			// the cached tiles are enough to draw something
+			return null;
+		}
+	}
+
+	private void decodeBase() {
+		if (recycled)
+			return;
+
+		BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = baseSampleSize;
+		options.inPreferredConfig = Bitmap.Config.RGB_565;
+		final Bitmap decoded = BitmapFactory.decodeFile(path, options);
+		if (decoded == null)
+			return;
+
+		handler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				if (recycled) {
+					decoded.recycle();
+				} else {
+					base = decoded;
+					invalidateSelf();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Frees the base layer, the tiles and the decoder. It can't be drawn
+	 * afterwards.
+	 */
+	void recycle() {
+		if (recycled)
+			return;
+
+		recycled = true;
+		cache.clear();
+		pending.clear();
+		if (base != null) {
+			base.recycle();
+			base = null;
+		}
+
+		// after the tiles being decoded
+		if (decoder != null) {
+			getDecodeExecutor().execute(new Runnable() {
+
+				@Override
+				public void run() {
+					decoder.recycle();
+				}
+			});
+		}
+	}
+
+	@Override
+	public int getIntrinsicWidth() {
+		return grid.getImageWidth();
+	}
+
+	@Override
+	public int getIntrinsicHeight() {
+		return grid.getImageHeight();
+	}
+
+	@Override
+	public void setAlpha(int alpha) {
+		paint.setAlpha(alpha);
+		invalidateSelf();
+	}
+
+	@Override
+	public void setColorFilter(ColorFilter cf) {
+		paint.setColorFilter(cf);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		return PixelFormat.TRANSLUCENT;
+	}
+
+	private static synchronized ExecutorService getDecodeExecutor() {
+		if (decodeExecutor == null) {
+			decodeExecutor = Executors
+					.newSingleThreadExecutor(new ThreadFactory() {
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "TileDecoder");
+							thread.setDaemon(true);
+							thread.setPriority(Thread.MIN_PRIORITY);
+							return thread;
+						}
+					});
+		}
+		return decodeExecutor;
+	}
+
+	/**
+	 * The BitmapRegionDecoder, in its own class so older versions never load
+	 * BitmapRegionDecoder
+	 */
+	private static class RegionDecoder {
+
+		private final BitmapRegionDecoder decoder;
+
+		RegionDecoder(String path) throws IOException {
+			decoder = BitmapRegionDecoder.newInstance(path, false);
+		}
+
+		Bitmap decodeRegion(Rect rect, BitmapFactory.Options options) {
+			return decoder.decodeRegion(rect, options);
+		}
+
+		void recycle() {
+			decoder.recycle();
+		}
+	}
+}
@@ -1,11 +1,15 @@
 package cl.betomaluje.android.uberlib.components;
 
+import java.io.IOException;
+
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.PointF;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.os.Debug;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
@@ -17,6 +21,9 @@ import android.view.animation.Animation.AnimationListener;
 import android.view.animation.ScaleAnimation;
 import android.widget.ImageView;
 import android.widget.ImageView.ScaleType;
+import cl.betomaluje.android.uberlib.FrameScheduler;
+import cl.betomaluje.android.uberlib.TouchInstrumentation;
+import cl.betomaluje.android.uberlib.interfaces.FrameAllocationListener;
 
 public class TouchImageView extends ImageView {
 
@@ -35,6 +42,9 @@ public class TouchImageView extends ImageView {
 	float maxScale = 3f;
 	float[] m;
 
+	// the matrix before each touch event, to know if it changed
+	float[] previous;
+
 	float currentScale = minScale;
 
 	int viewWidth, viewHeight;
@@ -47,6 +57,36 @@ public class TouchImageView extends ImageView {
 
 	GestureDetector gestureDetector;
 
+	// measures and records the touch listener, null unless it's set
+	TouchInstrumentation instrumentation;
+
+	// the image decoded by tiles, null unless setImageTiled() was used
+	TiledImageDrawable tiledImage;
+
+	// scratch to find the part of the tiled image in the view
+	final Matrix viewportMatrix = new Matrix();
+	final Matrix viewportInverse = new Matrix();
+	final RectF viewport = new RectF();
+
+	// reports the allocations of the touch listener, null unless it's set
+	FrameAllocationListener allocationListener;
+	FrameScheduler allocationScheduler;
+	int frameAllocations, frameAllocatedBytes;
+
+	private final FrameScheduler.Callback allocationFrame = new FrameScheduler.Callback() {
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			final FrameAllocationListener listener = allocationListener;
+			if (listener != null)
+				listener.onFrameAllocations(frameAllocations,
+						frameAllocatedBytes);
+
+			frameAllocations = 0;
+			frameAllocatedBytes = 0;
+		}
+	};
+
 	Context context;
 
 	// for rotation
@@ -66,6 +106,45 @@ public class TouchImageView extends ImageView {
 		this.gestureDetector = gd;
 	}
 
+	/**
+	 * Sets the instrumentation that measures the touch listener (including
+	 * the gesture detectors it feeds) for each event, and can record them
+	 *
+	 * @param instrumentation
+	 *            : the instrumentation, null to stop measuring
+	 */
+	public void setInstrumentation(TouchInstrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public TouchInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+	/**
+	 * Sets a listener for the objects the touch listener (including the
+	 * gesture detectors it feeds) allocates in each frame, for tests. It turns
+	 * on the allocation counting of the VM, which slows every allocation
+	 * down, so don't leave it set.
+	 *
+	 * @param listener
+	 *            : the listener, null to stop counting
+	 */
+	public void setFrameAllocationListener(FrameAllocationListener listener) {
+		if (listener != null && allocationListener == null) {
+			if (allocationScheduler == null)
+				allocationScheduler = new FrameScheduler(allocationFrame);
+			Debug.startAllocCounting();
+		} else if (listener == null && allocationListener != null) {
+			allocationScheduler.cancel();
+			Debug.stopAllocCounting();
+		}
+
+		frameAllocations = 0;
+		frameAllocatedBytes = 0;
+		this.allocationListener = listener;
+	}
+
 	private void sharedConstructing(Context context) {
 		super.setClickable(true);
 		this.context = context;
@@ -73,6 +152,7 @@ public class TouchImageView extends ImageView {
 
 		matrix = new Matrix();
 		m = new float[9];
+		previous = new float[9];
 		setImageMatrix(matrix);
 		setScaleType(ScaleType.MATRIX);
 
@@ -80,39 +160,54 @@ public class TouchImageView extends ImageView {
 
 			@Override
 			public boolean onTouch(View v, MotionEvent event) {
+				final TouchInstrumentation instrumentation = TouchImageView.this.instrumentation;
+				final long began = instrumentation == null ? 0
+						: instrumentation.begin(event);
+
+				final boolean counting = allocationListener != null;
+				final int allocations = counting ? Debug.getThreadAllocCount()
+						: 0;
+				final int allocatedBytes = counting ? Debug
+						.getThreadAllocSize() : 0;
+
+				matrix.getValues(previous);
+
 				if (mScaleDetector != null)
 					mScaleDetector.onTouchEvent(event);
 
 				if (gestureDetector != null)
 					gestureDetector.onTouchEvent(event);
 
-				PointF curr = new PointF(event.getX(), event.getY());
+				final float currX = event.getX();
+				final float currY = event.getY();
 
 				switch (event.getAction()) {
 				case MotionEvent.ACTION_DOWN:
-					last.set(curr);
-					start.set(last);
+					last.set(currX, currY);
+					start.set(currX, currY);
 					mode = DRAG;
 					break;
 
 				case MotionEvent.ACTION_MOVE:
 					if (mode == DRAG) {
-						float deltaX = curr.x - last.x;
-						float deltaY = curr.y - last.y;
+						float deltaX = currX - last.x;
+						float deltaY = currY - last.y;
 						float fixTransX = getFixDragTrans(deltaX, viewWidth,
 								origWidth * saveScale);
 						float fixTransY = getFixDragTrans(deltaY, viewHeight,
 								origHeight * saveScale);
-						matrix.postTranslate(fixTransX, fixTransY);
-						fixTrans();
-						last.set(curr.x, curr.y);
+						if (fixTransX != 0 || fixTransY != 0) {
+							matrix.postTranslate(fixTransX, fixTransY);
+							fixTrans();
+						}
+						last.set(currX, currY);
 					}
 					break;
 
 				case MotionEvent.ACTION_UP:
 					mode = NONE;
-					int xDiff = (int) Math.abs(curr.x - start.x);
-					int yDiff = (int) Math.abs(curr.y - start.y);
+					int xDiff = (int) Math.abs(currX - start.x);
+					int yDiff = (int) Math.abs(currY - start.y);
 					if (xDiff < CLICK && yDiff < CLICK)
 						performClick();
 					break;
@@ -122,8 +217,22 @@ public class TouchImageView extends ImageView {
 					break;
 				}
 
-				setImageMatrix(matrix);
-				invalidate();
+				// only redraw if the drag or the zoom moved the image
+				if (matrixChanged()) {
+					setImageMatrix(matrix);
+					invalidate();
+				}
+
+				if (counting) {
+					frameAllocations += Debug.getThreadAllocCount()
+							- allocations;
+					frameAllocatedBytes += Debug.getThreadAllocSize()
+							- allocatedBytes;
+					allocationScheduler.schedule();
+				}
+
+				if (instrumentation != null)
+					instrumentation.end(began);
 				return true; // indicate event was handled
 			}
 
@@ -134,6 +243,56 @@ public class TouchImageView extends ImageView {
 		maxScale = x;
 	}
 
+	/**
+	 * Shows an image file too large to decode whole, like a camera photo. It
+	 * is decoded by tiles: only the ones in the view, at the resolution of
+	 * the current zoom, on a background thread and over a low resolution
+	 * version of the whole image, so zooming in never holds the full
+	 * resolution bitmap. Before Android 2.3.3 only the low resolution version
+	 * is shown.
+	 * 
+	 * @param path
+	 *            : the image file
+	 * @throws IOException
+	 *             if it can't be decoded
+	 */
+	public void setImageTiled(String path) throws IOException {
+		TiledImageDrawable drawable = new TiledImageDrawable(path);
+		setImageDrawable(drawable);
+		tiledImage = drawable;
+
+		// fit the new image to the view
+		saveScale = currentScale = minScale;
+		oldMeasuredWidth = oldMeasuredHeight = 0;
+		requestLayout();
+	}
+
+	/**
+	 * Sets the most memory the tiles of setImageTiled() can take. It should
+	 * hold the tiles of the whole view at least, or only the low resolution
+	 * version is shown. By default it's an eighth of the heap.
+	 * 
+	 * @param bytes
+	 *            : the size of the cache, in bytes
+	 */
+	public void setTileCacheSize(long bytes) {
+		if (tiledImage == null)
+			throw new IllegalStateException(
+					"You must set a tiled image. Please use setImageTiled() method.");
+
+		tiledImage.setCacheSize(bytes);
+	}
+
+	@Override
+	public void setImageDrawable(Drawable drawable) {
+		// the tiles of the previous image aren't needed anymore
+		if (tiledImage != null && drawable != tiledImage) {
+			tiledImage.recycle();
+			tiledImage = null;
+		}
+		super.setImageDrawable(drawable);
+	}
+
 	private class ScaleListener extends
 			ScaleGestureDetector.SimpleOnScaleGestureListener {
 
@@ -171,6 +330,18 @@ public class TouchImageView extends ImageView {
 		}
 	}
 
+	/**
+	 * Checks if the matrix changed since it was saved in previous
+	 */
+	boolean matrixChanged() {
+		matrix.getValues(m);
+		for (int i = 0; i < m.length; i++) {
+			if (m[i] != previous[i])
+				return true;
+		}
+		return false;
+	}
+
 	void fixTrans() {
 		matrix.getValues(m);
 		float transX = m[Matrix.MTRANS_X];
@@ -251,9 +422,12 @@ public class TouchImageView extends ImageView {
 
 			origWidth = viewWidth - 2 * redundantXSpace;
 			origHeight = viewHeight - 2 * redundantYSpace;
-			setImageMatrix(matrix);
 		}
 		fixTrans();
+
+		// the touch listener only pushes the matrix when it changes it, so
+		// push what the fit and fixTrans() changed here
+		setImageMatrix(matrix);
 	}
 
 	public void rotate(float angleRotation) {
@@ -268,6 +442,22 @@ public class TouchImageView extends ImageView {
 		int width = getWidth() / 2;
 		int height = getHeight() / 2;
 
+		if (tiledImage != null) {
+			// the part of the image in the view, for its tiles: the view
+			// mapped back through the rotation and the matrix, whose
+			// bounding box is what the rotated view shows
+			viewportMatrix.set(matrix);
+			viewportMatrix.postRotate(angleRotation, width, height);
+			if (viewportMatrix.invert(viewportInverse)) {
+				viewport.set(0, 0, viewWidth, viewHeight);
+				viewportInverse.mapRect(viewport);
+
+				matrix.getValues(m);
+				tiledImage.setViewport(viewport.left, viewport.top,
+						viewport.right, viewport.bottom, m[Matrix.MSCALE_X]);
+			}
+		}
+
 		canvas.save(Canvas.MATRIX_SAVE_FLAG);
 		canvas.rotate(angleRotation, width, height);
 		super.onDraw(canvas);
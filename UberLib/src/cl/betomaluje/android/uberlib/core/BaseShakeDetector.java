@@ -0,0 +1,139 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Parameters and listener shared by the shake detectors, so
+ * ShakeEventListener can configure any of them the same way.
+ *
+ * @author Alberto Maluje
+ */
+public abstract class BaseShakeDetector implements ShakeDetector {
+
+	/** Minimum movement force to consider. */
+	protected int MIN_FORCE = 10;
+
+	/**
+	 * Minimum times in a shake gesture that the direction of movement needs to
+	 * change.
+	 */
+	protected int MIN_DIRECTION_CHANGE = 3;
+
+	/** Maximum pause between movements. */
+	protected int MAX_PAUSE_BETWEEN_DIRECTION_CHANGE = 200;
+
+	/** Maximum allowed time for shake gesture. */
+	protected int MAX_TOTAL_DURATION_OF_SHAKE = 400;
+
+	/**
+	 * How many movements are considered so far. The number of shakes to be
+	 * done.
+	 */
+	protected int mDirectionChangeCount = 0;
+
+	/** Listener that is called when shake is detected. */
+	protected Listener mShakeListener;
+
+	/** Time source for the samples that come without one. */
+	protected Clock mClock = Clock.SYSTEM;
+
+	@Override
+	public void setListener(Listener listener) {
+		mShakeListener = listener;
+	}
+
+	/**
+	 * Processes a new accelerometer sample taken now, according to the clock
+	 * of the detector
+	 *
+	 * @param x
+	 *            : acceleration on the x axis (m/s^2)
+	 * @param y
+	 *            : acceleration on the y axis (m/s^2)
+	 * @param z
+	 *            : acceleration on the z axis (m/s^2)
+	 */
+	public void onSample(float x, float y, float z) {
+		onSample(x, y, z, mClock.nanoTime());
+	}
+
+	public Clock getClock() {
+		return mClock;
+	}
+
+	/**
+	 * Sets the time source for the samples given without a timestamp
+	 * @param clock: the clock
+	 */
+	public void setClock(Clock clock) {
+		mClock = clock;
+	}
+
+	/**
+	 * Converts one of the time parameters (in milliseconds) to nanoseconds
+	 */
+	protected static long toNanos(int millis) {
+		return millis * 1000000L;
+	}
+
+	protected void notifyShake() {
+		if (mShakeListener != null)
+			mShakeListener.onShake();
+	}
+
+	protected void notifyStopShake() {
+		if (mShakeListener != null)
+			mShakeListener.onStopShake();
+	}
+
+	public int getMinForce() {
+		return MIN_FORCE;
+	}
+
+	/**
+	 * Sets the minimum movement force to consider on shake
+	 * @param minForce: the minimum force
+	 */
+	public void setMinForce(int minForce) {
+		MIN_FORCE = minForce;
+	}
+
+	public int getMinDirectionChange() {
+		return MIN_DIRECTION_CHANGE;
+	}
+
+	/**
+	 * Minimum times in a shake gesture that the direction of movement needs to
+	 * change.
+	 * @param minDirectionChange
+	 */
+	public void setMinDirectionChange(int minDirectionChange) {
+		MIN_DIRECTION_CHANGE = minDirectionChange;
+	}
+
+	public int getMaxPauseBetweenDirectionChange() {
+		return MAX_PAUSE_BETWEEN_DIRECTION_CHANGE;
+	}
+
+	/** Sets the number of maximum pause between shakes
+	 *
+	 * @param pause: time in milliseconds
+	 */
+	public void setMaxPauseBetweenDirectionChange(int pause) {
+		MAX_PAUSE_BETWEEN_DIRECTION_CHANGE = pause;
+	}
+
+	public int getMaxTotalDurationOfShake() {
+		return MAX_TOTAL_DURATION_OF_SHAKE;
+	}
+
+	public void setMaxTotalDurationOfShake(int maxTotalDurationOfShake) {
+		MAX_TOTAL_DURATION_OF_SHAKE = maxTotalDurationOfShake;
+	}
+
+	public int getDirectionChangeCount() {
+		return mDirectionChangeCount;
+	}
+
+	public void setDirectionChangeCount(int directionChangeCount) {
+		this.mDirectionChangeCount = directionChangeCount;
+	}
+}
@@ -0,0 +1,113 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Conversions between the pointer angle, the position on the arc and the
+ * progress of CircleSeekBar. The pointer angle is in radians as given by
+ * atan2, while the arc positions ("radians" in CircleSeekBar) are whole
+ * degrees starting at the top of the circle.
+ *
+ * @author Alberto Maluje
+ */
+public final class CircleSeekBarMath {
+
+	private CircleSeekBarMath() {
+	}
+
+	/**
+	 * Calculates the progress for a position on the arc
+	 *
+	 * @param angle
+	 *            : the position on the arc, in degrees
+	 * @param startAngle
+	 *            : where the arc starts, in degrees
+	 * @param endAngle
+	 *            : where the arc ends, in degrees
+	 * @param max
+	 *            : the max progress
+	 * @return the progress
+	 */
+	public static int textFromAngle(float angle, int startAngle, int endAngle,
+			int max) {
+		float m = angle - startAngle;
+
+		float f = (float) ((endAngle - startAngle) / m);
+
+		return (int) (max / f);
+	}
+
+	/**
+	 * Calculates the progress for the given angle measured from the start of
+	 * the arc
+	 */
+	public static int textFromStartAngle(float angle, int startAngle,
+			int endAngle, int max) {
+		float m = angle;
+
+		float f = (float) ((endAngle - startAngle) / m);
+
+		return (int) (max / f);
+	}
+
+	/**
+	 * Calculates the position on the circle (in degrees, 90 being the top) for
+	 * a progress
+	 *
+	 * @param position
+	 *            : the progress
+	 * @param max
+	 *            : the max progress
+	 * @return the position in degrees
+	 */
+	public static double angleFromText(int position, int max) {
+		if (position == 0 || position >= max)
+			return (float) 90;
+
+		double f = (double) max / (double) position;
+
+		double f_r = 360 / f;
+
+		double ang = f_r + 90;
+
+		return ang;
+	}
+
+	/**
+	 * Converts the pointer angle (in radians, as given by atan2) to a position
+	 * on the arc (in degrees, 0 being the top)
+	 */
+	public static int radiansFromAngle(float angle) {
+		float unit = (float) (angle / (2 * Math.PI));
+		if (unit < 0) {
+			unit += 1;
+		}
+		int radians = (int) ((unit * 360) - ((360 / 4) * 3));
+		if (radians < 0)
+			radians += 360;
+		return radians;
+	}
+
+	/**
+	 * Converts a position on the arc (in degrees, 0 being the top) to the
+	 * pointer angle (in radians)
+	 */
+	public static float angleFromRadians(int radians) {
+		return (float) (((radians + 270) * (2 * Math.PI)) / 360);
+	}
+
+	/**
+	 * Rounds a progress down to the given interval
+	 *
+	 * @param progress
+	 *            : the progress
+	 * @param interval
+	 *            : the interval, 0 for none
+	 * @return the progress with the interval
+	 */
+	public static int progressWithInterval(int progress, int interval) {
+		if (interval != 0) {
+			progress = progress / interval;
+			progress = progress * interval;
+		}
+		return progress;
+	}
+}
@@ -0,0 +1,30 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Source of monotonic time for the detectors. On a device the time comes with
+ * each sensor sample, this is used when it doesn't (for example to replay a
+ * recorded trace deterministically with a {@link ManualClock}).
+ *
+ * @author Alberto Maluje
+ */
+public interface Clock {
+
+	/**
+	 * The JVM's monotonic clock
+	 */
+	public static final Clock SYSTEM = new Clock() {
+
+		@Override
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+	};
+
+	/**
+	 * Gets the current time. Only differences between two values are
+	 * meaningful.
+	 *
+	 * @return the time, in nanoseconds
+	 */
+	long nanoTime();
+}
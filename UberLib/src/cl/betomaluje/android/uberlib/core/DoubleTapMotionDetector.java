@@ -0,0 +1,141 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Detects two taps on the body of the device. A tap is a short spike of the
+ * shared linear acceleration magnitude; a longer one is a movement and
+ * cancels the taps so far. Two taps close enough in time, after a quiet
+ * moment, are a double tap.
+ *
+ * @author Alberto Maluje
+ */
+public class DoubleTapMotionDetector implements MotionDetector {
+
+	/** Default minimum force of a tap, in m/s^2 */
+	public static final float DEFAULT_TAP_FORCE = 3f;
+
+	/** Default maximum duration of a tap, in milliseconds */
+	public static final int DEFAULT_MAX_TAP_DURATION = 80;
+
+	/** Default minimum time between the two taps, in milliseconds */
+	public static final int DEFAULT_MIN_GAP = 100;
+
+	/** Default maximum time between the two taps, in milliseconds */
+	public static final int DEFAULT_MAX_GAP = 500;
+
+	/** Part of the tap force the spike must go down to for it to end */
+	private static final float RELEASE_FACTOR = 0.5f;
+
+	private float tapForce = DEFAULT_TAP_FORCE;
+	private long maxTapDuration = DEFAULT_MAX_TAP_DURATION * 1000000L;
+	private long minGap = DEFAULT_MIN_GAP * 1000000L;
+	private long maxGap = DEFAULT_MAX_GAP * 1000000L;
+
+	/** True while the force is above the tap force */
+	private boolean inSpike = false;
+	private long spikeStart;
+
+	/** When the previous spike ended, to require quiet before a first tap */
+	private long lastSpikeEnd = Long.MIN_VALUE;
+
+	/** When the first tap started, if there is one */
+	private boolean hasFirstTap = false;
+	private long firstTap;
+
+	@Override
+	public void onMotion(MotionState state, MotionProcessor.Listener listener) {
+		final float force = state.linearMagnitude;
+		final long now = state.timestamp;
+
+		if (!inSpike) {
+			if (force > tapForce) {
+				inSpike = true;
+				spikeStart = now;
+			} else if (hasFirstTap && now - firstTap > maxGap) {
+				hasFirstTap = false;
+			}
+			return;
+		}
+
+		if (force > tapForce * RELEASE_FACTOR)
+			return;
+
+		inSpike = false;
+		final long previousEnd = lastSpikeEnd;
+		lastSpikeEnd = now;
+
+		if (now - spikeStart > maxTapDuration) {
+			// a movement, not a tap
+			hasFirstTap = false;
+			return;
+		}
+
+		if (hasFirstTap) {
+			final long gap = spikeStart - firstTap;
+			hasFirstTap = false;
+			if (gap >= minGap && gap <= maxGap) {
+				listener.onMotionGesture(MotionProcessor.GESTURE_DOUBLE_TAP,
+						now);
+				return;
+			}
+		}
+
+		// a first tap must come after a quiet moment, so a shake isn't taken
+		// as a sequence of taps
+		if (previousEnd == Long.MIN_VALUE || spikeStart - previousEnd > maxGap) {
+			hasFirstTap = true;
+			firstTap = spikeStart;
+		}
+	}
+
+	@Override
+	public void reset() {
+		inSpike = false;
+		hasFirstTap = false;
+		lastSpikeEnd = Long.MIN_VALUE;
+	}
+
+	public float getTapForce() {
+		return tapForce;
+	}
+
+	/**
+	 * Sets the minimum force of a tap
+	 *
+	 * @param force
+	 *            : the force, in m/s^2
+	 */
+	public void setTapForce(float force) {
+		this.tapForce = force;
+	}
+
+	public int getMaxTapDuration() {
+		return (int) (maxTapDuration / 1000000L);
+	}
+
+	/**
+	 * Sets the maximum duration of a tap, longer spikes are movements
+	 *
+	 * @param millis
+	 *            : the duration, in milliseconds
+	 */
+	public void setMaxTapDuration(int millis) {
+		this.maxTapDuration = millis * 1000000L;
+	}
+
+	/**
+	 * Sets the range of time between the two taps
+	 *
+	 * @param minMillis
+	 *            : minimum time, in milliseconds
+	 * @param maxMillis
+	 *            : maximum time, in milliseconds
+	 */
+	public void setGap(int minMillis, int maxMillis) {
+		if (minMillis < 0 || maxMillis < minMillis)
+			throw new IllegalArgumentException("Invalid gap: " + minMillis
+					+ " - " + maxMillis);
+
+		this.minGap = minMillis * 1000000L;
+		this.maxGap = maxMillis * 1000000L;
+	}
+}
@@ -0,0 +1,515 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Drop targets of a drag, as rectangles indexed in a uniform grid: each cell
+ * of the grid knows the targets that overlap it, so finding the target under
+ * the pointer only checks the few targets of its cell however many are
+ * registered. While dragging it reports when the pointer enters, moves over
+ * and leaves each target, and where it's dropped.
+ * <p>
+ * When targets overlap, the last one registered wins. Coordinates are in
+ * pixels, and anything outside the area of the grid is outside every target.
+ * Moving the pointer doesn't allocate; registering a target may grow the
+ * cells it overlaps.</p>
+ * <p>
+ * A drag moves the pointer a few pixels at a time, so onDragMove keeps the
+ * part of the cell around the pointer where the target under it can't
+ * change, and while the pointer stays there it doesn't check the targets of
+ * the cell again.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class DropTargetRegistry {
+
+	/** Returned when the pointer isn't over any target */
+	public static final int NO_TARGET = -1;
+
+	/** Default size of the cells, in pixels */
+	public static final int DEFAULT_CELL_SIZE = 96;
+
+	/** Targets each cell can hold before growing */
+	private static final int INITIAL_CELL_CAPACITY = 4;
+
+	/** Targets the registry can hold before growing */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Interface for the drag over the targets, the ids are the ones given to
+	 * register()
+	 */
+	public interface Listener {
+
+		void onDragEnter(int target, int x, int y);
+
+		void onDragOver(int target, int x, int y);
+
+		void onDragLeave(int target);
+
+		void onDrop(int target, int x, int y);
+	}
+
+	private final int cellSize;
+	private final int columns;
+	private final int rows;
+	private final int width;
+	private final int height;
+
+	/** Slots of the targets overlapping each cell */
+	private final int[][] cells;
+	private final int[] cellCounts;
+
+	// per target slot
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private int[] lefts = new int[INITIAL_CAPACITY];
+	private int[] tops = new int[INITIAL_CAPACITY];
+	private int[] rights = new int[INITIAL_CAPACITY];
+	private int[] bottoms = new int[INITIAL_CAPACITY];
+
+	/** Registration order of each slot, the highest is on top */
+	private long[] orders = new long[INITIAL_CAPACITY];
+
+	private int size = 0;
+	private long nextOrder = 0;
+
+	private Listener listener;
+
+	/** Slot of the target under the pointer during a drag, or NO_TARGET */
+	private int current = NO_TARGET;
+
+	// the part of a cell where the pointer is over stableSlot for sure, empty
+	// when targets change
+	private int stableLeft, stableTop, stableRight, stableBottom;
+	private int stableSlot = NO_TARGET;
+
+	/**
+	 * @param width
+	 *            , height: the area of the targets, usually the screen, in
+	 *            pixels
+	 */
+	public DropTargetRegistry(int width, int height) {
+		this(width, height, DEFAULT_CELL_SIZE);
+	}
+
+	/**
+	 * @param width
+	 *            , height: the area of the targets, usually the screen, in
+	 *            pixels
+	 * @param cellSize
+	 *            : the side of the cells, in pixels. About the size of the
+	 *            smallest targets.
+	 */
+	public DropTargetRegistry(int width, int height, int cellSize) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid area: " + width + "x"
+					+ height);
+		if (cellSize <= 0)
+			throw new IllegalArgumentException("Invalid cell size: "
+					+ cellSize);
+
+		this.width = width;
+		this.height = height;
+		this.cellSize = cellSize;
+		this.columns = (width + cellSize - 1) / cellSize;
+		this.rows = (height + cellSize - 1) / cellSize;
+		this.cells = new int[columns * rows][];
+		this.cellCounts = new int[columns * rows];
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Adds a target, or moves it if its id is already registered
+	 *
+	 * @param id
+	 *            : the id given back in the callbacks, not NO_TARGET
+	 * @param left
+	 *            , top: the top left corner, inclusive
+	 * @param right
+	 *            , bottom: the bottom right corner, exclusive
+	 */
+	public void register(int id, int left, int top, int right, int bottom) {
+		if (id == NO_TARGET)
+			throw new IllegalArgumentException("Invalid target id: " + id);
+		if (right <= left || bottom <= top)
+			throw new IllegalArgumentException("Empty target: " + left + ","
+					+ top + " - " + right + "," + bottom);
+
+		unregister(id);
+
+		if (size == ids.length)
+			grow();
+
+		final int slot = size++;
+		ids[slot] = id;
+		lefts[slot] = left;
+		tops[slot] = top;
+		rights[slot] = right;
+		bottoms[slot] = bottom;
+		orders[slot] = nextOrder++;
+
+		addToCells(slot);
+		invalidateStable();
+	}
+
+	/**
+	 * Removes a target. If the pointer is over it, it leaves it.
+	 *
+	 * @param id
+	 *            : the id of the target
+	 * @return false if it wasn't registered
+	 */
+	public boolean unregister(int id) {
+		final int slot = findSlot(id);
+		if (slot < 0)
+			return false;
+
+		if (current == slot) {
+			current = NO_TARGET;
+			if (listener != null)
+				listener.onDragLeave(id);
+		}
+
+		removeFromCells(slot);
+		invalidateStable();
+
+		// the last target takes the place of the removed one
+		final int last = --size;
+		if (slot != last) {
+			removeFromCells(last);
+			ids[slot] = ids[last];
+			lefts[slot] = lefts[last];
+			tops[slot] = tops[last];
+			rights[slot] = rights[last];
+			bottoms[slot] = bottoms[last];
+			orders[slot] = orders[last];
+			addToCells(slot);
+
+			if (current == last)
+				current = slot;
+		}
+		return true;
+	}
+
+	/**
+	 * Removes every target, without callbacks
+	 */
+	public void clear() {
+		for (int i = 0; i < cellCounts.length; i++)
+			cellCounts[i] = 0;
+		size = 0;
+		current = NO_TARGET;
+		invalidateStable();
+	}
+
+	/**
+	 * Finds the target at a point
+	 *
+	 * @param x
+	 *            , y: the point, in pixels
+	 * @return the id of the target, NO_TARGET if there is none
+	 */
+	public int findTarget(int x, int y) {
+		final int slot = findSlot(x, y);
+		return slot == NO_TARGET ? NO_TARGET : ids[slot];
+	}
+
+	/**
+	 * Finds the target at a point or, if there is none, the closest one
+	 * within a distance. It checks every target, use it once per drag (like
+	 * to pick where a released view goes) rather than on every move.
+	 *
+	 * @param x
+	 *            , y: the point, in pixels
+	 * @param maxDistance
+	 *            : the farthest a target can be from the point, in pixels
+	 * @return the id of the target, NO_TARGET if there is none
+	 */
+	public int findNearestTarget(int x, int y, int maxDistance) {
+		final int slot = findSlot(x, y);
+		if (slot != NO_TARGET)
+			return ids[slot];
+
+		int found = NO_TARGET;
+		long closest = (long) maxDistance * maxDistance;
+		for (int i = 0; i < size; i++) {
+			// distance to the closest point of the target
+			final long dx = Math.max(
+					Math.max(lefts[i] - x, x - rights[i] + 1), 0);
+			final long dy = Math.max(
+					Math.max(tops[i] - y, y - bottoms[i] + 1), 0);
+			final long distance = dx * dx + dy * dy;
+			if (distance < closest
+					|| (distance == closest && (found == NO_TARGET
+							|| orders[i] > orders[found]))) {
+				closest = distance;
+				found = i;
+			}
+		}
+		return found == NO_TARGET ? NO_TARGET : ids[found];
+	}
+
+	/**
+	 * Gets the rectangle of a target
+	 *
+	 * @param id
+	 *            : the id of the target
+	 * @param bounds
+	 *            : where to put its left, top, right and bottom
+	 * @return false if it isn't registered
+	 */
+	public boolean getBounds(int id, int[] bounds) {
+		final int slot = findSlot(id);
+		if (slot < 0)
+			return false;
+
+		bounds[0] = lefts[slot];
+		bounds[1] = tops[slot];
+		bounds[2] = rights[slot];
+		bounds[3] = bottoms[slot];
+		return true;
+	}
+
+	/**
+	 * Moves the pointer of the drag, reporting the targets it leaves and
+	 * enters or the one it's over
+	 *
+	 * @param x
+	 *            , y: the pointer, in pixels
+	 * @return the id of the target under the pointer, NO_TARGET if there is
+	 *         none
+	 */
+	public int onDragMove(int x, int y) {
+		final int slot = findDragSlot(x, y);
+
+		if (slot != current) {
+			if (current != NO_TARGET && listener != null)
+				listener.onDragLeave(ids[current]);
+
+			current = slot;
+
+			if (slot != NO_TARGET && listener != null)
+				listener.onDragEnter(ids[slot], x, y);
+		} else if (slot != NO_TARGET && listener != null) {
+			listener.onDragOver(ids[slot], x, y);
+		}
+
+		return slot == NO_TARGET ? NO_TARGET : ids[slot];
+	}
+
+	/**
+	 * Ends the drag at a point, reporting the drop to the target there
+	 *
+	 * @param x
+	 *            , y: the pointer, in pixels
+	 * @return the id of the target, NO_TARGET if it was dropped outside them
+	 */
+	public int onDrop(int x, int y) {
+		final int slot = findDragSlot(x, y);
+
+		if (current != NO_TARGET && current != slot && listener != null)
+			listener.onDragLeave(ids[current]);
+		current = NO_TARGET;
+
+		if (slot == NO_TARGET)
+			return NO_TARGET;
+
+		if (listener != null)
+			listener.onDrop(ids[slot], x, y);
+		return ids[slot];
+	}
+
+	/**
+	 * Ends the drag without a drop, leaving the current target
+	 */
+	public void cancel() {
+		if (current != NO_TARGET && listener != null)
+			listener.onDragLeave(ids[current]);
+		current = NO_TARGET;
+	}
+
+	/**
+	 * Gets the target under the pointer of the drag
+	 *
+	 * @return its id, NO_TARGET if there is none
+	 */
+	public int getCurrentTarget() {
+		return current == NO_TARGET ? NO_TARGET : ids[current];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	private int findSlot(int id) {
+		for (int slot = 0; slot < size; slot++) {
+			if (ids[slot] == id)
+				return slot;
+		}
+		return -1;
+	}
+
+	private int findSlot(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return NO_TARGET;
+
+		final int cell = (y / cellSize) * columns + x / cellSize;
+		final int[] slots = cells[cell];
+
+		int found = NO_TARGET;
+		for (int i = 0, count = cellCounts[cell]; i < count; i++) {
+			final int slot = slots[i];
+			if (x >= lefts[slot] && x < rights[slot] && y >= tops[slot]
+					&& y < bottoms[slot]
+					&& (found == NO_TARGET || orders[slot] > orders[found]))
+				found = slot;
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the target at the pointer of the drag, without checking the
+	 * targets again while the pointer stays in the part of the cell where the
+	 * last one found is for sure
+	 */
+	private int findDragSlot(int x, int y) {
+		if (x >= stableLeft && x < stableRight && y >= stableTop
+				&& y < stableBottom)
+			return stableSlot;
+
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			return NO_TARGET;
+
+		final int column = x / cellSize;
+		final int row = y / cellSize;
+		int left = column * cellSize;
+		int top = row * cellSize;
+		int right = Math.min(left + cellSize, width);
+		int bottom = Math.min(top + cellSize, height);
+
+		// the targets under the pointer don't change while it stays in the
+		// one on top, and the pointer is outside the rest, so one side of
+		// each separates it from the pointer: cut them out along that side
+		final int cell = row * columns + column;
+		final int[] slots = cells[cell];
+		int found = NO_TARGET;
+		for (int i = 0, count = cellCounts[cell]; i < count; i++) {
+			final int slot = slots[i];
+			if (x < lefts[slot])
+				right = Math.min(right, lefts[slot]);
+			else if (x >= rights[slot])
+				left = Math.max(left, rights[slot]);
+			else if (y < tops[slot])
+				bottom = Math.min(bottom, tops[slot]);
+			else if (y >= bottoms[slot])
+				top = Math.max(top, bottoms[slot]);
+			else if (found == NO_TARGET || orders[slot] > orders[found])
+				found = slot;
+		}
+
+		if (found != NO_TARGET) {
+			left = Math.max(left, lefts[found]);
+			top = Math.max(top, tops[found]);
+			right = Math.min(right, rights[found]);
+			bottom = Math.min(bottom, bottoms[found]);
+		}
+
+		stableLeft = left;
+		stableTop = top;
+		stableRight = right;
+		stableBottom = bottom;
+		stableSlot = found;
+		return found;
+	}
+
+	private void invalidateStable() {
+		stableLeft = stableRight = 0;
+		stableSlot = NO_TARGET;
+	}
+
+	private void addToCells(int slot) {
+		final int firstColumn = column(lefts[slot]);
+		final int lastColumn = column(rights[slot] - 1);
+		final int firstRow = row(tops[slot]);
+		final int lastRow = row(bottoms[slot] - 1);
+
+		for (int r = firstRow; r <= lastRow; r++) {
+			for (int c = firstColumn; c <= lastColumn; c++) {
+				final int cell = r * columns + c;
+				int[] slots = cells[cell];
+				if (slots == null) {
+					slots = cells[cell] = new int[INITIAL_CELL_CAPACITY];
+				} else if (cellCounts[cell] == slots.length) {
+					int[] grown = new int[slots.length * 2];
+					System.arraycopy(slots, 0, grown, 0, slots.length);
+					slots = cells[cell] = grown;
+				}
+				slots[cellCounts[cell]++] = slot;
+			}
+		}
+	}
+
+	private void removeFromCells(int slot) {
+		final int firstColumn = column(lefts[slot]);
+		final int lastColumn = column(rights[slot] - 1);
+		final int firstRow = row(tops[slot]);
+		final int lastRow = row(bottoms[slot] - 1);
+
+		for (int r = firstRow; r <= lastRow; r++) {
+			for (int c = firstColumn; c <= lastColumn; c++) {
+				final int cell = r * columns + c;
+				final int[] slots = cells[cell];
+				final int count = cellCounts[cell];
+				for (int i = 0; i < count; i++) {
+					if (slots[i] == slot) {
+						slots[i] = slots[count - 1];
+						cellCounts[cell] = count - 1;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Column of a coordinate, clamped to the grid
+	 */
+	private int column(int x) {
+		if (x < 0)
+			return 0;
+		return x >= width ? columns - 1 : x / cellSize;
+	}
+
+	/**
+	 * Row of a coordinate, clamped to the grid
+	 */
+	private int row(int y) {
+		if (y < 0)
+			return 0;
+		return y >= height ? rows - 1 : y / cellSize;
+	}
+
+	private void grow() {
+		final int capacity = ids.length * 2;
+		ids = copyOf(ids, capacity);
+		lefts = copyOf(lefts, capacity);
+		tops = copyOf(tops, capacity);
+		rights = copyOf(rights, capacity);
+		bottoms = copyOf(bottoms, capacity);
+
+		long[] grownOrders = new long[capacity];
+		System.arraycopy(orders, 0, grownOrders, 0, size);
+		orders = grownOrders;
+	}
+
+	private int[] copyOf(int[] array, int capacity) {
+		int[] grown = new int[capacity];
+		System.arraycopy(array, 0, grown, 0, size);
+		return grown;
+	}
+}
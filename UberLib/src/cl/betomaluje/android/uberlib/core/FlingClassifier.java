@@ -0,0 +1,351 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Classifies swipes from the whole movement of each pointer instead of the
+ * first and last event. The recent points of every pointer are kept in a
+ * fixed-capacity history and, when it goes up, a least-squares fit over the
+ * last HORIZON milliseconds gives its velocity and direction, so curved and
+ * diagonal swipes are classified by where they were heading when released.
+ * <p>
+ * It supports the 8 directions of {@link SwipeClassifier} and swipes with
+ * several fingers (all of them must go the same way). The thresholds are in
+ * density independent pixels and scaled with the display density. Processing
+ * an event doesn't allocate.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class FlingClassifier {
+
+	/** Maximum number of pointers tracked at the same time */
+	public static final int MAX_POINTERS = 10;
+
+	/** Points kept per pointer */
+	public static final int HISTORY = 20;
+
+	/** Age of the oldest point used for the velocity, in milliseconds */
+	public static final int HORIZON = 100;
+
+	/** Default minimum distance of a swipe, in dp */
+	public static final float DEFAULT_MIN_DISTANCE = 48;
+
+	/** Default minimum velocity of a swipe, in dp per second */
+	public static final float DEFAULT_MIN_VELOCITY = 200;
+
+	private float density;
+	private float minDistanceDp = DEFAULT_MIN_DISTANCE;
+	private float minVelocityDp = DEFAULT_MIN_VELOCITY;
+
+	// per pointer slot; the history of slot s starts at s * HISTORY
+	private final int[] ids = new int[MAX_POINTERS];
+	private final boolean[] down = new boolean[MAX_POINTERS];
+	private final float[] downX = new float[MAX_POINTERS];
+	private final float[] downY = new float[MAX_POINTERS];
+	private final float[] velocityX = new float[MAX_POINTERS];
+	private final float[] velocityY = new float[MAX_POINTERS];
+	private final int[] head = new int[MAX_POINTERS];
+	private final int[] count = new int[MAX_POINTERS];
+
+	private final float[] historyX = new float[MAX_POINTERS * HISTORY];
+	private final float[] historyY = new float[MAX_POINTERS * HISTORY];
+	private final long[] historyTime = new long[MAX_POINTERS * HISTORY];
+
+	/** Number of slots used by the current gesture */
+	private int used = 0;
+
+	/** False when a pointer didn't fit, nothing is recognized then */
+	private boolean valid = true;
+
+	/** Fingers of the last swipe recognized */
+	private int swipePointers = 0;
+
+	/**
+	 * @param density
+	 *            : the display density (DisplayMetrics.density)
+	 */
+	public FlingClassifier(float density) {
+		setDensity(density);
+	}
+
+	/**
+	 * Processes a touch event
+	 *
+	 * @param action
+	 *            : one of the TouchEventRecord.ACTION_* constants
+	 * @param id
+	 *            : the id of the pointer
+	 * @param x
+	 *            , y: position of the pointer, in pixels
+	 * @param time
+	 *            : time of the event, in milliseconds
+	 * @return the SwipeClassifier.SWIPE_* direction when the last pointer
+	 *         goes up after a swipe, SWIPE_NONE otherwise
+	 */
+	public int onTouchEvent(int action, int id, float x, float y, long time) {
+		switch (action) {
+		case TouchEventRecord.ACTION_DOWN:
+		case TouchEventRecord.ACTION_POINTER_DOWN:
+			if (action == TouchEventRecord.ACTION_DOWN)
+				clear();
+			addPointer(id, x, y, time);
+			break;
+
+		case TouchEventRecord.ACTION_MOVE: {
+			int slot = findSlot(id);
+			if (slot >= 0)
+				addPoint(slot, x, y, time);
+			break;
+		}
+
+		case TouchEventRecord.ACTION_POINTER_UP:
+		case TouchEventRecord.ACTION_UP: {
+			int slot = findSlot(id);
+			if (slot >= 0) {
+				addPoint(slot, x, y, time);
+				computeVelocity(slot);
+				down[slot] = false;
+			}
+
+			if (action == TouchEventRecord.ACTION_UP) {
+				int direction = valid ? classify() : SwipeClassifier.SWIPE_NONE;
+				clear();
+				return direction;
+			}
+			break;
+		}
+
+		case TouchEventRecord.ACTION_CANCEL:
+			clear();
+			break;
+		}
+
+		return SwipeClassifier.SWIPE_NONE;
+	}
+
+	/**
+	 * Processes a touch event
+	 *
+	 * @param record
+	 *            : the event
+	 * @return the SwipeClassifier.SWIPE_* direction when the last pointer
+	 *         goes up after a swipe, SWIPE_NONE otherwise
+	 */
+	public int onTouchEvent(TouchEventRecord record) {
+		return onTouchEvent(record.action, record.pointerId, record.x,
+				record.y, record.time);
+	}
+
+	private void clear() {
+		used = 0;
+		valid = true;
+	}
+
+	private void addPointer(int id, float x, float y, long time) {
+		if (used == MAX_POINTERS) {
+			valid = false;
+			return;
+		}
+
+		final int slot = used++;
+		ids[slot] = id;
+		down[slot] = true;
+		downX[slot] = x;
+		downY[slot] = y;
+		velocityX[slot] = 0;
+		velocityY[slot] = 0;
+		head[slot] = 0;
+		count[slot] = 0;
+		addPoint(slot, x, y, time);
+	}
+
+	/**
+	 * Finds the slot of a pointer that is down
+	 */
+	private int findSlot(int id) {
+		for (int slot = 0; slot < used; slot++) {
+			if (ids[slot] == id && down[slot])
+				return slot;
+		}
+		return -1;
+	}
+
+	private void addPoint(int slot, float x, float y, long time) {
+		final int index = slot * HISTORY + head[slot];
+		historyX[index] = x;
+		historyY[index] = y;
+		historyTime[index] = time;
+
+		head[slot] = head[slot] + 1 == HISTORY ? 0 : head[slot] + 1;
+		if (count[slot] < HISTORY)
+			count[slot]++;
+	}
+
+	/**
+	 * Least-squares fit of x(t) and y(t) over the recent points of a slot
+	 */
+	private void computeVelocity(int slot) {
+		final int base = slot * HISTORY;
+		final int newest = base + (head[slot] + HISTORY - 1) % HISTORY;
+		final long now = historyTime[newest];
+
+		// points in the horizon, newest first
+		int points = 0;
+		double sumT = 0, sumX = 0, sumY = 0;
+		for (int i = 0, index = newest; i < count[slot]; i++) {
+			final long age = now - historyTime[index];
+			if (age > HORIZON)
+				break;
+
+			sumT -= age;
+			sumX += historyX[index];
+			sumY += historyY[index];
+			points++;
+			index = index == base ? base + HISTORY - 1 : index - 1;
+		}
+
+		if (points < 2) {
+			velocityX[slot] = velocityY[slot] = 0;
+			return;
+		}
+
+		final double meanT = sumT / points;
+		final double meanX = sumX / points;
+		final double meanY = sumY / points;
+
+		double varT = 0, covX = 0, covY = 0;
+		for (int i = 0, index = newest; i < points; i++) {
+			final double t = -(now - historyTime[index]) - meanT;
+			varT += t * t;
+			covX += t * (historyX[index] - meanX);
+			covY += t * (historyY[index] - meanY);
+			index = index == base ? base + HISTORY - 1 : index - 1;
+		}
+
+		if (varT == 0) {
+			velocityX[slot] = velocityY[slot] = 0;
+			return;
+		}
+
+		// pixels per millisecond to pixels per second
+		velocityX[slot] = (float) (covX / varT * 1000);
+		velocityY[slot] = (float) (covY / varT * 1000);
+	}
+
+	/**
+	 * All the pointers must be a swipe in the same direction
+	 */
+	private int classify() {
+		int direction = SwipeClassifier.SWIPE_NONE;
+		for (int slot = 0; slot < used; slot++) {
+			final int last = slot * HISTORY + (head[slot] + HISTORY - 1)
+					% HISTORY;
+			int pointerDirection = classify(historyX[last] - downX[slot],
+					historyY[last] - downY[slot], velocityX[slot],
+					velocityY[slot]);
+
+			if (pointerDirection == SwipeClassifier.SWIPE_NONE)
+				return SwipeClassifier.SWIPE_NONE;
+			if (direction != SwipeClassifier.SWIPE_NONE
+					&& pointerDirection != direction)
+				return SwipeClassifier.SWIPE_NONE;
+			direction = pointerDirection;
+		}
+
+		if (direction != SwipeClassifier.SWIPE_NONE)
+			swipePointers = used;
+		return direction;
+	}
+
+	/**
+	 * Classifies the movement of one pointer with the thresholds of this
+	 * classifier
+	 *
+	 * @param dx
+	 *            , dy: the distance travelled, in pixels
+	 * @param vx
+	 *            , vy: the velocity when released, in pixels per second
+	 * @return one of the SwipeClassifier.SWIPE_* constants
+	 */
+	public int classify(float dx, float dy, float vx, float vy) {
+		final float speed = (float) Math.sqrt(vx * vx + vy * vy);
+		if (speed < minVelocityDp * density)
+			return SwipeClassifier.SWIPE_NONE;
+
+		// distance travelled in the direction it was released
+		if ((dx * vx + dy * vy) / speed < minDistanceDp * density)
+			return SwipeClassifier.SWIPE_NONE;
+
+		return SwipeClassifier.classifyDirection(vx, vy);
+	}
+
+	/**
+	 * Gets the number of fingers of the last swipe recognized
+	 */
+	public int getSwipePointerCount() {
+		return swipePointers;
+	}
+
+	/**
+	 * Gets the velocity of a pointer that went up in the current gesture, or
+	 * of the last one if the last pointer just went up
+	 *
+	 * @param slot
+	 *            : the order in which the pointer went down
+	 * @return the horizontal velocity, in pixels per second
+	 */
+	public float getVelocityX(int slot) {
+		return velocityX[slot];
+	}
+
+	/**
+	 * @see #getVelocityX(int)
+	 * @return the vertical velocity, in pixels per second
+	 */
+	public float getVelocityY(int slot) {
+		return velocityY[slot];
+	}
+
+	public float getDensity() {
+		return density;
+	}
+
+	/**
+	 * Sets the display density the thresholds are scaled with
+	 *
+	 * @param density
+	 *            : DisplayMetrics.density, 1 on a 160dpi screen
+	 */
+	public void setDensity(float density) {
+		if (density <= 0)
+			throw new IllegalArgumentException("Invalid density: " + density);
+
+		this.density = density;
+	}
+
+	public float getMinDistance() {
+		return minDistanceDp;
+	}
+
+	/**
+	 * Sets the minimum distance of a swipe
+	 *
+	 * @param dp
+	 *            : the distance, in density independent pixels
+	 */
+	public void setMinDistance(float dp) {
+		this.minDistanceDp = dp;
+	}
+
+	public float getMinVelocity() {
+		return minVelocityDp;
+	}
+
+	/**
+	 * Sets the minimum velocity of a swipe
+	 *
+	 * @param dpPerSecond
+	 *            : the velocity, in density independent pixels per second
+	 */
+	public void setMinVelocity(float dpPerSecond) {
+		this.minVelocityDp = dpPerSecond;
+	}
+}
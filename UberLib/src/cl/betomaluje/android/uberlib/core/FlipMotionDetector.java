@@ -0,0 +1,120 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Detects the device being turned face down (for example flip-to-mute) and
+ * face up again, from the shared gravity vector. The new position must be
+ * held for a while before it's reported, so the device going through it
+ * while being moved doesn't count.
+ *
+ * @author Alberto Maluje
+ */
+public class FlipMotionDetector implements MotionDetector {
+
+	/** Default maximum angle from lying flat, in degrees */
+	public static final float DEFAULT_ANGLE = 30f;
+
+	/** Default time a position must be held, in milliseconds */
+	public static final int DEFAULT_HOLD_TIME = 250;
+
+	/** Below this the gravity estimate isn't reliable (free fall, thrown) */
+	private static final float MIN_GRAVITY = 2f;
+
+	private static final int NONE = 0;
+
+	/** Cosine of the maximum angle from flat */
+	private float flatRatio;
+
+	private long holdTime;
+
+	/** Position last reported: GESTURE_FACE_DOWN, GESTURE_FACE_UP or NONE */
+	private int face = NONE;
+
+	/** Position being held and since when */
+	private int candidate = NONE;
+	private long candidateSince;
+
+	public FlipMotionDetector() {
+		this(DEFAULT_ANGLE, DEFAULT_HOLD_TIME);
+	}
+
+	/**
+	 * @param angle
+	 *            : maximum angle from lying flat, in degrees (0 - 90)
+	 * @param holdTime
+	 *            : time the position must be held, in milliseconds
+	 */
+	public FlipMotionDetector(float angle, int holdTime) {
+		setAngle(angle);
+		setHoldTime(holdTime);
+	}
+
+	@Override
+	public void onMotion(MotionState state, MotionProcessor.Listener listener) {
+		final float gravity = state.gravityMagnitude;
+		if (gravity < MIN_GRAVITY)
+			return;
+
+		final float ratioZ = state.gravityZ / gravity;
+
+		int position = NONE;
+		if (ratioZ <= -flatRatio)
+			position = MotionProcessor.GESTURE_FACE_DOWN;
+		else if (ratioZ >= flatRatio)
+			position = MotionProcessor.GESTURE_FACE_UP;
+
+		if (position != candidate) {
+			candidate = position;
+			candidateSince = state.timestamp;
+			return;
+		}
+
+		if (position == NONE || position == face)
+			return;
+
+		if (state.timestamp - candidateSince >= holdTime) {
+			face = position;
+			listener.onMotionGesture(position, state.timestamp);
+		}
+	}
+
+	@Override
+	public void reset() {
+		face = NONE;
+		candidate = NONE;
+		candidateSince = 0;
+	}
+
+	/**
+	 * Sets the maximum angle from lying flat to be face up or down
+	 *
+	 * @param angle
+	 *            : the angle, in degrees (0 - 90)
+	 */
+	public void setAngle(float angle) {
+		if (angle <= 0 || angle >= 90)
+			throw new IllegalArgumentException("Invalid flip angle: " + angle);
+
+		flatRatio = (float) Math.cos(Math.toRadians(angle));
+	}
+
+	public int getHoldTime() {
+		return (int) (holdTime / 1000000L);
+	}
+
+	/**
+	 * Sets the time a position must be held to be reported
+	 *
+	 * @param holdTime
+	 *            : the time, in milliseconds
+	 */
+	public void setHoldTime(int holdTime) {
+		this.holdTime = holdTime * 1000000L;
+	}
+
+	/**
+	 * Checks if the device was last reported face down
+	 */
+	public boolean isFaceDown() {
+		return face == MotionProcessor.GESTURE_FACE_DOWN;
+	}
+}
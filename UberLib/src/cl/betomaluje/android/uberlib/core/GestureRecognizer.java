@@ -0,0 +1,502 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * The gesture recognition of the library: a state machine over primitive
+ * touch events (see {@link TouchEventRecord}) that recognizes taps, double
+ * taps and swipes. SimpleGestureFilter, MyGestureDetector and
+ * AsyncGestureFilter are adapters on top of it, so there is one code path to
+ * tune and it runs on any thread or on a plain JVM.
+ * <p>
+ * A single tap is reported when the finger goes up without moving and
+ * confirmed when no second tap follows in time (on the next down, or from
+ * {@link #onTimeout(long)}); a double tap when a second finger goes down close
+ * to the first tap; and a swipe when the fingers go up after moving,
+ * classified according to the swipe mode:</p>
+ * <ul>
+ * <li>SWIPE_MODE_FOUR_WAY: the 4 directions of SimpleGestureFilter, with a
+ * minimum distance, a maximum distance and a minimum velocity.</li>
+ * <li>SWIPE_MODE_HORIZONTAL: left and right only, like MyGestureDetector,
+ * with a maximum distance off the horizontal path.</li>
+ * <li>SWIPE_MODE_VELOCITY: the 8 directions and multi-finger swipes of
+ * {@link FlingClassifier}, with its thresholds in dp.</li>
+ * </ul>
+ * The velocity is the least-squares fit of FlingClassifier, unless
+ * {@link #setLeastSquaresVelocity(boolean)} leaves the swipes of the first
+ * two modes to {@link #onFling}, with the velocity of the caller. Processing
+ * an event doesn't allocate.
+ *
+ * @author Alberto Maluje
+ */
+public class GestureRecognizer {
+
+	public final static int SWIPE_MODE_FOUR_WAY = 0;
+	public final static int SWIPE_MODE_HORIZONTAL = 1;
+	public final static int SWIPE_MODE_VELOCITY = 2;
+
+	/**
+	 * Interface for the recognized gestures.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param direction
+		 *            : one of the SwipeClassifier.SWIPE_* constants
+		 * @param pointers
+		 *            : number of fingers of the swipe
+		 */
+		void onSwipe(int direction, int pointers);
+
+		/**
+		 * Called when a finger goes up without moving
+		 */
+		void onSingleTap();
+
+		/**
+		 * Called when a single tap wasn't followed by a second one
+		 */
+		void onSingleTapConfirmed();
+
+		void onDoubleTap();
+	}
+
+	/**
+	 * Listener that ignores every gesture, to extend overriding only the
+	 * needed ones.
+	 */
+	public static class SimpleListener implements Listener {
+
+		@Override
+		public void onSwipe(int direction, int pointers) {
+		}
+
+		@Override
+		public void onSingleTap() {
+		}
+
+		@Override
+		public void onSingleTapConfirmed() {
+		}
+
+		@Override
+		public void onDoubleTap() {
+		}
+	}
+
+	private static final int STATE_IDLE = 0;
+
+	/** A finger is down and hasn't moved beyond the touch slop */
+	private static final int STATE_PRESSED = 1;
+
+	/** The finger moved beyond the touch slop */
+	private static final int STATE_MOVING = 2;
+
+	/** More than one finger: a multi-finger swipe or nothing */
+	private static final int STATE_MULTI = 3;
+
+	private int swipeMode = SWIPE_MODE_FOUR_WAY;
+
+	/** False when the swipes only come from onFling */
+	private boolean leastSquaresVelocity = true;
+
+	private int swipeMinDistance = 100;
+	private int swipeMaxDistance = 500;
+	private int swipeMinVelocity = 100;
+
+	private int touchSlop = 16;
+	private int doubleTapSlop = 100;
+	private int longPressTimeout = 500;
+	private int doubleTapTimeout = 300;
+
+	private final Listener listener;
+
+	/** History and velocity of every pointer */
+	private final FlingClassifier flingClassifier;
+
+	private int state = STATE_IDLE;
+	private int pointerId;
+	private int pointers;
+
+	private float downX, downY;
+	private long downTime;
+
+	/** True from the second down of a double tap until it goes up */
+	private boolean doubleTap;
+
+	/** Where and when the last unconfirmed single tap went up */
+	private boolean hasTap;
+	private float tapX, tapY;
+	private long tapTime;
+
+	/**
+	 * @param listener
+	 *            : the listener for the gestures
+	 */
+	public GestureRecognizer(Listener listener) {
+		this(listener, 1);
+	}
+
+	/**
+	 * @param listener
+	 *            : the listener for the gestures
+	 * @param density
+	 *            : the display density, for the thresholds in dp
+	 */
+	public GestureRecognizer(Listener listener, float density) {
+		if (listener == null)
+			throw new NullPointerException("Listener can't be null");
+
+		this.listener = listener;
+		this.flingClassifier = new FlingClassifier(density);
+	}
+
+	/**
+	 * Processes a touch event
+	 *
+	 * @param record
+	 *            : the event
+	 * @return true if the event is part of a recognized gesture
+	 */
+	public boolean onTouchEvent(TouchEventRecord record) {
+		return onTouchEvent(record.action, record.pointerId, record.x,
+				record.y, record.time);
+	}
+
+	/**
+	 * Processes a touch event. Moves of every pointer should be given,
+	 * including the historical ones of batched MotionEvents.
+	 *
+	 * @param action
+	 *            : one of the TouchEventRecord.ACTION_* constants, others are
+	 *            ignored
+	 * @param id
+	 *            : the id of the pointer
+	 * @param x
+	 *            , y: position of the pointer, in pixels
+	 * @param time
+	 *            : time of the event, in milliseconds
+	 * @return true if the event is part of a recognized gesture
+	 */
+	public boolean onTouchEvent(int action, int id, float x, float y, long time) {
+		final int direction = flingClassifier.onTouchEvent(action, id, x, y,
+				time);
+
+		switch (action) {
+		case TouchEventRecord.ACTION_DOWN:
+			return onDown(id, x, y, time);
+
+		case TouchEventRecord.ACTION_POINTER_DOWN:
+			pointers++;
+			state = STATE_MULTI;
+			return doubleTap;
+
+		case TouchEventRecord.ACTION_POINTER_UP:
+			pointers--;
+			return doubleTap;
+
+		case TouchEventRecord.ACTION_MOVE:
+			if (id == pointerId && state == STATE_PRESSED
+					&& distance(x - downX, y - downY) > touchSlop)
+				state = STATE_MOVING;
+			return doubleTap;
+
+		case TouchEventRecord.ACTION_UP:
+			return onUp(id, x, y, time, direction);
+
+		case TouchEventRecord.ACTION_CANCEL:
+			cancel();
+			return false;
+
+		default:
+			return false;
+		}
+	}
+
+	private boolean onDown(int id, float x, float y, long time) {
+		if (hasTap) {
+			if (time - tapTime <= doubleTapTimeout
+					&& distance(x - tapX, y - tapY) <= doubleTapSlop) {
+				hasTap = false;
+				doubleTap = true;
+			} else {
+				confirmTap();
+			}
+		}
+
+		state = STATE_PRESSED;
+		pointerId = id;
+		pointers = 1;
+		downX = x;
+		downY = y;
+		downTime = time;
+
+		if (doubleTap)
+			listener.onDoubleTap();
+		return doubleTap;
+	}
+
+	private boolean onUp(int id, float x, float y, long time,
+			int velocityDirection) {
+		boolean handled = doubleTap;
+		final int released = state;
+		state = STATE_IDLE;
+		pointers = 0;
+
+		if (doubleTap) {
+			doubleTap = false;
+			return handled;
+		}
+
+		if (released == STATE_PRESSED) {
+			if (time - downTime < longPressTimeout) {
+				hasTap = true;
+				tapX = x;
+				tapY = y;
+				tapTime = time;
+				listener.onSingleTap();
+				handled = true;
+			}
+		} else if (swipeMode == SWIPE_MODE_VELOCITY) {
+			if (velocityDirection != SwipeClassifier.SWIPE_NONE) {
+				listener.onSwipe(velocityDirection,
+						flingClassifier.getSwipePointerCount());
+				handled = true;
+			}
+		} else if (leastSquaresVelocity && released == STATE_MOVING
+				&& id == pointerId) {
+			// the only pointer, so its velocity is the first one
+			handled = onFling(downX, downY, x, y,
+					flingClassifier.getVelocityX(0),
+					flingClassifier.getVelocityY(0)) != SwipeClassifier.SWIPE_NONE;
+		}
+
+		return handled;
+	}
+
+	/**
+	 * Classifies a fling given by its ends and velocity (for example from a
+	 * GestureDetector) with the current swipe mode, and reports it
+	 *
+	 * @param x1
+	 *            , y1: where the fling started
+	 * @param x2
+	 *            , y2: where the fling ended
+	 * @param velocityX
+	 *            , velocityY: the velocity of the fling, in pixels per second
+	 * @return one of the SwipeClassifier.SWIPE_* constants
+	 */
+	public int onFling(float x1, float y1, float x2, float y2,
+			float velocityX, float velocityY) {
+		int direction;
+		switch (swipeMode) {
+		case SWIPE_MODE_HORIZONTAL:
+			direction = SwipeClassifier.classifyHorizontal(x1, y1, x2, y2,
+					velocityX, swipeMinDistance, swipeMaxDistance,
+					swipeMinVelocity);
+			break;
+
+		case SWIPE_MODE_VELOCITY:
+			direction = flingClassifier.classify(x2 - x1, y2 - y1, velocityX,
+					velocityY);
+			break;
+
+		default:
+			direction = SwipeClassifier.classify(x1, y1, x2, y2, velocityX,
+					velocityY, swipeMinDistance, swipeMaxDistance,
+					swipeMinVelocity);
+			break;
+		}
+
+		if (direction != SwipeClassifier.SWIPE_NONE)
+			listener.onSwipe(direction, 1);
+		return direction;
+	}
+
+	/**
+	 * Confirms the last single tap if no second tap can follow anymore. Call
+	 * it doubleTapTimeout after onSingleTap to get onSingleTapConfirmed
+	 * without waiting for the next touch.
+	 *
+	 * @param now
+	 *            : the current time, in the same clock as the events
+	 * @return true if the tap was confirmed
+	 */
+	public boolean onTimeout(long now) {
+		if (!hasTap || now - tapTime < doubleTapTimeout)
+			return false;
+
+		confirmTap();
+		return true;
+	}
+
+	private void confirmTap() {
+		hasTap = false;
+		listener.onSingleTapConfirmed();
+	}
+
+	/**
+	 * Forgets the gesture in progress, for example when events were lost
+	 */
+	public void cancel() {
+		flingClassifier.onTouchEvent(TouchEventRecord.ACTION_CANCEL, 0, 0, 0,
+				0);
+		state = STATE_IDLE;
+		hasTap = false;
+		doubleTap = false;
+		pointers = 0;
+	}
+
+	private static float distance(float dx, float dy) {
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Gets the number of pointers down
+	 */
+	public int getPointerCount() {
+		return pointers;
+	}
+
+	/**
+	 * Gets where the last single tap went up
+	 */
+	public float getTapX() {
+		return tapX;
+	}
+
+	/**
+	 * Gets where the last single tap went up
+	 */
+	public float getTapY() {
+		return tapY;
+	}
+
+	public int getSwipeMode() {
+		return swipeMode;
+	}
+
+	/**
+	 * Sets how swipes are classified
+	 *
+	 * @param mode
+	 *            : one of the SWIPE_MODE_* constants
+	 */
+	public void setSwipeMode(int mode) {
+		if (mode < SWIPE_MODE_FOUR_WAY || mode > SWIPE_MODE_VELOCITY)
+			throw new IllegalArgumentException("Invalid swipe mode: " + mode);
+
+		this.swipeMode = mode;
+	}
+
+	public boolean isLeastSquaresVelocity() {
+		return leastSquaresVelocity;
+	}
+
+	/**
+	 * Sets whether the swipes of SWIPE_MODE_FOUR_WAY and
+	 * SWIPE_MODE_HORIZONTAL are classified when the finger goes up, with the
+	 * least-squares velocity (the default), or only when {@link #onFling} is
+	 * called, with the velocity of the caller (for example the
+	 * VelocityTracker of a GestureDetector). SWIPE_MODE_VELOCITY always uses
+	 * the least-squares velocity.
+	 *
+	 * @param enabled
+	 *            : true to classify the swipes when the finger goes up
+	 */
+	public void setLeastSquaresVelocity(boolean enabled) {
+		this.leastSquaresVelocity = enabled;
+	}
+
+	/**
+	 * Gets the classifier of SWIPE_MODE_VELOCITY, to change its thresholds
+	 */
+	public FlingClassifier getFlingClassifier() {
+		return flingClassifier;
+	}
+
+	/**
+	 * Sets the maximum distance of a swipe on any axis (SWIPE_MODE_FOUR_WAY)
+	 * or off the horizontal path (SWIPE_MODE_HORIZONTAL)
+	 *
+	 * @param distance
+	 *            : the distance, in pixels
+	 */
+	public void setSwipeMaxDistance(int distance) {
+		this.swipeMaxDistance = distance;
+	}
+
+	/**
+	 * Sets the minimum distance of a swipe on its axis
+	 *
+	 * @param distance
+	 *            : the distance, in pixels
+	 */
+	public void setSwipeMinDistance(int distance) {
+		this.swipeMinDistance = distance;
+	}
+
+	/**
+	 * Sets the minimum velocity of a swipe on its axis
+	 *
+	 * @param velocity
+	 *            : the velocity, in pixels per second
+	 */
+	public void setSwipeMinVelocity(int velocity) {
+		this.swipeMinVelocity = velocity;
+	}
+
+	public int getSwipeMaxDistance() {
+		return swipeMaxDistance;
+	}
+
+	public int getSwipeMinDistance() {
+		return swipeMinDistance;
+	}
+
+	public int getSwipeMinVelocity() {
+		return swipeMinVelocity;
+	}
+
+	/**
+	 * Sets the distance a finger can move and still be a tap
+	 *
+	 * @param slop
+	 *            : the distance, in pixels
+	 */
+	public void setTouchSlop(int slop) {
+		this.touchSlop = slop;
+	}
+
+	/**
+	 * Sets the distance between the two taps of a double tap
+	 *
+	 * @param slop
+	 *            : the distance, in pixels
+	 */
+	public void setDoubleTapSlop(int slop) {
+		this.doubleTapSlop = slop;
+	}
+
+	/**
+	 * Sets the time after which a press isn't a tap anymore
+	 *
+	 * @param timeout
+	 *            : the time, in milliseconds
+	 */
+	public void setLongPressTimeout(int timeout) {
+		this.longPressTimeout = timeout;
+	}
+
+	public int getDoubleTapTimeout() {
+		return doubleTapTimeout;
+	}
+
+	/**
+	 * Sets the time between the two taps of a double tap
+	 *
+	 * @param timeout
+	 *            : the time, in milliseconds
+	 */
+	public void setDoubleTapTimeout(int timeout) {
+		this.doubleTapTimeout = timeout;
+	}
+}
@@ -0,0 +1,270 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Histogram of latencies in fixed memory, with the layout of HdrHistogram:
+ * the values are grouped in buckets that double in size, and each bucket is
+ * split in the same number of sub-buckets, so every value is kept with the
+ * same relative precision (2 significant digits by default) from one
+ * nanosecond to the highest trackable value. Recording a value is a few shifts
+ * and an increment, it doesn't allocate.
+ * <p>
+ * It isn't thread safe: record from one thread (usually the UI thread) and
+ * read it from that same thread.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class LatencyHistogram {
+
+	/** Default highest trackable value: one second, in nanoseconds */
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 1000000000L;
+
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+	private final long highestTrackableValue;
+	private final int significantDigits;
+
+	private final int subBucketHalfCountMagnitude;
+	private final int subBucketHalfCount;
+	private final long subBucketMask;
+
+	private final long[] counts;
+
+	private long totalCount;
+	private long totalSum;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+
+	/** Values above the highest trackable one, counted at that value */
+	private long overflowCount;
+
+	public LatencyHistogram() {
+		this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+	}
+
+	/**
+	 * @param highestTrackableValue
+	 *            : the highest value kept with full precision, higher ones
+	 *            are counted as this one
+	 * @param significantDigits
+	 *            : the precision of the values, from 1 to 5
+	 */
+	public LatencyHistogram(long highestTrackableValue, int significantDigits) {
+		if (significantDigits < 1 || significantDigits > 5)
+			throw new IllegalArgumentException(
+					"Significant digits must be from 1 to 5, got "
+							+ significantDigits);
+		if (highestTrackableValue < 2)
+			throw new IllegalArgumentException(
+					"Invalid highest trackable value: " + highestTrackableValue);
+
+		this.highestTrackableValue = highestTrackableValue;
+		this.significantDigits = significantDigits;
+
+		// the sub-buckets must tell apart values that differ in the last
+		// significant digit
+		long singleUnitResolution = 2;
+		for (int i = 0; i < significantDigits; i++)
+			singleUnitResolution *= 10;
+
+		final int subBucketCountMagnitude = 64 - Long
+				.numberOfLeadingZeros(singleUnitResolution - 1);
+		final int subBucketCount = 1 << subBucketCountMagnitude;
+		subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+		subBucketHalfCount = subBucketCount / 2;
+		subBucketMask = subBucketCount - 1;
+
+		int bucketCount = 1;
+		long smallestUntrackable = subBucketCount;
+		while (smallestUntrackable <= highestTrackableValue) {
+			if (smallestUntrackable > Long.MAX_VALUE / 2) {
+				bucketCount++;
+				break;
+			}
+			smallestUntrackable <<= 1;
+			bucketCount++;
+		}
+
+		counts = new long[(bucketCount + 1) * subBucketHalfCount];
+	}
+
+	/**
+	 * Records a value
+	 *
+	 * @param value
+	 *            : the value, usually a latency in nanoseconds. Negative
+	 *            values are counted as 0.
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+		totalCount++;
+		totalSum += value;
+
+		if (value > highestTrackableValue) {
+			overflowCount++;
+			value = highestTrackableValue;
+		}
+		counts[countsIndex(value)]++;
+	}
+
+	private int countsIndex(long value) {
+		final int bucketIndex = bucketIndex(value);
+		final int subBucketIndex = (int) (value >>> bucketIndex);
+		return ((bucketIndex + 1) << subBucketHalfCountMagnitude)
+				+ (subBucketIndex - subBucketHalfCount);
+	}
+
+	private int bucketIndex(long value) {
+		// the smallest power of 2 that contains the value, over the first
+		// bucket
+		return 64 - Long.numberOfLeadingZeros(value | subBucketMask)
+				- subBucketHalfCountMagnitude - 1;
+	}
+
+	/**
+	 * Gets the lowest value counted at the same index
+	 */
+	private long valueFromIndex(int index) {
+		int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & (subBucketHalfCount - 1))
+				+ subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		return (long) subBucketIndex << bucketIndex;
+	}
+
+	/**
+	 * Gets the highest value counted at the same index than the given one
+	 */
+	private long highestEquivalentValue(long value) {
+		return value + (1L << bucketIndex(value)) - 1;
+	}
+
+	/**
+	 * Gets the value under which a percentage of the recorded values are
+	 *
+	 * @param percentile
+	 *            : the percentage, from 0 to 100
+	 * @return the value, with the precision of the histogram; 0 if it's empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+
+		final double clamped = Math.min(Math.max(percentile, 0), 100);
+		long countAtPercentile = (long) (clamped / 100 * totalCount + 0.5);
+		if (countAtPercentile < 1)
+			countAtPercentile = 1;
+
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (cumulative >= countAtPercentile)
+				return Math.min(highestEquivalentValue(valueFromIndex(i)), max);
+		}
+		return max;
+	}
+
+	/**
+	 * Adds the values recorded by another histogram
+	 *
+	 * @param other
+	 *            : a histogram with the same highest trackable value and
+	 *            significant digits
+	 */
+	public void add(LatencyHistogram other) {
+		if (other.highestTrackableValue != highestTrackableValue
+				|| other.significantDigits != significantDigits)
+			throw new IllegalArgumentException(
+					"Histograms with different ranges or precisions");
+
+		for (int i = 0; i < counts.length; i++)
+			counts[i] += other.counts[i];
+
+		totalCount += other.totalCount;
+		totalSum += other.totalSum;
+		overflowCount += other.overflowCount;
+		if (other.min < min)
+			min = other.min;
+		if (other.max > max)
+			max = other.max;
+	}
+
+	/**
+	 * Forgets every value recorded
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = 0;
+
+		totalCount = 0;
+		totalSum = 0;
+		overflowCount = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Gets the number of values above the highest trackable one
+	 */
+	public long getOverflowCount() {
+		return overflowCount;
+	}
+
+	/**
+	 * Gets the exact lowest value recorded, 0 if it's empty
+	 */
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	/**
+	 * Gets the exact highest value recorded
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the exact mean of the values recorded
+	 */
+	public double getMean() {
+		return totalCount == 0 ? 0 : (double) totalSum / totalCount;
+	}
+
+	public long getHighestTrackableValue() {
+		return highestTrackableValue;
+	}
+
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	/**
+	 * Summary of the latencies, taking the values as nanoseconds
+	 */
+	@Override
+	public String toString() {
+		return "count " + totalCount + ", mean " + micros(getMean())
+				+ "us, p50 " + micros(getValueAtPercentile(50)) + "us, p90 "
+				+ micros(getValueAtPercentile(90)) + "us, p99 "
+				+ micros(getValueAtPercentile(99)) + "us, p99.9 "
+				+ micros(getValueAtPercentile(99.9)) + "us, max "
+				+ micros(max) + "us";
+	}
+
+	private static String micros(double nanos) {
+		return String.valueOf(Math.round(nanos / 100) / 10.0);
+	}
+}
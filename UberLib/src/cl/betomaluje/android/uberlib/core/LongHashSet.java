@@ -0,0 +1,111 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.util.Arrays;
+
+/**
+ * Set of longs kept as primitives in an open addressing table, so adding,
+ * checking and removing them doesn't box them nor allocate (until it grows).
+ * It isn't synchronized, use it from one thread.
+ *
+ * @author Alberto Maluje
+ */
+public class LongHashSet {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private boolean[] used = new boolean[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Adds a value
+	 *
+	 * @return false if it was already there
+	 */
+	public boolean add(long value) {
+		int slot = find(value);
+		if (used[slot])
+			return false;
+
+		// at most half full, so the probes stay short
+		if ((size + 1) * 2 > keys.length) {
+			grow();
+			slot = find(value);
+		}
+
+		keys[slot] = value;
+		used[slot] = true;
+		size++;
+		return true;
+	}
+
+	public boolean contains(long value) {
+		return used[find(value)];
+	}
+
+	/**
+	 * Removes a value
+	 *
+	 * @return false if it wasn't there
+	 */
+	public boolean remove(long value) {
+		final int slot = find(value);
+		if (!used[slot])
+			return false;
+
+		// moves back the values after it that can't be found past the hole
+		// otherwise
+		final int mask = keys.length - 1;
+		int hole = slot;
+		for (int i = (slot + 1) & mask; used[i]; i = (i + 1) & mask) {
+			final int home = hash(keys[i]) & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				keys[hole] = keys[i];
+				hole = i;
+			}
+		}
+		used[hole] = false;
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the slot of a value, or the empty slot where it would go
+	 */
+	private int find(long value) {
+		final int mask = keys.length - 1;
+		int slot = hash(value) & mask;
+		while (used[slot] && keys[slot] != value)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		final long[] oldKeys = keys;
+		final boolean[] oldUsed = used;
+		keys = new long[oldKeys.length * 2];
+		used = new boolean[oldKeys.length * 2];
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				final int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				used[slot] = true;
+			}
+		}
+	}
+
+	private static int hash(long value) {
+		final long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,49 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * {@link Clock} that only moves when told to, to drive the detectors from
+ * recorded traces
+ *
+ * @author Alberto Maluje
+ */
+public class ManualClock implements Clock {
+
+	private long time;
+
+	public ManualClock() {
+		this(0);
+	}
+
+	/**
+	 * @param startNanos
+	 *            : the initial time, in nanoseconds
+	 */
+	public ManualClock(long startNanos) {
+		this.time = startNanos;
+	}
+
+	@Override
+	public long nanoTime() {
+		return time;
+	}
+
+	/**
+	 * Sets the current time
+	 *
+	 * @param nanos
+	 *            : the time, in nanoseconds
+	 */
+	public void setTime(long nanos) {
+		this.time = nanos;
+	}
+
+	/**
+	 * Moves the time forward
+	 *
+	 * @param nanos
+	 *            : the amount of time, in nanoseconds
+	 */
+	public void advance(long nanos) {
+		this.time += nanos;
+	}
+}
@@ -0,0 +1,28 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * A gesture recognized by {@link MotionProcessor} from the shared
+ * {@link MotionState}. Implementations don't depend on Android and must not
+ * allocate per sample.
+ *
+ * @author Alberto Maluje
+ */
+public interface MotionDetector {
+
+	/**
+	 * Processes a new sample
+	 *
+	 * @param state
+	 *            : the sample and its filtered values, only valid during the
+	 *            call
+	 * @param listener
+	 *            : where to report the gestures, with the GESTURE_*
+	 *            constants of MotionProcessor
+	 */
+	void onMotion(MotionState state, MotionProcessor.Listener listener);
+
+	/**
+	 * Forgets the gesture in progress, if any
+	 */
+	void reset();
+}
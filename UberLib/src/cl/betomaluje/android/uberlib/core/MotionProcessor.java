@@ -0,0 +1,178 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Fans each accelerometer sample out to a set of {@link MotionDetector}s.
+ * The gravity estimate (a low-pass filter) and the linear acceleration are
+ * computed once per sample into a shared {@link MotionState}, and every
+ * gesture is reported through a single {@link Listener}.
+ * <p>
+ * It's the part of MotionGestureEngine that doesn't depend on Android, so it
+ * can be tested and benchmarked on a plain JVM.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class MotionProcessor {
+
+	public final static int GESTURE_SHAKE = 1;
+	public final static int GESTURE_STOP_SHAKE = 2;
+	public final static int GESTURE_TILT_LEFT = 3;
+	public final static int GESTURE_TILT_RIGHT = 4;
+	public final static int GESTURE_TILT_FORWARD = 5;
+	public final static int GESTURE_TILT_BACK = 6;
+	public final static int GESTURE_TILT_NONE = 7;
+	public final static int GESTURE_FACE_DOWN = 8;
+	public final static int GESTURE_FACE_UP = 9;
+	public final static int GESTURE_DOUBLE_TAP = 10;
+
+	/**
+	 * Interface for the motion gestures.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when a gesture is detected
+		 *
+		 * @param gesture
+		 *            : one of the GESTURE_* constants
+		 * @param timestampNanos
+		 *            : the time of the sample that completed it
+		 */
+		void onMotionGesture(int gesture, long timestampNanos);
+	}
+
+	private static final MotionDetector[] NO_DETECTORS = new MotionDetector[0];
+
+	private final MotionState state = new MotionState();
+
+	/** Replaced, never modified, so a sample always sees a consistent set */
+	private MotionDetector[] detectors = NO_DETECTORS;
+
+	/** Used while there's no listener, so the detectors never check */
+	private static final Listener NO_LISTENER = new Listener() {
+
+		@Override
+		public void onMotionGesture(int gesture, long timestampNanos) {
+		}
+	};
+
+	private Listener listener = NO_LISTENER;
+
+	/** Weight of the previous gravity estimate on the low-pass filter */
+	private float filterFactor = 0.8f;
+
+	private boolean hasGravity = false;
+	private float gravityX, gravityY, gravityZ;
+
+	/**
+	 * Processes a new accelerometer sample
+	 *
+	 * @param x
+	 *            : acceleration on the x axis (m/s^2)
+	 * @param y
+	 *            : acceleration on the y axis (m/s^2)
+	 * @param z
+	 *            : acceleration on the z axis (m/s^2)
+	 * @param timestampNanos
+	 *            : when the sample was taken, in nanoseconds of a monotonic
+	 *            clock (like SensorEvent.timestamp)
+	 */
+	public void onSample(float x, float y, float z, long timestampNanos) {
+		if (!hasGravity) {
+			gravityX = x;
+			gravityY = y;
+			gravityZ = z;
+			hasGravity = true;
+		} else {
+			final float alpha = filterFactor;
+			gravityX = alpha * gravityX + (1 - alpha) * x;
+			gravityY = alpha * gravityY + (1 - alpha) * y;
+			gravityZ = alpha * gravityZ + (1 - alpha) * z;
+		}
+
+		state.set(x, y, z, gravityX, gravityY, gravityZ, timestampNanos);
+
+		final MotionDetector[] current = detectors;
+		final Listener out = listener;
+		for (int i = 0; i < current.length; i++)
+			current[i].onMotion(state, out);
+	}
+
+	/**
+	 * Forgets the gravity estimate and the gestures in progress
+	 */
+	public void reset() {
+		hasGravity = false;
+		for (MotionDetector detector : detectors)
+			detector.reset();
+	}
+
+	/**
+	 * Adds a detector, it starts receiving the next sample
+	 *
+	 * @param detector
+	 *            : the detector
+	 */
+	public void addDetector(MotionDetector detector) {
+		if (detector == null)
+			throw new NullPointerException("Detector can't be null");
+
+		MotionDetector[] next = new MotionDetector[detectors.length + 1];
+		System.arraycopy(detectors, 0, next, 0, detectors.length);
+		next[detectors.length] = detector;
+		detectors = next;
+	}
+
+	/**
+	 * Removes a detector
+	 *
+	 * @param detector
+	 *            : the detector
+	 * @return true if it was added
+	 */
+	public boolean removeDetector(MotionDetector detector) {
+		for (int i = 0; i < detectors.length; i++) {
+			if (detectors[i] != detector)
+				continue;
+
+			MotionDetector[] next = new MotionDetector[detectors.length - 1];
+			System.arraycopy(detectors, 0, next, 0, i);
+			System.arraycopy(detectors, i + 1, next, i, next.length - i);
+			detectors = next;
+			return true;
+		}
+		return false;
+	}
+
+	public int getDetectorCount() {
+		return detectors.length;
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener == null ? NO_LISTENER : listener;
+	}
+
+	/**
+	 * Gets the state of the last sample
+	 */
+	public MotionState getState() {
+		return state;
+	}
+
+	public float getFilterFactor() {
+		return filterFactor;
+	}
+
+	/**
+	 * Sets how slowly the gravity estimate follows the sensor. The higher the
+	 * value, the more of the movement is kept as linear acceleration.
+	 *
+	 * @param factor
+	 *            : the factor (0 - 1.0)
+	 */
+	public void setFilterFactor(float factor) {
+		if (factor < 0 || factor > 1.0)
+			return;
+
+		this.filterFactor = factor;
+	}
+}
@@ -0,0 +1,110 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * The current accelerometer sample and what's derived from it (gravity,
+ * linear acceleration and their magnitudes). {@link MotionProcessor} computes
+ * it once per sample and hands the same instance to every
+ * {@link MotionDetector}, so the filtering isn't repeated per gesture.
+ *
+ * @author Alberto Maluje
+ */
+public class MotionState {
+
+	long timestamp;
+
+	float x, y, z;
+
+	float gravityX, gravityY, gravityZ;
+	float gravityMagnitude;
+
+	float linearX, linearY, linearZ;
+	float linearMagnitude;
+
+	/**
+	 * Updates the state with a new sample
+	 *
+	 * @param x
+	 *            , y, z: the raw acceleration (m/s^2)
+	 * @param gravityX
+	 *            , gravityY, gravityZ: the gravity estimate (m/s^2)
+	 * @param timestamp
+	 *            : when the sample was taken, in nanoseconds
+	 */
+	void set(float x, float y, float z, float gravityX, float gravityY,
+			float gravityZ, long timestamp) {
+		this.timestamp = timestamp;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.gravityX = gravityX;
+		this.gravityY = gravityY;
+		this.gravityZ = gravityZ;
+		this.gravityMagnitude = (float) Math.sqrt(gravityX * gravityX
+				+ gravityY * gravityY + gravityZ * gravityZ);
+		this.linearX = x - gravityX;
+		this.linearY = y - gravityY;
+		this.linearZ = z - gravityZ;
+		this.linearMagnitude = (float) Math.sqrt(linearX * linearX + linearY
+				* linearY + linearZ * linearZ);
+	}
+
+	/** When the sample was taken, in nanoseconds of a monotonic clock */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/** Raw acceleration on the x axis (m/s^2) */
+	public float getX() {
+		return x;
+	}
+
+	/** Raw acceleration on the y axis (m/s^2) */
+	public float getY() {
+		return y;
+	}
+
+	/** Raw acceleration on the z axis (m/s^2) */
+	public float getZ() {
+		return z;
+	}
+
+	/** Gravity on the x axis (m/s^2) */
+	public float getGravityX() {
+		return gravityX;
+	}
+
+	/** Gravity on the y axis (m/s^2) */
+	public float getGravityY() {
+		return gravityY;
+	}
+
+	/** Gravity on the z axis (m/s^2) */
+	public float getGravityZ() {
+		return gravityZ;
+	}
+
+	/** Magnitude of the gravity vector, about 9.8 m/s^2 at rest */
+	public float getGravityMagnitude() {
+		return gravityMagnitude;
+	}
+
+	/** Acceleration on the x axis without gravity (m/s^2) */
+	public float getLinearX() {
+		return linearX;
+	}
+
+	/** Acceleration on the y axis without gravity (m/s^2) */
+	public float getLinearY() {
+		return linearY;
+	}
+
+	/** Acceleration on the z axis without gravity (m/s^2) */
+	public float getLinearZ() {
+		return linearZ;
+	}
+
+	/** Magnitude of the acceleration without gravity (m/s^2) */
+	public float getLinearMagnitude() {
+		return linearMagnitude;
+	}
+}
@@ -0,0 +1,112 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Base of the trace writers: a file with a header (magic number and version,
+ * 4 bytes each) followed by fixed size records, all little-endian. The
+ * records go through a direct buffer and reach the channel only when it's
+ * full, so writing one doesn't allocate nor touch the disk.
+ * <p>
+ * Subclasses write a record by putting its fields in the buffer returned by
+ * {@link #nextRecord()}.</p>
+ *
+ * @author Alberto Maluje
+ */
+public abstract class RecordWriter implements Closeable {
+
+	/** Bytes of the header: magic number and version */
+	public static final int HEADER_SIZE = 8;
+
+	private final int recordSize;
+
+	private final FileOutputStream output;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	private long count = 0;
+
+	/**
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @param magic
+	 *            , version: the header of the file
+	 * @param recordSize
+	 *            : the bytes of each record
+	 * @param bufferSize
+	 *            : the bytes kept in memory before writing to the file
+	 * @throws IOException
+	 */
+	protected RecordWriter(File file, int magic, int version, int recordSize,
+			int bufferSize) throws IOException {
+		if (bufferSize < HEADER_SIZE + recordSize)
+			throw new IllegalArgumentException("Buffer too small: "
+					+ bufferSize);
+
+		this.recordSize = recordSize;
+		buffer = ByteBuffer.allocateDirect(bufferSize).order(
+				ByteOrder.LITTLE_ENDIAN);
+		output = new FileOutputStream(file);
+		channel = output.getChannel();
+
+		buffer.putInt(magic);
+		buffer.putInt(version);
+	}
+
+	/**
+	 * Makes room for a record and counts it
+	 *
+	 * @return the buffer to put the fields of the record in, exactly
+	 *         recordSize bytes
+	 * @throws IOException
+	 */
+	protected ByteBuffer nextRecord() throws IOException {
+		if (buffer.remaining() < recordSize)
+			drain();
+
+		count++;
+		return buffer;
+	}
+
+	/**
+	 * Writes the buffered records to the file
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		drain();
+		channel.force(false);
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Gets the number of records written so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+
+		try {
+			drain();
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,467 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Shake detector that works on the linear acceleration (gravity removed by a
+ * high-pass filter) instead of the raw sensor values:
+ * <ul>
+ * <li>The force of a sample is the magnitude of the acceleration vector, so
+ * opposite movements on different axes don't cancel out.</li>
+ * <li>A direction change is a real sign reversal on one of the axes, so a
+ * phone being carried while walking doesn't count every step.</li>
+ * <li>The last samples are kept in a ring buffer and the average force over
+ * it must be high too, so a few isolated bumps aren't taken as a shake.</li>
+ * </ul>
+ * Processing a sample doesn't allocate. onShake is called when the shake is
+ * detected and onStopShake once the movement stops for longer than the maximum
+ * pause between direction changes.
+ * <p>
+ * In the adaptive mode the minimum force isn't fixed: the running mean and
+ * variance of the force (Welford, forgetting samples older than the
+ * adaptation window) give the background noise of the device and its
+ * context, and a shake must be k standard deviations above it. The samples
+ * of a possible shake aren't noise and are left out of the statistics, unless
+ * the movement goes on for over a second, and the samples above the
+ * threshold count as the threshold itself.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class RingBufferShakeDetector extends BaseShakeDetector {
+
+	/** Default number of samples kept, about half a second at SENSOR_DELAY_UI */
+	public static final int DEFAULT_CAPACITY = 32;
+
+	/** Values stored per sample: linear x, y, z and magnitude */
+	private static final int STRIDE = 4;
+
+	/** Part of MIN_FORCE an axis needs for its direction to count */
+	private static final float AXIS_FORCE_FACTOR = 0.5f;
+
+	/** Part of MIN_FORCE the average of the ring buffer needs */
+	private static final float WINDOW_FORCE_FACTOR = 0.5f;
+
+	/** Samples needed before the adaptive mode trusts the statistics */
+	private static final int MIN_STATISTICS_COUNT = 30;
+
+	private final int capacity;
+
+	/** Recent samples, STRIDE floats each */
+	private final float[] samples;
+
+	/** Index of the next sample to write */
+	private int head = 0;
+
+	/** Number of samples in the buffer */
+	private int size = 0;
+
+	/** Sum of the magnitudes in the buffer */
+	private double magnitudeSum = 0;
+
+	/** Weight of the previous gravity estimate on the low-pass filter */
+	private float filterFactor = 0.8f;
+
+	private boolean hasGravity = false;
+	private float gravityX, gravityY, gravityZ;
+
+	/** Last significant direction of each axis: -1, 0 (none yet) or 1 */
+	private int signX, signY, signZ;
+
+	/** Time when the gesture started. */
+	private long mFirstDirectionChangeTime = 0;
+
+	/** Time when the last movement started. */
+	private long mLastDirectionChangeTime = 0;
+
+	/** True between onShake and onStopShake */
+	private boolean shaking = false;
+
+	/**
+	 * Longest a gesture is kept out of the statistics, in ms. Movement that
+	 * goes on for longer is the context, like a vehicle, not a shake.
+	 */
+	private static final int MAX_GESTURE_EXCLUSION = 1000;
+
+	/** Time when the current gesture started, or -1 if there is none */
+	private long gestureStart = -1;
+
+	/** Default number of samples the statistics adapt over, about 10 seconds */
+	public static final int DEFAULT_ADAPTATION_WINDOW = 600;
+
+	/** Default number of standard deviations a shake must be above the mean */
+	public static final float DEFAULT_SENSITIVITY = 4f;
+
+	/** Default lowest force the adaptive mode can go down to */
+	public static final float DEFAULT_MIN_ADAPTIVE_FORCE = 3f;
+
+	private boolean adaptive = false;
+
+	private int adaptationWindow = DEFAULT_ADAPTATION_WINDOW;
+
+	private float sensitivity = DEFAULT_SENSITIVITY;
+
+	private float minAdaptiveForce = DEFAULT_MIN_ADAPTIVE_FORCE;
+
+	/** Samples in the statistics, capped to the adaptation window */
+	private int statisticsCount = 0;
+
+	/** Running mean of the force */
+	private double mean = 0;
+
+	/** Running variance of the force */
+	private double variance = 0;
+
+	public RingBufferShakeDetector() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            : the number of recent samples kept
+	 */
+	public RingBufferShakeDetector(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive: "
+					+ capacity);
+
+		this.capacity = capacity;
+		this.samples = new float[capacity * STRIDE];
+	}
+
+	@Override
+	public void onSample(float x, float y, float z, long now) {
+		// high-pass filter: isolate gravity with a low-pass and remove it
+		if (!hasGravity) {
+			gravityX = x;
+			gravityY = y;
+			gravityZ = z;
+			hasGravity = true;
+		} else {
+			final float alpha = filterFactor;
+			gravityX = alpha * gravityX + (1 - alpha) * x;
+			gravityY = alpha * gravityY + (1 - alpha) * y;
+			gravityZ = alpha * gravityZ + (1 - alpha) * z;
+		}
+
+		final float linearX = x - gravityX;
+		final float linearY = y - gravityY;
+		final float linearZ = z - gravityZ;
+		final float magnitude = (float) Math.sqrt(linearX * linearX + linearY
+				* linearY + linearZ * linearZ);
+
+		onLinearSample(linearX, linearY, linearZ, magnitude, now);
+	}
+
+	/**
+	 * Processes a sample whose gravity was already removed, for when the
+	 * linear acceleration is shared with other detectors (see
+	 * MotionProcessor)
+	 *
+	 * @param linearX
+	 *            , linearY, linearZ: the linear acceleration (m/s^2)
+	 * @param magnitude
+	 *            : the magnitude of the linear acceleration
+	 * @param now
+	 *            : when the sample was taken, in nanoseconds
+	 */
+	public void onLinearSample(float linearX, float linearY, float linearZ,
+			float magnitude, long now) {
+		push(linearX, linearY, linearZ, magnitude);
+		// the shakes themselves aren't noise: keep out of the statistics every
+		// sample from the first direction change of a gesture until it stops
+		// (or MAX_GESTURE_EXCLUSION passes), so its onset and its tail don't
+		// raise the threshold for the next shake. The rest count clipped to
+		// the threshold, so a bump can't move it much but a noisier context
+		// still raises it.
+		final boolean gesture = shaking || mDirectionChangeCount > 0;
+		if (!gesture)
+			gestureStart = -1;
+		else if (gestureStart < 0)
+			gestureStart = now;
+		if (!gesture || now - gestureStart > toNanos(MAX_GESTURE_EXCLUSION))
+			updateStatistics(Math.min(magnitude, getEffectiveMinForce()));
+
+		final long maxPause = toNanos(MAX_PAUSE_BETWEEN_DIRECTION_CHANGE);
+		if (mDirectionChangeCount > 0 || shaking) {
+			if (now - mLastDirectionChangeTime > maxPause) {
+				mDirectionChangeCount = 0;
+				if (shaking) {
+					shaking = false;
+					notifyStopShake();
+				}
+			}
+		}
+
+		final float minForce = getEffectiveMinForce();
+		if (magnitude <= minForce)
+			return;
+
+		// a direction change is a sign reversal on any significant axis
+		final float axisForce = minForce * AXIS_FORCE_FACTOR;
+		boolean reversed = false;
+
+		int sign = sign(linearX, axisForce);
+		if (sign != 0) {
+			reversed |= signX != 0 && signX != sign;
+			signX = sign;
+		}
+		sign = sign(linearY, axisForce);
+		if (sign != 0) {
+			reversed |= signY != 0 && signY != sign;
+			signY = sign;
+		}
+		sign = sign(linearZ, axisForce);
+		if (sign != 0) {
+			reversed |= signZ != 0 && signZ != sign;
+			signZ = sign;
+		}
+
+		if (!reversed)
+			return;
+
+		if (mDirectionChangeCount == 0)
+			mFirstDirectionChangeTime = now;
+
+		mLastDirectionChangeTime = now;
+		mDirectionChangeCount++;
+
+		if (mDirectionChangeCount >= MIN_DIRECTION_CHANGE) {
+			final long maxDuration = toNanos(MAX_TOTAL_DURATION_OF_SHAKE);
+			if (now - mFirstDirectionChangeTime < maxDuration
+					&& getAverageMagnitude() > minForce * WINDOW_FORCE_FACTOR) {
+				mDirectionChangeCount = 0;
+				shaking = true;
+				notifyShake();
+			} else {
+				// too slow or too weak, start counting again from here
+				mDirectionChangeCount = 1;
+				mFirstDirectionChangeTime = now;
+			}
+		}
+	}
+
+	/**
+	 * Welford's update of the mean and variance. Once the adaptation window is
+	 * full the count stops growing, so older samples weigh less and less.
+	 */
+	private void updateStatistics(float magnitude) {
+		if (statisticsCount < adaptationWindow)
+			statisticsCount++;
+
+		final double alpha = 1.0 / statisticsCount;
+		final double delta = magnitude - mean;
+		final double increment = alpha * delta;
+		mean += increment;
+		variance = (1 - alpha) * (variance + delta * increment);
+	}
+
+	private static int sign(float value, float threshold) {
+		if (value > threshold)
+			return 1;
+		if (value < -threshold)
+			return -1;
+		return 0;
+	}
+
+	private void push(float linearX, float linearY, float linearZ,
+			float magnitude) {
+		final int index = head * STRIDE;
+
+		if (size == capacity)
+			magnitudeSum -= samples[index + 3];
+		else
+			size++;
+
+		samples[index] = linearX;
+		samples[index + 1] = linearY;
+		samples[index + 2] = linearZ;
+		samples[index + 3] = magnitude;
+		magnitudeSum += magnitude;
+
+		head = head + 1 == capacity ? 0 : head + 1;
+	}
+
+	@Override
+	public void reset() {
+		head = 0;
+		size = 0;
+		magnitudeSum = 0;
+		hasGravity = false;
+		signX = signY = signZ = 0;
+		mFirstDirectionChangeTime = 0;
+		mLastDirectionChangeTime = 0;
+		mDirectionChangeCount = 0;
+		shaking = false;
+		gestureStart = -1;
+		statisticsCount = 0;
+		mean = 0;
+		variance = 0;
+	}
+
+	/**
+	 * Gets the minimum force of a shake: MIN_FORCE, or the one given by the
+	 * statistics in the adaptive mode
+	 *
+	 * @return the force, in m/s^2
+	 */
+	public float getEffectiveMinForce() {
+		if (!adaptive || statisticsCount < MIN_STATISTICS_COUNT)
+			return MIN_FORCE;
+
+		return Math.max(minAdaptiveForce,
+				(float) (mean + sensitivity * Math.sqrt(variance)));
+	}
+
+	/**
+	 * Gets the running mean of the force
+	 *
+	 * @return the mean, in m/s^2
+	 */
+	public float getMeanMagnitude() {
+		return (float) mean;
+	}
+
+	/**
+	 * Gets the running variance of the force
+	 *
+	 * @return the variance
+	 */
+	public float getMagnitudeVariance() {
+		return (float) variance;
+	}
+
+	/**
+	 * Gets the running standard deviation of the force
+	 *
+	 * @return the standard deviation, in m/s^2
+	 */
+	public float getMagnitudeStandardDeviation() {
+		return (float) Math.sqrt(variance);
+	}
+
+	/**
+	 * Gets the number of samples the statistics are based on
+	 *
+	 * @return the number of samples, up to the adaptation window
+	 */
+	public int getStatisticsCount() {
+		return statisticsCount;
+	}
+
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * Enables the adaptive mode, where the minimum force follows the noise of
+	 * the sensor instead of MIN_FORCE
+	 *
+	 * @param adaptive
+	 *            : true to enable it
+	 */
+	public void setAdaptive(boolean adaptive) {
+		this.adaptive = adaptive;
+	}
+
+	public int getAdaptationWindow() {
+		return adaptationWindow;
+	}
+
+	/**
+	 * Sets how many samples the statistics adapt over. The bigger, the slower
+	 * they follow a change of context (walking, a vehicle...).
+	 *
+	 * @param samples
+	 *            : the number of samples
+	 */
+	public void setAdaptationWindow(int samples) {
+		if (samples <= 0)
+			return;
+
+		this.adaptationWindow = samples;
+		if (statisticsCount > samples)
+			statisticsCount = samples;
+	}
+
+	public float getSensitivity() {
+		return sensitivity;
+	}
+
+	/**
+	 * Sets how many standard deviations above the mean a shake must be, the
+	 * lower the more sensitive
+	 *
+	 * @param k
+	 *            : the number of standard deviations
+	 */
+	public void setSensitivity(float k) {
+		this.sensitivity = k;
+	}
+
+	public float getMinAdaptiveForce() {
+		return minAdaptiveForce;
+	}
+
+	/**
+	 * Sets the lowest force the adaptive mode can go down to, so a phone
+	 * lying on a table doesn't take a tap as a shake
+	 *
+	 * @param force
+	 *            : the force, in m/s^2
+	 */
+	public void setMinAdaptiveForce(float force) {
+		this.minAdaptiveForce = force;
+	}
+
+	/**
+	 * Gets the average magnitude of the linear acceleration over the samples
+	 * in the ring buffer
+	 *
+	 * @return the average, in m/s^2
+	 */
+	public float getAverageMagnitude() {
+		return size == 0 ? 0 : (float) (magnitudeSum / size);
+	}
+
+	/**
+	 * Copies the samples in the ring buffer, oldest first, as linear x, y, z
+	 * and magnitude
+	 *
+	 * @param out
+	 *            : where the samples are copied, with room for
+	 *            getCapacity() * 4 floats
+	 * @return the number of samples copied
+	 */
+	public int getRecentSamples(float[] out) {
+		final int start = size == capacity ? head : 0;
+		for (int i = 0; i < size; i++) {
+			int index = ((start + i) % capacity) * STRIDE;
+			System.arraycopy(samples, index, out, i * STRIDE, STRIDE);
+		}
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public float getFilterFactor() {
+		return filterFactor;
+	}
+
+	/**
+	 * Sets how slowly the gravity estimate follows the sensor. The higher the
+	 * value, the more of the movement is kept as linear acceleration.
+	 *
+	 * @param factor
+	 *            : the factor (0 - 1.0)
+	 */
+	public void setFilterFactor(float factor) {
+		if (factor < 0 || factor > 1.0)
+			return;
+
+		this.filterFactor = factor;
+	}
+
+	public boolean isShaking() {
+		return shaking;
+	}
+}
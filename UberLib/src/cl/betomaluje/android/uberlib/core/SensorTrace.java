@@ -0,0 +1,150 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Accelerometer samples in memory, read from a file written by
+ * {@link SensorTraceWriter} or built from arrays.
+ *
+ * @author Alberto Maluje
+ */
+public class SensorTrace {
+
+	private final long[] timestamps;
+
+	/** Interleaved x, y, z */
+	private final float[] values;
+
+	/**
+	 * @param timestamps
+	 *            : the time of each sample, in nanoseconds
+	 * @param values
+	 *            : x, y and z of each sample, interleaved
+	 */
+	public SensorTrace(long[] timestamps, float[] values) {
+		if (values.length != timestamps.length * 3)
+			throw new IllegalArgumentException("Expected "
+					+ timestamps.length * 3 + " values, got " + values.length);
+
+		this.timestamps = timestamps;
+		this.values = values;
+	}
+
+	/**
+	 * Reads a trace. A record cut short at the end (a recording that didn't
+	 * finish) is ignored.
+	 *
+	 * @param file
+	 *            : the file written by SensorTraceWriter
+	 * @return the trace
+	 * @throws IOException
+	 *             if the file can't be read or isn't a trace
+	 */
+	public static SensorTrace read(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			final long size = channel.size();
+			if (size < SensorTraceWriter.HEADER_SIZE
+					|| size > Integer.MAX_VALUE)
+				throw new IOException("Not a sensor trace: " + file);
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) size).order(
+					ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+			buffer.flip();
+
+			if (buffer.getInt() != SensorTraceWriter.MAGIC)
+				throw new IOException("Not a sensor trace: " + file);
+
+			int version = buffer.getInt();
+			if (version != SensorTraceWriter.VERSION)
+				throw new IOException("Unsupported sensor trace version: "
+						+ version);
+
+			final int count = buffer.remaining()
+					/ SensorTraceWriter.RECORD_SIZE;
+			long[] timestamps = new long[count];
+			float[] values = new float[count * 3];
+			for (int i = 0, v = 0; i < count; i++, v += 3) {
+				timestamps[i] = buffer.getLong();
+				values[v] = buffer.getFloat();
+				values[v + 1] = buffer.getFloat();
+				values[v + 2] = buffer.getFloat();
+			}
+			return new SensorTrace(timestamps, values);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the trace in the format of SensorTraceWriter
+	 *
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		SensorTraceWriter writer = new SensorTraceWriter(file);
+		try {
+			for (int i = 0, v = 0; i < timestamps.length; i++, v += 3)
+				writer.write(timestamps[i], values[v], values[v + 1],
+						values[v + 2]);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Feeds every sample to a detector, as fast as it can take them
+	 *
+	 * @param detector
+	 *            : the detector
+	 */
+	public void replay(ShakeDetector detector) {
+		final long[] times = timestamps;
+		final float[] samples = values;
+		for (int i = 0, v = 0; i < times.length; i++, v += 3)
+			detector.onSample(samples[v], samples[v + 1], samples[v + 2],
+					times[i]);
+	}
+
+	public int size() {
+		return timestamps.length;
+	}
+
+	public long getTimestamp(int index) {
+		return timestamps[index];
+	}
+
+	public float getX(int index) {
+		return values[index * 3];
+	}
+
+	public float getY(int index) {
+		return values[index * 3 + 1];
+	}
+
+	public float getZ(int index) {
+		return values[index * 3 + 2];
+	}
+
+	/**
+	 * Gets the time between the first and the last sample
+	 *
+	 * @return the duration, in nanoseconds
+	 */
+	public long getDuration() {
+		if (timestamps.length == 0)
+			return 0;
+
+		return timestamps[timestamps.length - 1] - timestamps[0];
+	}
+}
@@ -0,0 +1,71 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes accelerometer samples to a file, to be replayed later with
+ * {@link SensorTrace} and {@link ShakeReplay}.
+ * <p>
+ * Each record is a sample: the timestamp in nanoseconds (8 bytes) and x, y
+ * and z (4 bytes each). See {@link RecordWriter} for the header and the
+ * buffering.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class SensorTraceWriter extends RecordWriter {
+
+	/** "STRC" */
+	public static final int MAGIC = 0x43525453;
+
+	public static final int VERSION = 1;
+
+	/** Bytes per sample: timestamp, x, y and z */
+	public static final int RECORD_SIZE = 20;
+
+	/** Default size of the buffer, about a minute of samples at 50Hz */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @throws IOException
+	 */
+	public SensorTraceWriter(File file) throws IOException {
+		this(file, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @param bufferSize
+	 *            : the bytes kept in memory before writing to the file
+	 * @throws IOException
+	 */
+	public SensorTraceWriter(File file, int bufferSize) throws IOException {
+		super(file, MAGIC, VERSION, RECORD_SIZE, bufferSize);
+	}
+
+	/**
+	 * Adds a sample to the trace
+	 *
+	 * @param timestampNanos
+	 *            : when the sample was taken, in nanoseconds
+	 * @param x
+	 *            : acceleration on the x axis (m/s^2)
+	 * @param y
+	 *            : acceleration on the y axis (m/s^2)
+	 * @param z
+	 *            : acceleration on the z axis (m/s^2)
+	 * @throws IOException
+	 */
+	public void write(long timestampNanos, float x, float y, float z)
+			throws IOException {
+		final ByteBuffer buffer = nextRecord();
+		buffer.putLong(timestampNanos);
+		buffer.putFloat(x);
+		buffer.putFloat(y);
+		buffer.putFloat(z);
+	}
+}
@@ -0,0 +1,49 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Detects shake gestures from raw accelerometer samples. Implementations
+ * don't depend on Android, so they can be tested and benchmarked on a plain
+ * JVM, and are fed by ShakeEventListener on a device.
+ *
+ * @author Alberto Maluje
+ */
+public interface ShakeDetector {
+
+	/**
+	 * Interface for shake gesture.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when shake gesture is detected.
+		 */
+		void onShake();
+
+		/**
+		 * Called when shake gesture has stopped
+		 */
+		void onStopShake();
+	}
+
+	void setListener(Listener listener);
+
+	/**
+	 * Processes a new accelerometer sample
+	 *
+	 * @param x
+	 *            : acceleration on the x axis (m/s^2)
+	 * @param y
+	 *            : acceleration on the y axis (m/s^2)
+	 * @param z
+	 *            : acceleration on the z axis (m/s^2)
+	 * @param timestampNanos
+	 *            : when the sample was taken, in nanoseconds of a monotonic
+	 *            clock (like SensorEvent.timestamp)
+	 */
+	void onSample(float x, float y, float z, long timestampNanos);
+
+	/**
+	 * Forgets the gesture in progress, if any
+	 */
+	void reset();
+}
@@ -0,0 +1,79 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Runs one of the shake detectors inside a {@link MotionProcessor}. A
+ * {@link RingBufferShakeDetector} gets the linear acceleration already
+ * computed for all the detectors instead of filtering gravity again.
+ *
+ * @author Alberto Maluje
+ */
+public class ShakeMotionDetector implements MotionDetector,
+		ShakeDetector.Listener {
+
+	private final BaseShakeDetector detector;
+
+	/** Same detector, when it can take the shared linear acceleration */
+	private final RingBufferShakeDetector linearDetector;
+
+	/** Where the current sample reports, only set during onMotion */
+	private MotionProcessor.Listener listener;
+	private long now;
+
+	/**
+	 * Creates a shake detector on the linear acceleration
+	 */
+	public ShakeMotionDetector() {
+		this(new RingBufferShakeDetector());
+	}
+
+	/**
+	 * @param detector
+	 *            : the shake detection to run, its listener is replaced
+	 */
+	public ShakeMotionDetector(BaseShakeDetector detector) {
+		this.detector = detector;
+		if (detector instanceof RingBufferShakeDetector)
+			this.linearDetector = (RingBufferShakeDetector) detector;
+		else
+			this.linearDetector = null;
+		detector.setListener(this);
+	}
+
+	@Override
+	public void onMotion(MotionState state, MotionProcessor.Listener listener) {
+		this.listener = listener;
+		this.now = state.timestamp;
+
+		if (linearDetector != null)
+			linearDetector.onLinearSample(state.linearX, state.linearY,
+					state.linearZ, state.linearMagnitude, state.timestamp);
+		else
+			detector.onSample(state.x, state.y, state.z, state.timestamp);
+
+		this.listener = null;
+	}
+
+	@Override
+	public void reset() {
+		detector.reset();
+	}
+
+	@Override
+	public void onShake() {
+		if (listener != null)
+			listener.onMotionGesture(MotionProcessor.GESTURE_SHAKE, now);
+	}
+
+	@Override
+	public void onStopShake() {
+		if (listener != null)
+			listener.onMotionGesture(MotionProcessor.GESTURE_STOP_SHAKE, now);
+	}
+
+	/**
+	 * Gets the shake detection, to change its parameters
+	 */
+	public BaseShakeDetector getDetector() {
+		return detector;
+	}
+}
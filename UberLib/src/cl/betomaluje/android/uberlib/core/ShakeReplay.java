@@ -0,0 +1,222 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Replays a recorded {@link SensorTrace} into a shake detector at full speed
+ * and compares what it detects with the shakes known to be in the trace, to
+ * tune the detectors against real sensor streams off the device.
+ *
+ * @author Alberto Maluje
+ */
+public class ShakeReplay {
+
+	/** Default time after the end of a shake its detection still counts */
+	public static final long DEFAULT_TOLERANCE = 500 * 1000000L;
+
+	private final SensorTrace trace;
+
+	/** Start and end of each real shake, in the time of the trace */
+	private final long[] shakes;
+
+	private long tolerance = DEFAULT_TOLERANCE;
+
+	/**
+	 * @param trace
+	 *            : the samples
+	 * @param shakes
+	 *            : start and end (nanoseconds, same clock as the trace) of
+	 *            each shake in the trace, in order
+	 */
+	public ShakeReplay(SensorTrace trace, long[] shakes) {
+		if (shakes.length % 2 != 0)
+			throw new IllegalArgumentException(
+					"Shakes must be pairs of start and end times");
+
+		this.trace = trace;
+		this.shakes = shakes;
+	}
+
+	/**
+	 * Feeds the whole trace to a detector. The detector is reset and its
+	 * listener replaced.
+	 *
+	 * @param detector
+	 *            : the detector to evaluate
+	 * @return what it detected and how fast
+	 */
+	public Report run(ShakeDetector detector) {
+		final int size = trace.size();
+		final long[] detections = new long[16];
+		final Recorder recorder = new Recorder(detections);
+
+		detector.reset();
+		detector.setListener(recorder);
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < size; i++) {
+			recorder.now = trace.getTimestamp(i);
+			detector.onSample(trace.getX(i), trace.getY(i), trace.getZ(i),
+					recorder.now);
+		}
+		final long elapsed = System.nanoTime() - start;
+
+		return evaluate(Arrays.copyOf(recorder.detections, recorder.count),
+				size, elapsed);
+	}
+
+	private Report evaluate(long[] detections, int samples, long elapsed) {
+		Report report = new Report();
+		report.samples = samples;
+		report.elapsedNanos = elapsed;
+		report.expected = shakes.length / 2;
+		report.detections = detections.length;
+
+		boolean[] found = new boolean[report.expected];
+		long latencySum = 0;
+
+		for (long time : detections) {
+			int shake = findShake(time);
+			if (shake < 0) {
+				report.falsePositives++;
+			} else if (!found[shake]) {
+				found[shake] = true;
+				report.detected++;
+
+				long latency = time - shakes[shake * 2];
+				latencySum += latency;
+				report.maxLatencyNanos = Math.max(report.maxLatencyNanos,
+						latency);
+			}
+		}
+
+		report.missed = report.expected - report.detected;
+		if (report.detected > 0)
+			report.meanLatencyNanos = latencySum / report.detected;
+		return report;
+	}
+
+	private int findShake(long time) {
+		for (int i = 0; i < shakes.length; i += 2) {
+			if (time >= shakes[i] && time <= shakes[i + 1] + tolerance)
+				return i / 2;
+		}
+		return -1;
+	}
+
+	public long getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Sets how long after the end of a shake its detection still counts
+	 *
+	 * @param nanos
+	 *            : the time, in nanoseconds
+	 */
+	public void setTolerance(long nanos) {
+		this.tolerance = nanos;
+	}
+
+	/**
+	 * Keeps the trace time of every onShake
+	 */
+	private static class Recorder implements ShakeDetector.Listener {
+
+		long now;
+		long[] detections;
+		int count;
+
+		Recorder(long[] detections) {
+			this.detections = detections;
+		}
+
+		@Override
+		public void onShake() {
+			if (count == detections.length)
+				detections = Arrays.copyOf(detections, count * 2);
+			detections[count++] = now;
+		}
+
+		@Override
+		public void onStopShake() {
+		}
+	}
+
+	/**
+	 * Results of a replay
+	 */
+	public static class Report {
+
+		int samples;
+		long elapsedNanos;
+		int expected;
+		int detections;
+		int detected;
+		int missed;
+		int falsePositives;
+		long meanLatencyNanos;
+		long maxLatencyNanos;
+
+		/** Number of samples replayed */
+		public int getSamples() {
+			return samples;
+		}
+
+		/** Wall time the detector took for the whole trace */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/** Samples the detector processed per second */
+		public double getSamplesPerSecond() {
+			return elapsedNanos == 0 ? 0 : samples * 1e9 / elapsedNanos;
+		}
+
+		/** Number of shakes in the trace */
+		public int getExpected() {
+			return expected;
+		}
+
+		/** Number of times onShake was called */
+		public int getDetections() {
+			return detections;
+		}
+
+		/** Number of shakes in the trace that were detected */
+		public int getDetected() {
+			return detected;
+		}
+
+		/** Number of shakes in the trace that weren't detected */
+		public int getMissed() {
+			return missed;
+		}
+
+		/** Number of onShake calls outside any shake */
+		public int getFalsePositives() {
+			return falsePositives;
+		}
+
+		/** Average time from the start of a shake to its detection */
+		public long getMeanLatencyNanos() {
+			return meanLatencyNanos;
+		}
+
+		/** Longest time from the start of a shake to its detection */
+		public long getMaxLatencyNanos() {
+			return maxLatencyNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%d samples, %.0f samples/s, "
+					+ "%d/%d shakes detected, %d missed, "
+					+ "%d false positives, latency %.1f ms (max %.1f ms)",
+					samples, getSamplesPerSecond(), detected, expected,
+					missed, falsePositives, meanLatencyNanos / 1e6,
+					maxLatencyNanos / 1e6);
+		}
+	}
+}
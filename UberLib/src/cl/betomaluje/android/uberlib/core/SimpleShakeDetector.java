@@ -0,0 +1,89 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * The original shake detection of ShakeEventListener: a shake is a number of
+ * samples whose movement is above a minimum force, close enough in time to
+ * each other.
+ *
+ * @author {@link http://stackoverflow.com/users/590531/peceps peceps}
+ * @author modified by Alberto Maluje
+ */
+public class SimpleShakeDetector extends BaseShakeDetector {
+
+	/** Time when the gesture started. */
+	private long mFirstDirectionChangeTime = 0;
+
+	/** Time when the last movement started. */
+	private long mLastDirectionChangeTime;
+
+	/** The last x position. */
+	private float lastX = 0;
+
+	/** The last y position. */
+	private float lastY = 0;
+
+	/** The last z position. */
+	private float lastZ = 0;
+
+	@Override
+	public void onSample(float x, float y, float z, long now) {
+		// calculate movement
+		float totalMovement = Math.abs(x + y + z - lastX - lastY - lastZ);
+
+		if (totalMovement > MIN_FORCE) {
+
+			// store first movement time
+			if (mFirstDirectionChangeTime == 0) {
+				mFirstDirectionChangeTime = now;
+				mLastDirectionChangeTime = now;
+			}
+
+			// check if the last movement was not long ago
+			long lastChangeWasAgo = now - mLastDirectionChangeTime;
+			if (lastChangeWasAgo < toNanos(
+					MAX_PAUSE_BETWEEN_DIRECTION_CHANGE)) {
+
+				// store movement data
+				mLastDirectionChangeTime = now;
+				mDirectionChangeCount++;
+
+				// store last sensor data
+				lastX = x;
+				lastY = y;
+				lastZ = z;
+
+				// check how many movements are so far
+				if (mDirectionChangeCount >= MIN_DIRECTION_CHANGE) {
+
+					// check total duration
+					long totalDuration = now - mFirstDirectionChangeTime;
+					if (totalDuration < toNanos(MAX_TOTAL_DURATION_OF_SHAKE)) {
+						notifyShake();
+						resetShakeParameters();
+					}
+				}
+
+			} else {
+				resetShakeParameters();
+			}
+		}
+	}
+
+	@Override
+	public void reset() {
+		mFirstDirectionChangeTime = 0;
+		mDirectionChangeCount = 0;
+		mLastDirectionChangeTime = 0;
+		lastX = 0;
+		lastY = 0;
+		lastZ = 0;
+	}
+
+	/**
+	 * Resets the shake parameters to their default values.
+	 */
+	private void resetShakeParameters() {
+		reset();
+		notifyStopShake();
+	}
+}
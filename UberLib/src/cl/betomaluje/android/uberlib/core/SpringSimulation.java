@@ -0,0 +1,229 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Moves a point to a rest position with a damped spring, starting from the
+ * velocity it was released with: a released view keeps going the way it was
+ * flung, slows down and settles on its place instead of jumping there.
+ * <p>
+ * The spring is integrated with semi-implicit Euler in fixed steps of
+ * STEP_SECONDS, whatever the length of the frames, so the motion is the same
+ * at any frame rate and always stable. Stepping doesn't allocate.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class SpringSimulation {
+
+	/** Default stiffness, per second squared (the mass is 1) */
+	public static final float DEFAULT_STIFFNESS = 800;
+
+	/**
+	 * Default damping ratio: 1 settles without overshooting, lower values
+	 * bounce
+	 */
+	public static final float DEFAULT_DAMPING_RATIO = 0.75f;
+
+	/** Default distance to the rest position considered at rest, in pixels */
+	public static final float DEFAULT_REST_DISTANCE = 0.5f;
+
+	/** Default velocity considered at rest, in pixels per second */
+	public static final float DEFAULT_REST_VELOCITY = 20;
+
+	/**
+	 * How far a fling carries for each pixel per second of velocity, in
+	 * seconds: where a released point would stop with friction alone
+	 */
+	public static final float FLING_PROJECTION = 0.1f;
+
+	/** Length of each integration step, in seconds */
+	public static final double STEP_SECONDS = 0.001;
+
+	/** Longest time stepped at once, longer pauses are skipped */
+	public static final float MAX_STEP_SECONDS = 0.1f;
+
+	private double stiffness;
+	private double damping;
+	private float dampingRatio;
+	private float restDistance = DEFAULT_REST_DISTANCE;
+	private float restVelocity = DEFAULT_REST_VELOCITY;
+
+	private double x, y, vx, vy;
+	private double toX, toY;
+
+	/** Time not stepped yet, less than a step */
+	private double remainder;
+
+	private boolean running = false;
+
+	public SpringSimulation() {
+		setSpring(DEFAULT_STIFFNESS, DEFAULT_DAMPING_RATIO);
+	}
+
+	/**
+	 * @param stiffness
+	 *            : how hard the spring pulls, per second squared
+	 * @param dampingRatio
+	 *            : 1 to settle without overshooting, lower values bounce
+	 */
+	public void setSpring(float stiffness, float dampingRatio) {
+		if (stiffness <= 0)
+			throw new IllegalArgumentException("Invalid stiffness: "
+					+ stiffness);
+		if (dampingRatio < 0)
+			throw new IllegalArgumentException("Invalid damping ratio: "
+					+ dampingRatio);
+
+		this.stiffness = stiffness;
+		this.dampingRatio = dampingRatio;
+		this.damping = 2 * dampingRatio * Math.sqrt(stiffness);
+	}
+
+	/**
+	 * @param distance
+	 *            : distance to the rest position considered at rest, in
+	 *            pixels
+	 * @param velocity
+	 *            : velocity considered at rest, in pixels per second
+	 */
+	public void setRestThresholds(float distance, float velocity) {
+		if (distance <= 0 || velocity <= 0)
+			throw new IllegalArgumentException("Invalid rest thresholds: "
+					+ distance + ", " + velocity);
+
+		this.restDistance = distance;
+		this.restVelocity = velocity;
+	}
+
+	/**
+	 * Starts moving a point to its rest position
+	 *
+	 * @param x
+	 *            , y: where it starts, in pixels
+	 * @param velocityX
+	 *            , velocityY: its velocity, in pixels per second
+	 * @param toX
+	 *            , toY: the rest position, in pixels
+	 */
+	public void start(float x, float y, float velocityX, float velocityY,
+			float toX, float toY) {
+		this.x = x;
+		this.y = y;
+		this.vx = velocityX;
+		this.vy = velocityY;
+		this.toX = toX;
+		this.toY = toY;
+		this.remainder = 0;
+		this.running = !isAtRest();
+
+		if (!running)
+			settle();
+	}
+
+	/**
+	 * Advances the simulation
+	 *
+	 * @param seconds
+	 *            : the time since the last step, usually a frame
+	 * @return true while it's moving, false once it's at the rest position
+	 */
+	public boolean step(float seconds) {
+		if (!running)
+			return false;
+		if (seconds > MAX_STEP_SECONDS)
+			seconds = MAX_STEP_SECONDS;
+
+		remainder += seconds;
+		while (remainder >= STEP_SECONDS) {
+			remainder -= STEP_SECONDS;
+
+			// velocity first, then the position with the new velocity
+			vx += (-stiffness * (x - toX) - damping * vx) * STEP_SECONDS;
+			vy += (-stiffness * (y - toY) - damping * vy) * STEP_SECONDS;
+			x += vx * STEP_SECONDS;
+			y += vy * STEP_SECONDS;
+		}
+
+		if (isAtRest()) {
+			settle();
+			running = false;
+		}
+		return running;
+	}
+
+	/**
+	 * Stops the simulation where it is
+	 */
+	public void cancel() {
+		running = false;
+	}
+
+	/**
+	 * Jumps to the rest position and stops
+	 */
+	public void finish() {
+		settle();
+		running = false;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public float getX() {
+		return (float) x;
+	}
+
+	public float getY() {
+		return (float) y;
+	}
+
+	/**
+	 * Gets the velocity, in pixels per second
+	 */
+	public float getVelocityX() {
+		return (float) vx;
+	}
+
+	/**
+	 * Gets the velocity, in pixels per second
+	 */
+	public float getVelocityY() {
+		return (float) vy;
+	}
+
+	public float getToX() {
+		return (float) toX;
+	}
+
+	public float getToY() {
+		return (float) toY;
+	}
+
+	public float getDampingRatio() {
+		return dampingRatio;
+	}
+
+	/**
+	 * Gets where a point released with a velocity would stop with friction
+	 * alone, to pick its rest position
+	 *
+	 * @param position
+	 *            : where it's released, in pixels
+	 * @param velocity
+	 *            : its velocity, in pixels per second
+	 */
+	public static float projectFling(float position, float velocity) {
+		return position + velocity * FLING_PROJECTION;
+	}
+
+	private boolean isAtRest() {
+		return Math.abs(x - toX) < restDistance
+				&& Math.abs(y - toY) < restDistance
+				&& Math.abs(vx) < restVelocity && Math.abs(vy) < restVelocity;
+	}
+
+	private void settle() {
+		x = toX;
+		y = toY;
+		vx = vy = 0;
+	}
+}
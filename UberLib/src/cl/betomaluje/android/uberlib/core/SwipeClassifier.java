@@ -0,0 +1,129 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Decides which swipe, if any, a fling was. It's the classification used by
+ * SimpleGestureFilter and MyGestureDetector, working over the coordinates
+ * instead of MotionEvents so it can run on a plain JVM.
+ *
+ * @author Alberto Maluje
+ */
+public final class SwipeClassifier {
+
+	public final static int SWIPE_NONE = 0;
+	public final static int SWIPE_UP = 1;
+	public final static int SWIPE_DOWN = 2;
+	public final static int SWIPE_LEFT = 3;
+	public final static int SWIPE_RIGHT = 4;
+	public final static int SWIPE_UP_LEFT = 5;
+	public final static int SWIPE_UP_RIGHT = 6;
+	public final static int SWIPE_DOWN_LEFT = 7;
+	public final static int SWIPE_DOWN_RIGHT = 8;
+
+	/** tan(22.5), the limit between an axis and a diagonal */
+	private final static float TAN_22_5 = 0.41421356f;
+
+	private SwipeClassifier() {
+	}
+
+	/**
+	 * Classifies a fling on any of the 4 directions, horizontal swipes first
+	 * (SimpleGestureFilter)
+	 *
+	 * @param x1
+	 *            , y1: where the fling started
+	 * @param x2
+	 *            , y2: where the fling ended
+	 * @param velocityX
+	 *            , velocityY: the velocity of the fling, in pixels per second
+	 * @param minDistance
+	 *            : minimum distance travelled on the swipe axis
+	 * @param maxDistance
+	 *            : maximum distance travelled on any axis
+	 * @param minVelocity
+	 *            : minimum velocity on the swipe axis
+	 * @return one of the SWIPE_* constants
+	 */
+	public static int classify(float x1, float y1, float x2, float y2,
+			float velocityX, float velocityY, int minDistance,
+			int maxDistance, int minVelocity) {
+
+		final float xDistance = Math.abs(x1 - x2);
+		final float yDistance = Math.abs(y1 - y2);
+
+		if (xDistance > maxDistance || yDistance > maxDistance)
+			return SWIPE_NONE;
+
+		velocityX = Math.abs(velocityX);
+		velocityY = Math.abs(velocityY);
+
+		if (velocityX > minVelocity && xDistance > minDistance) {
+			// right to left
+			return x1 > x2 ? SWIPE_LEFT : SWIPE_RIGHT;
+		} else if (velocityY > minVelocity && yDistance > minDistance) {
+			// bottom to up
+			return y1 > y2 ? SWIPE_UP : SWIPE_DOWN;
+		}
+
+		return SWIPE_NONE;
+	}
+
+	/**
+	 * Classifies a fling as a left or right swipe (MyGestureDetector)
+	 *
+	 * @param x1
+	 *            , y1: where the fling started
+	 * @param x2
+	 *            , y2: where the fling ended
+	 * @param velocityX
+	 *            : the horizontal velocity of the fling, in pixels per second
+	 * @param minDistance
+	 *            : minimum horizontal distance travelled
+	 * @param maxOffPath
+	 *            : maximum vertical distance travelled
+	 * @param minVelocity
+	 *            : minimum horizontal velocity
+	 * @return SWIPE_LEFT, SWIPE_RIGHT or SWIPE_NONE
+	 */
+	public static int classifyHorizontal(float x1, float y1, float x2,
+			float y2, float velocityX, int minDistance, int maxOffPath,
+			int minVelocity) {
+
+		if (Math.abs(y1 - y2) > maxOffPath)
+			return SWIPE_NONE;
+
+		if (Math.abs(velocityX) > minVelocity) {
+			if (x1 - x2 > minDistance)
+				return SWIPE_LEFT;
+			if (x2 - x1 > minDistance)
+				return SWIPE_RIGHT;
+		}
+
+		return SWIPE_NONE;
+	}
+
+	/**
+	 * Gets which of the 8 directions (45 degrees each) a movement is closest
+	 * to, without trigonometry
+	 *
+	 * @param dx
+	 *            , dy: the movement, in screen coordinates (y grows down)
+	 * @return one of the SWIPE_* constants, SWIPE_NONE if there's no
+	 *         movement
+	 */
+	public static int classifyDirection(float dx, float dy) {
+		final float ax = Math.abs(dx);
+		final float ay = Math.abs(dy);
+
+		if (ax == 0 && ay == 0)
+			return SWIPE_NONE;
+
+		if (ay <= ax * TAN_22_5)
+			return dx > 0 ? SWIPE_RIGHT : SWIPE_LEFT;
+		if (ax <= ay * TAN_22_5)
+			return dy < 0 ? SWIPE_UP : SWIPE_DOWN;
+
+		if (dy < 0)
+			return dx > 0 ? SWIPE_UP_RIGHT : SWIPE_UP_LEFT;
+		return dx > 0 ? SWIPE_DOWN_RIGHT : SWIPE_DOWN_LEFT;
+	}
+}
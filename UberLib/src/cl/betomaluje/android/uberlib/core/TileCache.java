@@ -0,0 +1,291 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.util.Arrays;
+
+/**
+ * Least recently used cache of the decoded tiles of an image, bounded by the
+ * bytes they take rather than by their number: when a tile doesn't fit, the
+ * ones used longest ago are evicted (and given to onEvicted(), to free them)
+ * until it does.
+ * <p>
+ * The keys are the ones of TileGrid.key(). They are kept as primitives, in
+ * an open addressing table over arrays of entries linked in the order of
+ * use, so looking a tile up every frame doesn't allocate. It isn't
+ * synchronized, use it from one thread.</p>
+ *
+ * @author Alberto Maluje
+ *
+ * @param <V>
+ *            : the tiles, like bitmaps
+ */
+public class TileCache<V> {
+
+	private static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// the entries, linked from the least (head) to the most (tail) recently
+	// used. The free ones are linked by next from free.
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private Object[] tiles = new Object[INITIAL_CAPACITY];
+	private int[] sizes = new int[INITIAL_CAPACITY];
+	private int[] prev = new int[INITIAL_CAPACITY];
+	private int[] next = new int[INITIAL_CAPACITY];
+	private int head = NONE, tail = NONE, free = NONE;
+
+	/** Entries ever used since the last clear, the rest were never linked */
+	private int used = 0;
+	private int count = 0;
+
+	/** Entry + 1 of each slot, 0 if the slot is empty */
+	private int[] index = new int[INITIAL_CAPACITY * 2];
+
+	private long maxBytes;
+	private long bytes = 0;
+
+	/**
+	 * @param maxBytes
+	 *            : the most the tiles can take, in bytes
+	 */
+	public TileCache(long maxBytes) {
+		setMaxBytes(maxBytes);
+	}
+
+	/**
+	 * Changes the bound, evicting the tiles that don't fit anymore
+	 *
+	 * @param maxBytes
+	 *            : the most the tiles can take, in bytes
+	 */
+	public void setMaxBytes(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Invalid cache size: "
+					+ maxBytes);
+
+		this.maxBytes = maxBytes;
+		trimTo(maxBytes);
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Gets a tile, making it the most recently used
+	 *
+	 * @return the tile, null if it isn't cached
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		final int slot = find(key);
+		if (index[slot] == 0)
+			return null;
+
+		final int entry = index[slot] - 1;
+		if (entry != tail) {
+			unlink(entry);
+			linkLast(entry);
+		}
+		return (V) tiles[entry];
+	}
+
+	public boolean contains(long key) {
+		return index[find(key)] != 0;
+	}
+
+	/**
+	 * Adds a tile, evicting the least recently used ones to make room for it.
+	 * A tile bigger than the whole cache is evicted right away.
+	 *
+	 * @param key
+	 *            : its key
+	 * @param tile
+	 *            : the tile, not null
+	 * @param size
+	 *            : the bytes it takes
+	 */
+	public void put(long key, V tile, int size) {
+		if (tile == null)
+			throw new NullPointerException("Tile can't be null");
+		if (size < 0)
+			throw new IllegalArgumentException("Invalid tile size: " + size);
+
+		remove(key);
+
+		if (free == NONE && used == keys.length)
+			grow();
+
+		final int entry;
+		if (free != NONE) {
+			entry = free;
+			free = next[entry];
+		} else {
+			entry = used++;
+		}
+
+		keys[entry] = key;
+		tiles[entry] = tile;
+		sizes[entry] = size;
+		linkLast(entry);
+		index[find(key)] = entry + 1;
+		count++;
+		bytes += size;
+
+		trimTo(maxBytes);
+	}
+
+	/**
+	 * Removes a tile, giving it to onEvicted()
+	 *
+	 * @return false if it wasn't cached
+	 */
+	public boolean remove(long key) {
+		final int slot = find(key);
+		if (index[slot] == 0)
+			return false;
+
+		evict(slot);
+		return true;
+	}
+
+	/**
+	 * Removes every tile, giving them to onEvicted()
+	 */
+	@SuppressWarnings("unchecked")
+	public void clear() {
+		for (int entry = head; entry != NONE; entry = next[entry])
+			onEvicted(keys[entry], (V) tiles[entry]);
+
+		Arrays.fill(tiles, 0, used, null);
+		Arrays.fill(index, 0);
+		head = tail = free = NONE;
+		used = 0;
+		count = 0;
+		bytes = 0;
+	}
+
+	/**
+	 * Gets the bytes the tiles take
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of tiles
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Called when a tile leaves the cache, to free it. It may be in use still
+	 * if the caller keeps it.
+	 */
+	protected void onEvicted(long key, V tile) {
+	}
+
+	private void trimTo(long max) {
+		while (bytes > max && head != NONE)
+			evict(find(keys[head]));
+	}
+
+	/**
+	 * Removes the entry of a slot and gives its tile to onEvicted()
+	 */
+	@SuppressWarnings("unchecked")
+	private void evict(int slot) {
+		final int entry = index[slot] - 1;
+		final long key = keys[entry];
+		final V tile = (V) tiles[entry];
+
+		removeSlot(slot);
+		unlink(entry);
+		tiles[entry] = null;
+		next[entry] = free;
+		free = entry;
+		count--;
+		bytes -= sizes[entry];
+
+		onEvicted(key, tile);
+	}
+
+	/**
+	 * Gets the slot of a key, or the empty slot where it would go
+	 */
+	private int find(long key) {
+		final int mask = index.length - 1;
+		int slot = hash(key) & mask;
+		while (index[slot] != 0 && keys[index[slot] - 1] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Empties a slot, moving back the entries after it that can't be found
+	 * past the hole otherwise
+	 */
+	private void removeSlot(int slot) {
+		final int mask = index.length - 1;
+		int hole = slot;
+		for (int i = (slot + 1) & mask; index[i] != 0; i = (i + 1) & mask) {
+			final int home = hash(keys[index[i] - 1]) & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask)) {
+				index[hole] = index[i];
+				hole = i;
+			}
+		}
+		index[hole] = 0;
+	}
+
+	private void grow() {
+		// no Arrays.copyOf before Gingerbread
+		final int length = keys.length, capacity = length * 2;
+		final long[] grownKeys = new long[capacity];
+		final Object[] grownTiles = new Object[capacity];
+		final int[] grownSizes = new int[capacity];
+		final int[] grownPrev = new int[capacity];
+		final int[] grownNext = new int[capacity];
+		System.arraycopy(keys, 0, grownKeys, 0, length);
+		System.arraycopy(tiles, 0, grownTiles, 0, length);
+		System.arraycopy(sizes, 0, grownSizes, 0, length);
+		System.arraycopy(prev, 0, grownPrev, 0, length);
+		System.arraycopy(next, 0, grownNext, 0, length);
+		keys = grownKeys;
+		tiles = grownTiles;
+		sizes = grownSizes;
+		prev = grownPrev;
+		next = grownNext;
+
+		index = new int[capacity * 2];
+		for (int entry = head; entry != NONE; entry = next[entry])
+			index[find(keys[entry])] = entry + 1;
+	}
+
+	private void linkLast(int entry) {
+		prev[entry] = tail;
+		next[entry] = NONE;
+		if (tail == NONE)
+			head = entry;
+		else
+			next[tail] = entry;
+		tail = entry;
+	}
+
+	private void unlink(int entry) {
+		if (prev[entry] == NONE)
+			head = next[entry];
+		else
+			next[prev[entry]] = next[entry];
+
+		if (next[entry] == NONE)
+			tail = prev[entry];
+		else
+			prev[next[entry]] = prev[entry];
+	}
+
+	private static int hash(long key) {
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
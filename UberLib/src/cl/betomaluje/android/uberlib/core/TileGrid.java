@@ -0,0 +1,177 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Splits a large image into square tiles for each sample size it's decoded
+ * at: a tile always has the same decoded size, so it covers tileSize *
+ * sampleSize pixels of the image, and zooming out just uses fewer, coarser
+ * tiles. It picks the sample size for a scale and the tiles a viewport
+ * needs, without allocating.
+ * <p>
+ * Sample sizes are powers of two, like the inSampleSize of BitmapFactory.
+ * Image coordinates are in pixels of the full resolution image.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class TileGrid {
+
+	/** Default side of the decoded tiles, in pixels */
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	/** Largest sample size, 1/128 of the image */
+	public static final int MAX_SAMPLE_SIZE = 128;
+
+	private final int imageWidth;
+	private final int imageHeight;
+	private final int tileSize;
+
+	/**
+	 * @param imageWidth
+	 *            , imageHeight: the size of the full image, in pixels
+	 */
+	public TileGrid(int imageWidth, int imageHeight) {
+		this(imageWidth, imageHeight, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * @param imageWidth
+	 *            , imageHeight: the size of the full image, in pixels
+	 * @param tileSize
+	 *            : the side of the decoded tiles, in pixels
+	 */
+	public TileGrid(int imageWidth, int imageHeight, int tileSize) {
+		if (imageWidth <= 0 || imageHeight <= 0)
+			throw new IllegalArgumentException("Invalid image size: "
+					+ imageWidth + "x" + imageHeight);
+		if (tileSize <= 0)
+			throw new IllegalArgumentException("Invalid tile size: "
+					+ tileSize);
+
+		this.imageWidth = imageWidth;
+		this.imageHeight = imageHeight;
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Gets the sample size to decode the image at when it's drawn at a
+	 * scale: the coarsest one that still has a decoded pixel for each pixel
+	 * on the screen
+	 *
+	 * @param scale
+	 *            : pixels on the screen per pixel of the image
+	 */
+	public static int sampleSizeForScale(float scale) {
+		int sampleSize = 1;
+		while (sampleSize < MAX_SAMPLE_SIZE && scale * sampleSize * 2 <= 1)
+			sampleSize *= 2;
+		return sampleSize;
+	}
+
+	/**
+	 * Gets the sample size to decode a whole image within a size, like a low
+	 * resolution preview of it
+	 *
+	 * @param width
+	 *            , height: the size of the image, in pixels
+	 * @param maxSize
+	 *            : the longest side the decoded image can have, in pixels
+	 */
+	public static int sampleSizeToFit(int width, int height, int maxSize) {
+		int sampleSize = 1;
+		while (sampleSize < MAX_SAMPLE_SIZE
+				&& (width / sampleSize > maxSize || height / sampleSize > maxSize))
+			sampleSize *= 2;
+		return sampleSize;
+	}
+
+	/**
+	 * Gets the pixels of the image each tile covers at a sample size
+	 */
+	public int getTileSpan(int sampleSize) {
+		return tileSize * sampleSize;
+	}
+
+	public int getColumns(int sampleSize) {
+		final int span = getTileSpan(sampleSize);
+		return (imageWidth + span - 1) / span;
+	}
+
+	public int getRows(int sampleSize) {
+		final int span = getTileSpan(sampleSize);
+		return (imageHeight + span - 1) / span;
+	}
+
+	/**
+	 * Finds the tiles that cover a part of the image
+	 *
+	 * @param sampleSize
+	 *            : the sample size of the tiles
+	 * @param left
+	 *            , top, right, bottom: the part, in image pixels, like the
+	 *            viewport
+	 * @param range
+	 *            : where to put the first column, first row, last column and
+	 *            last row, inclusive
+	 * @return false if the part is outside the image
+	 */
+	public boolean getTiles(int sampleSize, float left, float top,
+			float right, float bottom, int[] range) {
+		if (right <= 0 || bottom <= 0 || left >= imageWidth
+				|| top >= imageHeight || right <= left || bottom <= top)
+			return false;
+
+		final int span = getTileSpan(sampleSize);
+		range[0] = (int) Math.max(left, 0) / span;
+		range[1] = (int) Math.max(top, 0) / span;
+		range[2] = ((int) Math.ceil(Math.min(right, imageWidth)) - 1) / span;
+		range[3] = ((int) Math.ceil(Math.min(bottom, imageHeight)) - 1) / span;
+		return true;
+	}
+
+	/**
+	 * Gets the part of the image a tile covers, the last ones are cut at the
+	 * edges of the image
+	 *
+	 * @param bounds
+	 *            : where to put its left, top, right and bottom, in image
+	 *            pixels
+	 */
+	public void getTileBounds(int sampleSize, int column, int row,
+			int[] bounds) {
+		final int span = getTileSpan(sampleSize);
+		bounds[0] = column * span;
+		bounds[1] = row * span;
+		bounds[2] = Math.min(bounds[0] + span, imageWidth);
+		bounds[3] = Math.min(bounds[1] + span, imageHeight);
+	}
+
+	/**
+	 * Gets the key of a tile, unique across sample sizes
+	 */
+	public static long key(int sampleSize, int column, int row) {
+		return ((long) sampleSize << 48) | ((long) column << 24) | row;
+	}
+
+	public static int sampleSizeOf(long key) {
+		return (int) (key >>> 48);
+	}
+
+	public static int columnOf(long key) {
+		return (int) (key >>> 24) & 0xFFFFFF;
+	}
+
+	public static int rowOf(long key) {
+		return (int) key & 0xFFFFFF;
+	}
+
+	public int getImageWidth() {
+		return imageWidth;
+	}
+
+	public int getImageHeight() {
+		return imageHeight;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+}
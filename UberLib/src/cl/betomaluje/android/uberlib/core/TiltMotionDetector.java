@@ -0,0 +1,159 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Detects the device being tilted from lying flat, screen up: left or right
+ * edge down, or top edge down (forward) or up (back). It works on the shared
+ * gravity vector, comparing its normalized components with the sine of the
+ * angles, so there's no trigonometry per sample.
+ * <p>
+ * Each tilt is reported once when it starts, and GESTURE_TILT_NONE when the
+ * device goes back to flat. The angle to leave a tilt is smaller than the one
+ * to enter it, so it doesn't flicker around the threshold, and a new position
+ * must be held for a while, so a shake leaking into the gravity estimate
+ * isn't taken as a tilt.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class TiltMotionDetector implements MotionDetector {
+
+	/** Default angle of a tilt, in degrees */
+	public static final float DEFAULT_ANGLE = 30f;
+
+	/** Default difference between the angles to enter and leave a tilt */
+	public static final float DEFAULT_HYSTERESIS = 10f;
+
+	/** Default time a tilt must be held, in milliseconds */
+	public static final int DEFAULT_HOLD_TIME = 200;
+
+	/** Below this the gravity estimate isn't reliable (free fall, thrown) */
+	private static final float MIN_GRAVITY = 2f;
+
+	private float enterRatio;
+	private float exitRatio;
+
+	private long holdTime = DEFAULT_HOLD_TIME * 1000000L;
+
+	/** One of the GESTURE_TILT_* constants */
+	private int tilt = MotionProcessor.GESTURE_TILT_NONE;
+
+	/** Tilt being held and since when */
+	private int candidate = MotionProcessor.GESTURE_TILT_NONE;
+	private long candidateSince;
+
+	public TiltMotionDetector() {
+		this(DEFAULT_ANGLE, DEFAULT_HYSTERESIS);
+	}
+
+	/**
+	 * @param angle
+	 *            : the angle from flat of a tilt, in degrees (0 - 90)
+	 * @param hysteresis
+	 *            : how many degrees less the angle must be to leave it
+	 */
+	public TiltMotionDetector(float angle, float hysteresis) {
+		setAngle(angle, hysteresis);
+	}
+
+	@Override
+	public void onMotion(MotionState state, MotionProcessor.Listener listener) {
+		final float gravity = state.gravityMagnitude;
+		if (gravity < MIN_GRAVITY)
+			return;
+
+		// sine of the angle on each axis; gravity points away from the edge
+		// that goes down
+		final float ratioX = state.gravityX / gravity;
+		final float ratioY = state.gravityY / gravity;
+
+		int next = MotionProcessor.GESTURE_TILT_NONE;
+		if (holds(ratioX, ratioY)) {
+			next = tilt;
+		} else if (Math.abs(ratioX) >= Math.abs(ratioY)) {
+			if (ratioX <= -enterRatio)
+				next = MotionProcessor.GESTURE_TILT_RIGHT;
+			else if (ratioX >= enterRatio)
+				next = MotionProcessor.GESTURE_TILT_LEFT;
+		} else {
+			if (ratioY <= -enterRatio)
+				next = MotionProcessor.GESTURE_TILT_FORWARD;
+			else if (ratioY >= enterRatio)
+				next = MotionProcessor.GESTURE_TILT_BACK;
+		}
+
+		if (next != candidate) {
+			candidate = next;
+			candidateSince = state.timestamp;
+			return;
+		}
+
+		if (next != tilt && state.timestamp - candidateSince >= holdTime) {
+			tilt = next;
+			listener.onMotionGesture(next, state.timestamp);
+		}
+	}
+
+	/**
+	 * Checks if the current tilt is still above the angle to leave it
+	 */
+	private boolean holds(float ratioX, float ratioY) {
+		switch (tilt) {
+		case MotionProcessor.GESTURE_TILT_RIGHT:
+			return ratioX <= -exitRatio;
+		case MotionProcessor.GESTURE_TILT_LEFT:
+			return ratioX >= exitRatio;
+		case MotionProcessor.GESTURE_TILT_FORWARD:
+			return ratioY <= -exitRatio;
+		case MotionProcessor.GESTURE_TILT_BACK:
+			return ratioY >= exitRatio;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public void reset() {
+		tilt = MotionProcessor.GESTURE_TILT_NONE;
+		candidate = MotionProcessor.GESTURE_TILT_NONE;
+		candidateSince = 0;
+	}
+
+	public int getHoldTime() {
+		return (int) (holdTime / 1000000L);
+	}
+
+	/**
+	 * Sets the time a tilt must be held to be reported
+	 *
+	 * @param holdTime
+	 *            : the time, in milliseconds
+	 */
+	public void setHoldTime(int holdTime) {
+		this.holdTime = holdTime * 1000000L;
+	}
+
+	/**
+	 * Sets the angles of a tilt
+	 *
+	 * @param angle
+	 *            : the angle from flat of a tilt, in degrees (0 - 90)
+	 * @param hysteresis
+	 *            : how many degrees less the angle must be to leave it
+	 */
+	public void setAngle(float angle, float hysteresis) {
+		if (angle <= 0 || angle >= 90 || hysteresis < 0 || hysteresis > angle)
+			throw new IllegalArgumentException("Invalid tilt angle: " + angle
+					+ ", hysteresis: " + hysteresis);
+
+		enterRatio = (float) Math.sin(Math.toRadians(angle));
+		exitRatio = (float) Math.sin(Math.toRadians(angle - hysteresis));
+	}
+
+	/**
+	 * Gets the current tilt
+	 *
+	 * @return one of the GESTURE_TILT_* constants
+	 */
+	public int getTilt() {
+		return tilt;
+	}
+}
@@ -0,0 +1,115 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Fixed-capacity queue of {@link TouchEventRecord}s from one producer thread
+ * (the UI thread copying MotionEvents) to one consumer thread (the gesture
+ * recognition). The records are allocated once and reused, so neither side
+ * allocates per event, and no locks are taken.
+ * <p>
+ * When the consumer falls behind and the queue is full the event is lost and
+ * the queue is marked as overflowed, so the consumer can cancel the gesture
+ * in progress instead of recognizing it from incomplete data.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class TouchEventQueue {
+
+	/** Default capacity, several seconds of moves at 60Hz */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final TouchEventRecord[] records;
+	private final int mask;
+
+	/** Next record to read, only written by the consumer */
+	private volatile int head = 0;
+
+	/** Next record to write, only written by the producer */
+	private volatile int tail = 0;
+
+	private volatile boolean overflowed = false;
+
+	public TouchEventQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            : the number of records, rounded up to a power of 2
+	 */
+	public TouchEventQueue(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30)
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+
+		records = new TouchEventRecord[size];
+		for (int i = 0; i < size; i++)
+			records[i] = new TouchEventRecord();
+		mask = size - 1;
+	}
+
+	/**
+	 * Adds an event. Only called from the producer thread.
+	 *
+	 * @return false if the queue was full and the event was lost
+	 */
+	public boolean add(int action, int pointerId, float x, float y, long time) {
+		final int t = tail;
+		if (t - head == records.length) {
+			overflowed = true;
+			return false;
+		}
+
+		records[t & mask].set(action, pointerId, x, y, time);
+		tail = t + 1;
+		return true;
+	}
+
+	/**
+	 * Gets the oldest event without removing it. Only called from the
+	 * consumer thread, the record is valid until {@link #remove()}.
+	 *
+	 * @return the record, or null if the queue is empty
+	 */
+	public TouchEventRecord peek() {
+		final int h = head;
+		if (h == tail)
+			return null;
+
+		return records[h & mask];
+	}
+
+	/**
+	 * Removes the oldest event, giving its record back to the producer. Only
+	 * called from the consumer thread.
+	 */
+	public void remove() {
+		final int h = head;
+		if (h != tail)
+			head = h + 1;
+	}
+
+	/**
+	 * Checks and clears the overflow mark. Only called from the consumer
+	 * thread.
+	 *
+	 * @return true if events were lost since the last call
+	 */
+	public boolean clearOverflow() {
+		if (!overflowed)
+			return false;
+
+		overflowed = false;
+		return true;
+	}
+
+	public int size() {
+		return tail - head;
+	}
+
+	public int getCapacity() {
+		return records.length;
+	}
+}
@@ -0,0 +1,60 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * The fields of a touch event the gesture recognition needs, copied out of a
+ * MotionEvent so it can be processed on another thread (or on a plain JVM).
+ * The records are preallocated and reused by {@link TouchEventQueue}.
+ *
+ * @author Alberto Maluje
+ */
+public class TouchEventRecord {
+
+	// same values as the MotionEvent masked actions
+	public final static int ACTION_DOWN = 0;
+	public final static int ACTION_UP = 1;
+	public final static int ACTION_MOVE = 2;
+	public final static int ACTION_CANCEL = 3;
+	public final static int ACTION_POINTER_DOWN = 5;
+	public final static int ACTION_POINTER_UP = 6;
+
+	/**
+	 * Checks if an action is one of the ACTION_* constants, the others (like
+	 * hover events or fake ones) aren't touches
+	 */
+	public static boolean isTouchAction(int action) {
+		switch (action) {
+		case ACTION_DOWN:
+		case ACTION_UP:
+		case ACTION_MOVE:
+		case ACTION_CANCEL:
+		case ACTION_POINTER_DOWN:
+		case ACTION_POINTER_UP:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/** One of the ACTION_* constants */
+	public int action;
+
+	/** Id of the pointer this record is about */
+	public int pointerId;
+
+	/** Position of the pointer, in pixels */
+	public float x, y;
+
+	/** Time of the event, in milliseconds (MotionEvent.getEventTime) */
+	public long time;
+
+	/**
+	 * Copies the fields of an event into this record
+	 */
+	public void set(int action, int pointerId, float x, float y, long time) {
+		this.action = action;
+		this.pointerId = pointerId;
+		this.x = x;
+		this.y = y;
+		this.time = time;
+	}
+}
@@ -0,0 +1,242 @@
+package cl.betomaluje.android.uberlib.core;
+
+/**
+ * Predicts where a finger will be a few milliseconds ahead, to draw what it
+ * drags where it will be when the frame reaches the screen instead of where
+ * it was when the event was read.
+ * <p>
+ * Each axis is tracked with a constant velocity Kalman filter: every sample
+ * (including the historical ones of a MotionEvent) corrects the position and
+ * velocity by how much they missed it, weighted by how much the filter trusts
+ * its own estimate, so the jitter of the panel is smoothed while real changes
+ * of direction are followed within a few samples. The prediction is the
+ * filtered position moved by the filtered velocity over the horizon.
+ * Processing a sample doesn't allocate.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class TouchPredictor {
+
+	/** Default horizon: one frame at 60Hz, in milliseconds */
+	public static final int DEFAULT_HORIZON = 16;
+
+	/** Longest horizon allowed, further predictions overshoot the stops */
+	public static final int MAX_HORIZON = 50;
+
+	/** Default noise of the touch panel, in pixels (standard deviation) */
+	public static final float DEFAULT_MEASUREMENT_NOISE = 1.5f;
+
+	/**
+	 * Default changes of velocity expected from the finger, in pixels per
+	 * millisecond squared (standard deviation)
+	 */
+	public static final float DEFAULT_ACCELERATION_NOISE = 0.05f;
+
+	/** Uncertainty of the velocity on the first sample, in pixels/ms */
+	private static final double INITIAL_VELOCITY_DEVIATION = 5;
+
+	private double measurementVariance;
+	private double accelerationVariance;
+
+	// state and covariance of each axis: position, velocity and [p00 p01;
+	// p01 p11]
+	private double x, vx, x00, x01, x11;
+	private double y, vy, y00, y01, y11;
+
+	private long lastTime;
+	private int samples = 0;
+
+	public TouchPredictor() {
+		setMeasurementNoise(DEFAULT_MEASUREMENT_NOISE);
+		setAccelerationNoise(DEFAULT_ACCELERATION_NOISE);
+	}
+
+	/**
+	 * Starts tracking a new finger
+	 *
+	 * @param px
+	 *            , py: the first position, in pixels
+	 * @param time
+	 *            : time of the position, in milliseconds
+	 */
+	public void reset(float px, float py, long time) {
+		final double velocityVariance = INITIAL_VELOCITY_DEVIATION
+				* INITIAL_VELOCITY_DEVIATION;
+
+		x = px;
+		vx = 0;
+		x00 = measurementVariance;
+		x01 = 0;
+		x11 = velocityVariance;
+
+		y = py;
+		vy = 0;
+		y00 = measurementVariance;
+		y01 = 0;
+		y11 = velocityVariance;
+
+		lastTime = time;
+		samples = 1;
+	}
+
+	/**
+	 * Forgets the finger, the next sample starts tracking a new one
+	 */
+	public void clear() {
+		samples = 0;
+		x = vx = y = vy = 0;
+	}
+
+	/**
+	 * Adds a position of the finger, the first one after reset() or clear()
+	 * starts it
+	 *
+	 * @param px
+	 *            , py: the position, in pixels
+	 * @param time
+	 *            : time of the position, in milliseconds. Samples older than
+	 *            the last one are ignored.
+	 */
+	public void addSample(float px, float py, long time) {
+		if (samples == 0) {
+			reset(px, py, time);
+			return;
+		}
+		if (time < lastTime)
+			return;
+
+		final double dt = time - lastTime;
+		lastTime = time;
+		samples++;
+
+		if (dt > 0) {
+			// predict: the state moves with its velocity and becomes less
+			// certain by the acceleration it could have had
+			final double dt2 = dt * dt;
+			final double q00 = accelerationVariance * dt2 * dt2 / 4;
+			final double q01 = accelerationVariance * dt2 * dt / 2;
+			final double q11 = accelerationVariance * dt2;
+
+			x += vx * dt;
+			x00 += dt * (2 * x01 + dt * x11) + q00;
+			x01 += dt * x11 + q01;
+			x11 += q11;
+
+			y += vy * dt;
+			y00 += dt * (2 * y01 + dt * y11) + q00;
+			y01 += dt * y11 + q01;
+			y11 += q11;
+		}
+
+		// update: correct by the error, weighted by the gains
+		double s = x00 + measurementVariance;
+		double k0 = x00 / s, k1 = x01 / s;
+		double error = px - x;
+		x += k0 * error;
+		vx += k1 * error;
+		x11 -= k1 * x01;
+		x00 *= 1 - k0;
+		x01 *= 1 - k0;
+
+		s = y00 + measurementVariance;
+		k0 = y00 / s;
+		k1 = y01 / s;
+		error = py - y;
+		y += k0 * error;
+		vy += k1 * error;
+		y11 -= k1 * y01;
+		y00 *= 1 - k0;
+		y01 *= 1 - k0;
+	}
+
+	/**
+	 * Gets where the finger will be
+	 *
+	 * @param horizon
+	 *            : how far ahead of the last sample, in milliseconds, up to
+	 *            MAX_HORIZON
+	 * @return the position, in pixels
+	 */
+	public float getPredictedX(int horizon) {
+		return (float) (x + vx * clampHorizon(horizon));
+	}
+
+	/**
+	 * @see #getPredictedX(int)
+	 */
+	public float getPredictedY(int horizon) {
+		return (float) (y + vy * clampHorizon(horizon));
+	}
+
+	private int clampHorizon(int horizon) {
+		// no velocity is known from a single sample
+		if (samples < 2 || horizon < 0)
+			return 0;
+		return horizon > MAX_HORIZON ? MAX_HORIZON : horizon;
+	}
+
+	/**
+	 * Gets the filtered position of the last sample
+	 */
+	public float getX() {
+		return (float) x;
+	}
+
+	/**
+	 * Gets the filtered position of the last sample
+	 */
+	public float getY() {
+		return (float) y;
+	}
+
+	/**
+	 * Gets the filtered velocity, in pixels per second
+	 */
+	public float getVelocityX() {
+		return (float) (vx * 1000);
+	}
+
+	/**
+	 * Gets the filtered velocity, in pixels per second
+	 */
+	public float getVelocityY() {
+		return (float) (vy * 1000);
+	}
+
+	/**
+	 * Gets the number of samples since the last reset
+	 */
+	public int getSampleCount() {
+		return samples;
+	}
+
+	/**
+	 * Sets how noisy the touch panel is: higher values smooth more but follow
+	 * the finger later
+	 *
+	 * @param pixels
+	 *            : the standard deviation of the positions, in pixels
+	 */
+	public void setMeasurementNoise(float pixels) {
+		if (pixels <= 0)
+			throw new IllegalArgumentException("Invalid noise: " + pixels);
+
+		this.measurementVariance = pixels * pixels;
+	}
+
+	/**
+	 * Sets how fast the finger is expected to change its velocity: higher
+	 * values follow turns sooner but smooth less
+	 *
+	 * @param pixelsPerMs2
+	 *            : the standard deviation of the acceleration, in pixels per
+	 *            millisecond squared
+	 */
+	public void setAccelerationNoise(float pixelsPerMs2) {
+		if (pixelsPerMs2 <= 0)
+			throw new IllegalArgumentException("Invalid noise: "
+					+ pixelsPerMs2);
+
+		this.accelerationVariance = pixelsPerMs2 * pixelsPerMs2;
+	}
+}
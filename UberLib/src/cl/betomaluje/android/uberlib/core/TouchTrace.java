@@ -0,0 +1,200 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Touch events in memory, read from a file written by
+ * {@link TouchTraceWriter} or built from arrays.
+ *
+ * @author Alberto Maluje
+ */
+public class TouchTrace {
+
+	private final long[] times;
+
+	/** Action and pointer id of each event */
+	private final byte[] actions;
+	private final byte[] pointerIds;
+
+	/** Interleaved x, y */
+	private final float[] positions;
+
+	/**
+	 * @param times
+	 *            : the time of each event, in milliseconds
+	 * @param actions
+	 *            : the TouchEventRecord.ACTION_* of each event
+	 * @param pointerIds
+	 *            : the pointer id of each event
+	 * @param positions
+	 *            : x and y of each event, interleaved
+	 */
+	public TouchTrace(long[] times, byte[] actions, byte[] pointerIds,
+			float[] positions) {
+		if (actions.length != times.length
+				|| pointerIds.length != times.length)
+			throw new IllegalArgumentException("Expected " + times.length
+					+ " actions and pointer ids, got " + actions.length
+					+ " and " + pointerIds.length);
+		if (positions.length != times.length * 2)
+			throw new IllegalArgumentException("Expected " + times.length * 2
+					+ " positions, got " + positions.length);
+
+		this.times = times;
+		this.actions = actions;
+		this.pointerIds = pointerIds;
+		this.positions = positions;
+	}
+
+	/**
+	 * Reads a trace. A record cut short at the end (a recording that didn't
+	 * finish) is ignored.
+	 *
+	 * @param file
+	 *            : the file written by TouchTraceWriter
+	 * @return the trace
+	 * @throws IOException
+	 *             if the file can't be read or isn't a trace
+	 */
+	public static TouchTrace read(File file) throws IOException {
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			final long size = channel.size();
+			if (size < TouchTraceWriter.HEADER_SIZE || size > Integer.MAX_VALUE)
+				throw new IOException("Not a touch trace: " + file);
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) size).order(
+					ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+			buffer.flip();
+
+			if (buffer.getInt() != TouchTraceWriter.MAGIC)
+				throw new IOException("Not a touch trace: " + file);
+
+			int version = buffer.getInt();
+			if (version != TouchTraceWriter.VERSION)
+				throw new IOException("Unsupported touch trace version: "
+						+ version);
+
+			final int count = buffer.remaining() / TouchTraceWriter.RECORD_SIZE;
+			long[] times = new long[count];
+			byte[] actions = new byte[count];
+			byte[] pointerIds = new byte[count];
+			float[] positions = new float[count * 2];
+			for (int i = 0, p = 0; i < count; i++, p += 2) {
+				times[i] = buffer.getLong();
+				actions[i] = buffer.get();
+				pointerIds[i] = buffer.get();
+				positions[p] = buffer.getFloat();
+				positions[p + 1] = buffer.getFloat();
+			}
+			return new TouchTrace(times, actions, pointerIds, positions);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Writes the trace in the format of TouchTraceWriter
+	 *
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		TouchTraceWriter writer = new TouchTraceWriter(file);
+		try {
+			for (int i = 0, p = 0; i < times.length; i++, p += 2)
+				writer.write(actions[i], pointerIds[i], positions[p],
+						positions[p + 1], times[i]);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Feeds every event to a recognizer, as fast as it can take them
+	 *
+	 * @param recognizer
+	 *            : the recognizer
+	 * @return the number of events that were part of a recognized gesture
+	 */
+	public int replay(GestureRecognizer recognizer) {
+		int handled = 0;
+		for (int i = 0, p = 0; i < times.length; i++, p += 2) {
+			if (recognizer.onTouchEvent(actions[i], pointerIds[i],
+					positions[p], positions[p + 1], times[i]))
+				handled++;
+		}
+		return handled;
+	}
+
+	/**
+	 * Feeds every event to a recognizer, as fast as it can take them, and
+	 * records how long each one takes
+	 *
+	 * @param recognizer
+	 *            : the recognizer
+	 * @param histogram
+	 *            : where the processing time of each event is recorded, in
+	 *            nanoseconds
+	 * @return the number of events that were part of a recognized gesture
+	 */
+	public int replay(GestureRecognizer recognizer, LatencyHistogram histogram) {
+		int handled = 0;
+		for (int i = 0, p = 0; i < times.length; i++, p += 2) {
+			final long start = System.nanoTime();
+			if (recognizer.onTouchEvent(actions[i], pointerIds[i],
+					positions[p], positions[p + 1], times[i]))
+				handled++;
+			histogram.record(System.nanoTime() - start);
+		}
+		return handled;
+	}
+
+	public int size() {
+		return times.length;
+	}
+
+	public long getTime(int index) {
+		return times[index];
+	}
+
+	/**
+	 * @return one of the TouchEventRecord.ACTION_* constants
+	 */
+	public int getAction(int index) {
+		return actions[index];
+	}
+
+	public int getPointerId(int index) {
+		return pointerIds[index];
+	}
+
+	public float getX(int index) {
+		return positions[index * 2];
+	}
+
+	public float getY(int index) {
+		return positions[index * 2 + 1];
+	}
+
+	/**
+	 * Gets the time between the first and the last event
+	 *
+	 * @return the duration, in milliseconds
+	 */
+	public long getDuration() {
+		if (times.length == 0)
+			return 0;
+
+		return times[times.length - 1] - times[0];
+	}
+}
@@ -0,0 +1,85 @@
+package cl.betomaluje.android.uberlib.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes touch events to a file, to be replayed later with
+ * {@link TouchTrace}.
+ * <p>
+ * Each record is an event: the time in milliseconds (8 bytes), the action and
+ * the pointer id (1 byte each) and x and y (4 bytes each). A MotionEvent with
+ * several pointers or historical points becomes several records, one per
+ * pointer and point, like the events of {@link GestureRecognizer}. See
+ * {@link RecordWriter} for the header and the buffering.</p>
+ *
+ * @author Alberto Maluje
+ */
+public class TouchTraceWriter extends RecordWriter {
+
+	/** "TTRC" */
+	public static final int MAGIC = 0x43525454;
+
+	public static final int VERSION = 1;
+
+	/** Bytes per event: time, action, pointer id, x and y */
+	public static final int RECORD_SIZE = 18;
+
+	/** Default size of the buffer, a few seconds of moves with two fingers */
+	public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @throws IOException
+	 */
+	public TouchTraceWriter(File file) throws IOException {
+		this(file, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param file
+	 *            : the file to write, it's created or truncated
+	 * @param bufferSize
+	 *            : the bytes kept in memory before writing to the file
+	 * @throws IOException
+	 */
+	public TouchTraceWriter(File file, int bufferSize) throws IOException {
+		super(file, MAGIC, VERSION, RECORD_SIZE, bufferSize);
+	}
+
+	/**
+	 * Adds an event to the trace
+	 *
+	 * @param action
+	 *            : one of the TouchEventRecord.ACTION_* constants
+	 * @param id
+	 *            : the id of the pointer, from 0 to 127
+	 * @param x
+	 *            , y: position of the pointer, in pixels
+	 * @param time
+	 *            : time of the event, in milliseconds
+	 * @throws IOException
+	 */
+	public void write(int action, int id, float x, float y, long time)
+			throws IOException {
+		final ByteBuffer buffer = nextRecord();
+		buffer.putLong(time);
+		buffer.put((byte) action);
+		buffer.put((byte) id);
+		buffer.putFloat(x);
+		buffer.putFloat(y);
+	}
+
+	/**
+	 * Adds an event to the trace
+	 *
+	 * @param record
+	 *            : the event
+	 * @throws IOException
+	 */
+	public void write(TouchEventRecord record) throws IOException {
+		write(record.action, record.pointerId, record.x, record.y, record.time);
+	}
+}
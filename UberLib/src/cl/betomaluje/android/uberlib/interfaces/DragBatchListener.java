@@ -0,0 +1,20 @@
+package cl.betomaluje.android.uberlib.interfaces;
+
+/**
+ * Interface to receive every position of a drag when its DragListener
+ * callbacks are coalesced to one per frame
+ */
+public interface DragBatchListener {
+
+	/**
+	 * Called once per frame, before DragListener.isDragging, with the
+	 * positions since the previous frame (including the historical ones
+	 * batched into each MotionEvent), oldest first
+	 * @param points
+	 * 					x and y of each position, interleaved. It's reused
+	 * 					after this returns, copy what must be kept
+	 * @param count
+	 * 					the number of positions in points
+	 */
+	void onDragBatch(int[] points, int count);
+}
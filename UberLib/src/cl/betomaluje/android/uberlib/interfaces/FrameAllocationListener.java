@@ -0,0 +1,18 @@
+package cl.betomaluje.android.uberlib.interfaces;
+
+/**
+ * Interface to receive how much a touch listener allocated in each frame, so
+ * an instrumentation test can assert that panning or zooming doesn't allocate
+ */
+public interface FrameAllocationListener {
+
+	/**
+	 * Called once per frame with touch events, after them
+	 * @param count
+	 * 					the objects allocated by the listener for the events
+	 * 					of the frame
+	 * @param bytes
+	 * 					the bytes of those objects
+	 */
+	void onFrameAllocations(int count, int bytes);
+}
@@ -0,0 +1,230 @@
+package cl.betomaluje.android.uberlib.security;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Authenticated {@link ByteCipher} using AES in GCM mode through the JCE.
+ * Every message gets a random IV, which is written before the cipher text, so
+ * the output of an encryption is: IV (12 bytes) + cipher text + tag (16 bytes).
+ * A tampered message makes doFinal throw when decrypting.
+ * <p>
+ * {@link Cipher#getInstance(String)} is expensive, so the JCE ciphers are kept
+ * in a small per-thread pool and reused between messages.
+ *
+ * @author Alberto Maluje
+ */
+public class AesGcmCipher implements ByteCipher {
+
+	public static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+	/** Size of the IV, in bytes */
+	public static final int IV_SIZE = 12;
+
+	/** Size of the authentication tag, in bits */
+	public static final int TAG_SIZE = 128;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	/**
+	 * A JCE cipher per thread. It's taken by init and given back by doFinal,
+	 * so two messages interleaved on the same thread don't share it.
+	 */
+	private static final ThreadLocal<Cipher> POOL = new ThreadLocal<Cipher>();
+
+	private final SecretKey key;
+
+	private final byte[] iv = new byte[IV_SIZE];
+
+	private int mode = 0;
+
+	/** The JCE cipher of the current message, null until it's initialised */
+	private Cipher cipher;
+
+	/** Bytes of the IV written (encrypting) or read (decrypting) so far */
+	private int ivCount = 0;
+
+	/**
+	 * @param key
+	 *            : an AES key, see {@link #generateKey(int)}
+	 */
+	public AesGcmCipher(SecretKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Generates a new random AES key
+	 *
+	 * @param bits
+	 *            : the size of the key: 128, 192 or 256
+	 * @return the key
+	 * @throws GeneralSecurityException
+	 */
+	public static SecretKey generateKey(int bits)
+			throws GeneralSecurityException {
+		KeyGenerator generator = KeyGenerator.getInstance("AES");
+		generator.init(bits, RANDOM);
+		return generator.generateKey();
+	}
+
+	@Override
+	public void init(int mode) throws GeneralSecurityException {
+		if (mode != Cipher.ENCRYPT_MODE && mode != Cipher.DECRYPT_MODE)
+			throw new IllegalArgumentException("Invalid mode: " + mode);
+
+		release();
+		this.mode = mode;
+		this.ivCount = 0;
+
+		if (mode == Cipher.ENCRYPT_MODE) {
+			RANDOM.nextBytes(iv);
+			cipher = acquire();
+			cipher.init(Cipher.ENCRYPT_MODE, key, parameters(iv));
+		}
+	}
+
+	@Override
+	public int getOutputSize(int inputLen) {
+		if (mode == Cipher.ENCRYPT_MODE)
+			return IV_SIZE - ivCount + cipher.getOutputSize(inputLen);
+
+		if (cipher == null)
+			return Math.max(0, inputLen - (IV_SIZE - ivCount));
+
+		return cipher.getOutputSize(inputLen);
+	}
+
+	@Override
+	public int update(byte[] input, int inputOffset, int inputLen,
+			byte[] output, int outputOffset) throws GeneralSecurityException {
+		checkInitialised();
+
+		if (mode == Cipher.ENCRYPT_MODE) {
+			int written = writeIv(output, outputOffset);
+			return written
+					+ cipher.update(input, inputOffset, inputLen, output,
+							outputOffset + written);
+		}
+
+		// the IV comes first, it may be split among several updates
+		while (ivCount < IV_SIZE && inputLen > 0) {
+			iv[ivCount++] = input[inputOffset++];
+			inputLen--;
+		}
+
+		if (ivCount < IV_SIZE)
+			return 0;
+
+		if (cipher == null) {
+			cipher = acquire();
+			cipher.init(Cipher.DECRYPT_MODE, key, parameters(iv));
+		}
+
+		if (inputLen == 0)
+			return 0;
+
+		return cipher.update(input, inputOffset, inputLen, output,
+				outputOffset);
+	}
+
+	@Override
+	public int doFinal(byte[] output, int outputOffset)
+			throws GeneralSecurityException {
+		checkInitialised();
+
+		if (cipher == null)
+			throw new GeneralSecurityException("Message is too short: "
+					+ ivCount + " bytes");
+
+		try {
+			int written = mode == Cipher.ENCRYPT_MODE ? writeIv(output,
+					outputOffset) : 0;
+			return written + cipher.doFinal(output, outputOffset + written);
+		} finally {
+			release();
+			mode = 0;
+		}
+	}
+
+	@Override
+	public byte[] doFinal(int mode, byte[] input)
+			throws GeneralSecurityException {
+		init(mode);
+
+		byte[] output = new byte[getOutputSize(input.length)];
+		int written = update(input, 0, input.length, output, 0);
+		written += doFinal(output, written);
+
+		if (written == output.length)
+			return output;
+
+		byte[] result = new byte[written];
+		System.arraycopy(output, 0, result, 0, written);
+		return result;
+	}
+
+	private int writeIv(byte[] output, int outputOffset) {
+		if (ivCount == IV_SIZE)
+			return 0;
+
+		System.arraycopy(iv, 0, output, outputOffset, IV_SIZE);
+		ivCount = IV_SIZE;
+		return IV_SIZE;
+	}
+
+	private void checkInitialised() {
+		if (mode == 0)
+			throw new IllegalStateException(
+					"You must call init() before processing a message.");
+	}
+
+	/**
+	 * Takes the JCE cipher of this thread, or creates a new one if it's in use
+	 */
+	private static Cipher acquire() throws GeneralSecurityException {
+		Cipher pooled = POOL.get();
+		if (pooled != null) {
+			POOL.set(null);
+			return pooled;
+		}
+		return Cipher.getInstance(TRANSFORMATION);
+	}
+
+	/**
+	 * Gives the JCE cipher back to the pool of this thread
+	 */
+	private void release() {
+		if (cipher != null) {
+			POOL.set(cipher);
+			cipher = null;
+		}
+	}
+
+	private static AlgorithmParameterSpec parameters(byte[] iv) {
+		try {
+			return GcmSpec.create(iv);
+		} catch (NoClassDefFoundError e) {
+			// GCMParameterSpec was added on API 19, older providers take the
+			// IV alone and use a 128 bits tag
+			return new IvParameterSpec(iv);
+		}
+	}
+
+	/**
+	 * Keeps the reference to GCMParameterSpec out of AesGcmCipher, so it's
+	 * only resolved when it's available
+	 */
+	private static class GcmSpec {
+
+		static AlgorithmParameterSpec create(byte[] iv) {
+			return new GCMParameterSpec(TAG_SIZE, iv);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package cl.betomaluje.android.uberlib.security;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Common interface for the ciphers that work over bytes, so an implementation
+ * can be swapped for another one without changing the call sites. It follows
+ * the semantics of {@link javax.crypto.Cipher}: call {@link #init(int)}, then
+ * {@link #update(byte[], int, int, byte[], int)} as many times as needed and
+ * finally {@link #doFinal(byte[], int)}. Implementations are not thread safe.
+ *
+ * @author Alberto Maluje
+ */
+public interface ByteCipher {
+
+	/**
+	 * Prepares the cipher for a new message
+	 *
+	 * @param mode
+	 *            : {@link javax.crypto.Cipher#ENCRYPT_MODE} or
+	 *            {@link javax.crypto.Cipher#DECRYPT_MODE}
+	 * @throws GeneralSecurityException
+	 */
+	void init(int mode) throws GeneralSecurityException;
+
+	/**
+	 * Gets the size the output array needs for the next update or doFinal
+	 * call
+	 *
+	 * @param inputLen
+	 *            : the number of bytes to be processed
+	 * @return the maximum number of bytes written
+	 */
+	int getOutputSize(int inputLen);
+
+	/**
+	 * Processes the next part of the message
+	 *
+	 * @param input
+	 *            : the bytes to process
+	 * @param inputOffset
+	 *            : the first index to read from input
+	 * @param inputLen
+	 *            : the number of bytes to process
+	 * @param output
+	 *            : where the result is written
+	 * @param outputOffset
+	 *            : the first index to write in output
+	 * @return the number of bytes written
+	 * @throws GeneralSecurityException
+	 */
+	int update(byte[] input, int inputOffset, int inputLen, byte[] output,
+			int outputOffset) throws GeneralSecurityException;
+
+	/**
+	 * Finishes the message. The cipher must be initialised again before being
+	 * used for the next one.
+	 *
+	 * @param output
+	 *            : where the result is written
+	 * @param outputOffset
+	 *            : the first index to write in output
+	 * @return the number of bytes written
+	 * @throws GeneralSecurityException
+	 *             if decrypting and the message was tampered with
+	 */
+	int doFinal(byte[] output, int outputOffset)
+			throws GeneralSecurityException;
+
+	/**
+	 * Processes a whole message at once, it's the same as calling init, update
+	 * and doFinal
+	 *
+	 * @param mode
+	 *            : {@link javax.crypto.Cipher#ENCRYPT_MODE} or
+	 *            {@link javax.crypto.Cipher#DECRYPT_MODE}
+	 * @param input
+	 *            : the message
+	 * @return the result
+	 * @throws GeneralSecurityException
+	 */
+	byte[] doFinal(int mode, byte[] input) throws GeneralSecurityException;
+}
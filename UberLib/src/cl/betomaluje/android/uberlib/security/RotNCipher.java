@@ -0,0 +1,84 @@
+package cl.betomaluje.android.uberlib.security;
+
+import javax.crypto.Cipher;
+
+/**
+ * {@link TextCipher} and {@link ByteCipher} backed by {@link RotNEncryption}.
+ * Text is rotated exactly as {@link RotNEncryption#encrpyt(String, int)} does,
+ * while bytes only rotate ASCII letters (see
+ * {@link RotNEncryption#encrypt(java.nio.ByteBuffer, int)}). It's an
+ * obfuscation, not real encryption.
+ *
+ * @author Alberto Maluje
+ */
+public class RotNCipher implements TextCipher, ByteCipher {
+
+	private final int displacement;
+
+	/** Displacement of the current message, negated when decrypting */
+	private int current;
+
+	/**
+	 * @param displacement
+	 *            : the number of places ("N")
+	 */
+	public RotNCipher(int displacement) {
+		this.displacement = displacement;
+		this.current = displacement;
+	}
+
+	@Override
+	public void init(int mode) {
+		if (mode == Cipher.ENCRYPT_MODE)
+			current = displacement;
+		else if (mode == Cipher.DECRYPT_MODE)
+			current = -displacement;
+		else
+			throw new IllegalArgumentException("Invalid mode: " + mode);
+	}
+
+	@Override
+	public int getOutputSize(int inputLen) {
+		return inputLen;
+	}
+
+	@Override
+	public int update(char[] input, int inputOffset, int inputLen,
+			char[] output, int outputOffset) {
+		RotNEncryption.encrypt(input, inputOffset, output, outputOffset,
+				inputLen, current);
+		return inputLen;
+	}
+
+	@Override
+	public int doFinal(char[] output, int outputOffset) {
+		return 0;
+	}
+
+	@Override
+	public String doFinal(int mode, String input) {
+		init(mode);
+		return RotNEncryption.encrpyt(input, current);
+	}
+
+	@Override
+	public int update(byte[] input, int inputOffset, int inputLen,
+			byte[] output, int outputOffset) {
+		RotNEncryption.encrypt(input, inputOffset, output, outputOffset,
+				inputLen, current);
+		return inputLen;
+	}
+
+	@Override
+	public int doFinal(byte[] output, int outputOffset) {
+		return 0;
+	}
+
+	@Override
+	public byte[] doFinal(int mode, byte[] input) {
+		init(mode);
+		byte[] output = new byte[input.length];
+		RotNEncryption.encrypt(input, 0, output, 0, input.length, current);
+		return output;
+	}
+}
@@ -1,10 +1,83 @@
 package cl.betomaluje.android.uberlib.security;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class RotNEncryption {
 
+	/** Default number of characters (or bytes) transformed at once by streams */
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	/** Default minimum length for encryptParallel to split the text */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 256 * 1024;
+
+	/** Default minimum number of characters handed to each parallel task */
+	public static final int DEFAULT_MIN_PARALLEL_CHUNK = 64 * 1024;
+
+	private static final int PROCESSORS = Runtime.getRuntime()
+			.availableProcessors();
+
+	private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/** Shared pool used when the caller doesn't supply one */
+	private static ExecutorService defaultExecutor;
+
+	/** Size of each memory mapped window used by transformFile */
+	private static final long MAP_WINDOW = 32L * 1024 * 1024;
+
+	/** Size of the alphabet we rotate over */
+	private static final int ALPHABET = 26;
+
+	/** Number of characters covered by the precomputed tables */
+	private static final int TABLE_SIZE = 256;
+
+	/**
+	 * One 256-entry rotation table per displacement (0 - 25), so the common
+	 * ASCII/Latin-1 case is a single array lookup
+	 */
+	private static final char[][] ROT_TABLES = new char[ALPHABET][TABLE_SIZE];
+
+	/**
+	 * One table per displacement for the byte engine, indexed by the unsigned
+	 * byte, so the loops over bytes are a lookup per byte without a branch
+	 * (a branch on the sign is mispredicted all the time on UTF-8 text). Only
+	 * ASCII is rotated, so multi-byte UTF-8 sequences (all bytes >= 0x80) map
+	 * to themselves
+	 */
+	private static final byte[][] BYTE_TABLES = new byte[ALPHABET][TABLE_SIZE];
+
+	static {
+		for (int n = 0; n < ALPHABET; n++) {
+			char[] table = ROT_TABLES[n];
+			byte[] byteTable = BYTE_TABLES[n];
+			for (int c = 0; c < TABLE_SIZE; c++) {
+				table[c] = rotN((char) c, n);
+				byteTable[c] = c < 128 ? (byte) table[c] : (byte) c;
+			}
+		}
+	}
+
 	/**
 	 * Performs a Rot-N encryption (rotate by "N" places)
-	 * 
+	 *
 	 * @param text
 	 *            : the target text to encrypt
 	 * @param displacement
@@ -12,11 +85,442 @@ public class RotNEncryption {
 	 * @return
 	 */
 	public static String encrpyt(String text, int displacement) {
-		StringBuffer buffer = new StringBuffer();
-		for (char next : text.toCharArray()) {
-			buffer.append(rotN(next, displacement));
+		char[] chars = text.toCharArray();
+		encrypt(chars, 0, chars, 0, chars.length, displacement);
+		return new String(chars);
+	}
+
+	/**
+	 * Performs a Rot-N encryption (rotate by "N" places), splitting texts
+	 * longer than {@link #getParallelThreshold()} among the processors of the
+	 * device
+	 *
+	 * @param text
+	 *            : the target text to encrypt
+	 * @param displacement
+	 *            : the number of places ("N")
+	 * @return the encrypted text
+	 */
+	public static String encryptParallel(CharSequence text, int displacement) {
+		final int len = text.length();
+		if (len < parallelThreshold || PROCESSORS < 2)
+			return encryptSequential(text, displacement);
+
+		return encryptParallel(text, displacement, getDefaultExecutor());
+	}
+
+	/**
+	 * Performs a Rot-N encryption (rotate by "N" places), splitting texts
+	 * longer than {@link #getParallelThreshold()} into tasks for the given
+	 * executor. The calling thread encrypts one of the chunks itself. The
+	 * number of chunks follows the size of the pool if the executor is a
+	 * {@link ThreadPoolExecutor}, or the processors of the device otherwise.
+	 *
+	 * @param text
+	 *            : the target text to encrypt
+	 * @param displacement
+	 *            : the number of places ("N")
+	 * @param executor
+	 *            : the executor that runs the tasks
+	 * @return the encrypted text
+	 */
+	public static String encryptParallel(CharSequence text, int displacement,
+			ExecutorService executor) {
+		final int parallelism = executor instanceof ThreadPoolExecutor
+				? ((ThreadPoolExecutor) executor).getMaximumPoolSize()
+				: PROCESSORS;
+		return encryptParallel(text, displacement, executor, parallelism,
+				DEFAULT_MIN_PARALLEL_CHUNK);
+	}
+
+	/**
+	 * Performs a Rot-N encryption (rotate by "N" places), splitting texts
+	 * longer than {@link #getParallelThreshold()} into up to two chunks per
+	 * thread of the executor, none shorter than minChunk. The calling thread
+	 * encrypts one of the chunks itself.
+	 *
+	 * @param text
+	 *            : the target text to encrypt
+	 * @param displacement
+	 *            : the number of places ("N")
+	 * @param executor
+	 *            : the executor that runs the tasks
+	 * @param parallelism
+	 *            : the number of threads the executor runs the tasks on
+	 * @param minChunk
+	 *            : the minimum number of characters handed to each task
+	 * @return the encrypted text
+	 */
+	public static String encryptParallel(final CharSequence text,
+			final int displacement, ExecutorService executor,
+			int parallelism, int minChunk) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException(
+					"Parallelism must be positive: " + parallelism);
+		if (minChunk < 1)
+			throw new IllegalArgumentException(
+					"Minimum chunk must be positive: " + minChunk);
+
+		final int len = text.length();
+		if (len < parallelThreshold)
+			return encryptSequential(text, displacement);
+
+		int chunks = Math.max(1, Math.min(parallelism * 2, len / minChunk));
+		final int chunkSize = Math.max(1, (len + chunks - 1) / chunks);
+		// rounding the size up can leave fewer chunks than asked for (9
+		// characters in 4 chunks are 3 chunks of 3)
+		chunks = Math.max(1, (len + chunkSize - 1) / chunkSize);
+		final char[] result = new char[len];
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(chunks - 1);
+		for (int i = 0; i < chunks - 1; i++) {
+			final int start = i * chunkSize;
+			final int end = Math.min(len, start + chunkSize);
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					encryptRange(text, start, end, result, displacement);
+					return null;
+				}
+			}));
+		}
+
+		// the last chunk runs on the calling thread
+		encryptRange(text, (chunks - 1) * chunkSize, len, result, displacement);
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (InterruptedException e) {
+				// don't leave the result half done: cancel what's left and
+				// finish the remaining chunks here
+				Thread.currentThread().interrupt();
+				for (int j = i; j < futures.size(); j++) {
+					futures.get(j).cancel(false);
+					encryptRange(text, j * chunkSize,
+							Math.min(len, (j + 1) * chunkSize), result,
+							displacement);
+				}
+				break;
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Rot-N task failed", e.getCause());
+			}
+		}
+
+		return new String(result);
+	}
+
+	/**
+	 * Gets the minimum length for encryptParallel to split the text
+	 *
+	 * @return the threshold, in characters
+	 */
+	public static int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Sets the minimum length for encryptParallel to split the text. Shorter
+	 * texts are encrypted on the calling thread.
+	 *
+	 * @param threshold
+	 *            : the threshold, in characters
+	 */
+	public static void setParallelThreshold(int threshold) {
+		if (threshold < 0)
+			throw new IllegalArgumentException("Threshold must not be negative: "
+					+ threshold);
+
+		parallelThreshold = threshold;
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			defaultExecutor = Executors.newFixedThreadPool(PROCESSORS,
+					new ThreadFactory() {
+
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "RotN-"
+									+ count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return defaultExecutor;
+	}
+
+	private static String encryptSequential(CharSequence text, int displacement) {
+		final int len = text.length();
+		char[] result = new char[len];
+		encryptRange(text, 0, len, result, displacement);
+		return new String(result);
+	}
+
+	/**
+	 * Encrypts text[start, end) into the same range of dst
+	 */
+	private static void encryptRange(CharSequence text, int start, int end,
+			char[] dst, int displacement) {
+		if (text instanceof String) {
+			((String) text).getChars(start, end, dst, start);
+		} else if (text instanceof StringBuilder) {
+			((StringBuilder) text).getChars(start, end, dst, start);
+		} else if (text instanceof StringBuffer) {
+			((StringBuffer) text).getChars(start, end, dst, start);
+		} else {
+			for (int i = start; i < end; i++)
+				dst[i] = text.charAt(i);
+		}
+		encrypt(dst, start, dst, start, end - start, displacement);
+	}
+
+	/**
+	 * Performs a Rot-N encryption over a char array without allocating. The
+	 * source and destination can be the same array (even the same region) to
+	 * transform in place.
+	 *
+	 * @param src
+	 *            : the characters to encrypt
+	 * @param srcOff
+	 *            : the first index to read from src
+	 * @param dst
+	 *            : where the encrypted characters are written
+	 * @param dstOff
+	 *            : the first index to write in dst
+	 * @param len
+	 *            : the number of characters to encrypt
+	 * @param n
+	 *            : the number of places ("N"), negative values rotate
+	 *            backwards
+	 */
+	public static void encrypt(char[] src, int srcOff, char[] dst, int dstOff,
+			int len, int n) {
+		if (srcOff < 0 || dstOff < 0 || len < 0 || srcOff + len > src.length
+				|| dstOff + len > dst.length)
+			throw new ArrayIndexOutOfBoundsException("Invalid range: srcOff="
+					+ srcOff + ", dstOff=" + dstOff + ", len=" + len);
+
+		final int displacement = normalize(n);
+		final char[] table = ROT_TABLES[displacement];
+
+		for (int i = 0; i < len; i++) {
+			char next = src[srcOff + i];
+			dst[dstOff + i] = next < TABLE_SIZE ? table[next] : rotN(next,
+					displacement);
+		}
+	}
+
+	/**
+	 * Performs a Rot-N encryption of all the remaining characters of src into
+	 * dst. Both buffers are advanced as with {@link CharBuffer#put(CharBuffer)}
+	 * . If src and dst are the same buffer, the remaining characters are
+	 * encrypted in place and the position is moved to the limit.
+	 *
+	 * @param src
+	 *            : the characters to encrypt
+	 * @param dst
+	 *            : where the encrypted characters are written
+	 * @param n
+	 *            : the number of places ("N"), negative values rotate
+	 *            backwards
+	 */
+	public static void encrypt(CharBuffer src, CharBuffer dst, int n) {
+		final int len = src.remaining();
+
+		if (src == dst) {
+			final int start = src.position();
+			if (src.hasArray()) {
+				char[] array = src.array();
+				int offset = src.arrayOffset() + start;
+				encrypt(array, offset, array, offset, len, n);
+			} else {
+				final int displacement = normalize(n);
+				final char[] table = ROT_TABLES[displacement];
+				for (int i = start, end = start + len; i < end; i++) {
+					char next = src.get(i);
+					src.put(i, next < TABLE_SIZE ? table[next] : rotN(next,
+							displacement));
+				}
+			}
+			src.position(start + len);
+			return;
+		}
+
+		if (dst.remaining() < len)
+			throw new BufferOverflowException();
+
+		if (src.hasArray() && dst.hasArray()) {
+			encrypt(src.array(), src.arrayOffset() + src.position(),
+					dst.array(), dst.arrayOffset() + dst.position(), len, n);
+			src.position(src.position() + len);
+			dst.position(dst.position() + len);
+		} else {
+			final int displacement = normalize(n);
+			final char[] table = ROT_TABLES[displacement];
+			for (int i = 0; i < len; i++) {
+				char next = src.get();
+				dst.put(next < TABLE_SIZE ? table[next] : rotN(next,
+						displacement));
+			}
+		}
+	}
+
+	/**
+	 * Performs a Rot-N encryption of the ASCII letters between the position
+	 * and the limit of the buffer, in place. Any other byte (including every
+	 * byte of a multi-byte UTF-8 sequence) is left untouched, so UTF-8 text
+	 * keeps being valid. Works with heap, direct and memory mapped buffers and
+	 * moves the position to the limit.
+	 *
+	 * @param buffer
+	 *            : the bytes to encrypt
+	 * @param n
+	 *            : the number of places ("N"), negative values rotate
+	 *            backwards
+	 */
+	public static void encrypt(ByteBuffer buffer, int n) {
+		final int start = buffer.position();
+		final int end = buffer.limit();
+
+		if (buffer.hasArray()) {
+			byte[] array = buffer.array();
+			int offset = buffer.arrayOffset();
+			encrypt(array, offset + start, array, offset + start, end - start,
+					n);
+		} else {
+			final byte[] table = BYTE_TABLES[normalize(n)];
+			for (int i = start; i < end; i++) {
+				buffer.put(i, table[buffer.get(i) & 0xff]);
+			}
+		}
+		buffer.position(end);
+	}
+
+	/**
+	 * Performs a Rot-N encryption of the ASCII letters of a byte array without
+	 * allocating. Bytes >= 0x80 are copied untouched. The source and
+	 * destination can be the same array to transform in place.
+	 *
+	 * @param src
+	 *            : the bytes to encrypt
+	 * @param srcOff
+	 *            : the first index to read from src
+	 * @param dst
+	 *            : where the encrypted bytes are written
+	 * @param dstOff
+	 *            : the first index to write in dst
+	 * @param len
+	 *            : the number of bytes to encrypt
+	 * @param n
+	 *            : the number of places ("N"), negative values rotate
+	 *            backwards
+	 */
+	public static void encrypt(byte[] src, int srcOff, byte[] dst, int dstOff,
+			int len, int n) {
+		if (srcOff < 0 || dstOff < 0 || len < 0 || srcOff + len > src.length
+				|| dstOff + len > dst.length)
+			throw new ArrayIndexOutOfBoundsException("Invalid range: srcOff="
+					+ srcOff + ", dstOff=" + dstOff + ", len=" + len);
+
+		final byte[] table = BYTE_TABLES[normalize(n)];
+
+		for (int i = 0; i < len; i++) {
+			dst[dstOff + i] = table[src[srcOff + i] & 0xff];
+		}
+	}
+
+	/**
+	 * Performs a Rot-N encryption of the ASCII letters of a file (see
+	 * {@link #encrypt(ByteBuffer, int)}), memory mapping both files so the
+	 * content is never copied into a String or char[]. If both files are the
+	 * same, the file is transformed in place.
+	 *
+	 * @param in
+	 *            : the file to encrypt
+	 * @param out
+	 *            : the file to write, it's created or truncated
+	 * @param n
+	 *            : the number of places ("N"), negative values rotate
+	 *            backwards
+	 * @throws IOException
+	 */
+	public static void transformFile(File in, File out, int n)
+			throws IOException {
+		if (in.getCanonicalFile().equals(out.getCanonicalFile())) {
+			RandomAccessFile file = new RandomAccessFile(in, "rw");
+			try {
+				FileChannel channel = file.getChannel();
+				final long size = channel.size();
+				for (long offset = 0; offset < size; offset += MAP_WINDOW) {
+					MappedByteBuffer window = channel.map(
+							FileChannel.MapMode.READ_WRITE, offset,
+							Math.min(MAP_WINDOW, size - offset));
+					encrypt(window, n);
+					window.force();
+				}
+			} finally {
+				close(file);
+			}
+			return;
+		}
+
+		FileInputStream input = new FileInputStream(in);
+		RandomAccessFile output = null;
+		try {
+			output = new RandomAccessFile(out, "rw");
+			FileChannel inChannel = input.getChannel();
+			FileChannel outChannel = output.getChannel();
+			final long size = inChannel.size();
+			output.setLength(size);
+
+			final byte[] table = BYTE_TABLES[normalize(n)];
+			// small scratch so both mappings are accessed with bulk copies
+			final byte[] scratch = new byte[DEFAULT_CHUNK_SIZE];
+
+			for (long offset = 0; offset < size; offset += MAP_WINDOW) {
+				final long length = Math.min(MAP_WINDOW, size - offset);
+				MappedByteBuffer src = inChannel.map(
+						FileChannel.MapMode.READ_ONLY, offset, length);
+				MappedByteBuffer dst = outChannel.map(
+						FileChannel.MapMode.READ_WRITE, offset, length);
+
+				while (src.hasRemaining()) {
+					int count = Math.min(scratch.length, src.remaining());
+					src.get(scratch, 0, count);
+					for (int i = 0; i < count; i++)
+						scratch[i] = table[scratch[i] & 0xff];
+					dst.put(scratch, 0, count);
+				}
+				dst.force();
+			}
+		} finally {
+			close(input);
+			close(output);
 		}
-		return buffer.toString();
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable == null)
+			return;
+
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// nothing
+		}
+	}
+
+	/**
+	 * Maps any displacement to its equivalent in the 0 - 25 range
+	 */
+	private static int normalize(int displacement) {
+		int n = displacement % ALPHABET;
+		return n < 0 ? n + ALPHABET : n;
 	}
 
 	private static char rotN(char letter, int displacement) {
@@ -0,0 +1,152 @@
+package cl.betomaluje.android.uberlib.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * InputStream that performs a Rot-N encryption (rotate by "N" places) of the
+ * text read from another stream. The bytes are decoded with the given charset
+ * (UTF-8 by default), encrypted in chunks of a fixed size and encoded back, so
+ * the result is the same as using {@link RotNEncryption#encrpyt(String, int)}
+ * on the whole text, but with constant memory.
+ *
+ * @author Alberto Maluje
+ */
+public class RotNInputStream extends InputStream {
+
+	private final Reader reader;
+
+	private final int displacement;
+
+	private final CharsetEncoder encoder;
+
+	/** Encrypted characters waiting to be encoded */
+	private final CharBuffer chars;
+
+	/** Encoded bytes waiting to be read */
+	private final ByteBuffer bytes;
+
+	/** True when the underlying stream is exhausted */
+	private boolean endOfInput = false;
+
+	/** True when every byte has been encoded */
+	private boolean finished = false;
+
+	/**
+	 * @param in
+	 *            : the stream to read the plain text from, in UTF-8
+	 * @param displacement
+	 *            : the number of places ("N")
+	 */
+	public RotNInputStream(InputStream in, int displacement) {
+		this(in, displacement, Charset.forName("UTF-8"),
+				RotNEncryption.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param in
+	 *            : the stream to read the plain text from
+	 * @param displacement
+	 *            : the number of places ("N")
+	 * @param charset
+	 *            : the charset of the text
+	 * @param chunkSize
+	 *            : the number of characters transformed at once
+	 */
+	public RotNInputStream(InputStream in, int displacement, Charset charset,
+			int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive: "
+					+ chunkSize);
+
+		this.reader = new InputStreamReader(in, charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE));
+		this.displacement = displacement;
+		this.encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		// one extra char to hold a surrogate split between two chunks
+		this.chars = CharBuffer.allocate(chunkSize + 1);
+		this.chars.limit(0);
+		this.bytes = ByteBuffer.allocate((int) Math.ceil((chunkSize + 1)
+				* encoder.maxBytesPerChar()));
+		this.bytes.limit(0);
+	}
+
+	/**
+	 * Makes sure there are encoded bytes ready to be read
+	 *
+	 * @return false if the end of the stream was reached
+	 */
+	private boolean fill() throws IOException {
+		while (!bytes.hasRemaining()) {
+			if (finished)
+				return false;
+
+			bytes.clear();
+
+			if (!endOfInput) {
+				chars.compact();
+				int start = chars.position();
+				int read = reader.read(chars.array(), start, chars.remaining());
+				if (read < 0) {
+					endOfInput = true;
+				} else {
+					RotNEncryption.encrypt(chars.array(), start, chars.array(),
+							start, read, displacement);
+					chars.position(start + read);
+				}
+				chars.flip();
+			}
+
+			encoder.encode(chars, bytes, endOfInput);
+			if (endOfInput) {
+				encoder.flush(bytes);
+				finished = true;
+			}
+
+			bytes.flip();
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill())
+			return -1;
+
+		return bytes.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+
+		if (!fill())
+			return -1;
+
+		int n = Math.min(len, bytes.remaining());
+		bytes.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return bytes.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,170 @@
+package cl.betomaluje.android.uberlib.security;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * OutputStream that performs a Rot-N encryption (rotate by "N" places) of the
+ * text before writing it to another stream. The bytes are decoded with the
+ * given charset (UTF-8 by default), encrypted in chunks of a fixed size and
+ * encoded back, so the result is the same as using
+ * {@link RotNEncryption#encrpyt(String, int)} on the whole text, but with
+ * constant memory. Bytes of an incomplete character are kept until the rest of
+ * it is written.
+ *
+ * @author Alberto Maluje
+ */
+public class RotNOutputStream extends OutputStream {
+
+	private final Writer writer;
+
+	private final int displacement;
+
+	private final CharsetDecoder decoder;
+
+	/** Written bytes waiting to be decoded */
+	private final ByteBuffer bytes;
+
+	/** Decoded characters waiting to be encrypted */
+	private final CharBuffer chars;
+
+	private boolean closed = false;
+
+	/**
+	 * @param out
+	 *            : the stream to write the encrypted text to, in UTF-8
+	 * @param displacement
+	 *            : the number of places ("N")
+	 */
+	public RotNOutputStream(OutputStream out, int displacement) {
+		this(out, displacement, Charset.forName("UTF-8"),
+				RotNEncryption.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param out
+	 *            : the stream to write the encrypted text to
+	 * @param displacement
+	 *            : the number of places ("N")
+	 * @param charset
+	 *            : the charset of the text
+	 * @param chunkSize
+	 *            : the number of bytes transformed at once
+	 */
+	public RotNOutputStream(OutputStream out, int displacement,
+			Charset charset, int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive: "
+					+ chunkSize);
+
+		this.writer = new OutputStreamWriter(out, charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE));
+		this.displacement = displacement;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		// room for at least one complete multi-byte character
+		this.bytes = ByteBuffer.allocate(Math.max(chunkSize, 8));
+		this.chars = CharBuffer.allocate((int) Math.ceil(bytes.capacity()
+				* decoder.maxCharsPerByte()) + 1);
+	}
+
+	/**
+	 * Decodes, encrypts and writes the pending bytes
+	 *
+	 * @param endOfInput
+	 *            : true if no more bytes will be written
+	 */
+	private void drain(boolean endOfInput) throws IOException {
+		bytes.flip();
+
+		CoderResult result;
+		do {
+			result = decoder.decode(bytes, chars, endOfInput);
+			writeChars();
+		} while (result.isOverflow());
+
+		if (endOfInput) {
+			while (decoder.flush(chars).isOverflow())
+				writeChars();
+			writeChars();
+			decoder.reset();
+		}
+
+		bytes.compact();
+	}
+
+	private void writeChars() throws IOException {
+		int count = chars.position();
+		if (count > 0) {
+			char[] array = chars.array();
+			RotNEncryption.encrypt(array, 0, array, 0, count, displacement);
+			writer.write(array, 0, count);
+			chars.clear();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+
+		if (!bytes.hasRemaining())
+			drain(false);
+
+		bytes.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+
+		while (len > 0) {
+			if (!bytes.hasRemaining())
+				drain(false);
+
+			int n = Math.min(len, bytes.remaining());
+			bytes.put(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Writes every complete character written so far. Bytes of an incomplete
+	 * character stay buffered.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+
+		drain(false);
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+
+		closed = true;
+		try {
+			drain(true);
+		} finally {
+			writer.close();
+		}
+	}
+}
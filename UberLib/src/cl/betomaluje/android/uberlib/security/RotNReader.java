@@ -0,0 +1,137 @@
+package cl.betomaluje.android.uberlib.security;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader that performs a Rot-N encryption (rotate by "N" places) of the
+ * characters read from another reader. The text is transformed in chunks of a
+ * fixed size, so any amount of text can be read with constant memory.
+ *
+ * @author Alberto Maluje
+ */
+public class RotNReader extends FilterReader {
+
+	private final int displacement;
+
+	private final char[] chunk;
+
+	/** Next character of the chunk to be returned */
+	private int position = 0;
+
+	/** Number of valid characters in the chunk */
+	private int count = 0;
+
+	/**
+	 * @param in
+	 *            : the reader to read the plain text from
+	 * @param displacement
+	 *            : the number of places ("N")
+	 */
+	public RotNReader(Reader in, int displacement) {
+		this(in, displacement, RotNEncryption.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param in
+	 *            : the reader to read the plain text from
+	 * @param displacement
+	 *            : the number of places ("N")
+	 * @param chunkSize
+	 *            : the number of characters transformed at once
+	 */
+	public RotNReader(Reader in, int displacement, int chunkSize) {
+		super(in);
+
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive: "
+					+ chunkSize);
+
+		this.displacement = displacement;
+		this.chunk = new char[chunkSize];
+	}
+
+	/**
+	 * Reads and encrypts the next chunk from the underlying reader
+	 *
+	 * @return false if the end of the stream was reached
+	 */
+	private boolean fill() throws IOException {
+		int read = in.read(chunk, 0, chunk.length);
+		if (read <= 0)
+			return false;
+
+		RotNEncryption.encrypt(chunk, 0, chunk, 0, read, displacement);
+		position = 0;
+		count = read;
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		synchronized (lock) {
+			if (position >= count && !fill())
+				return -1;
+
+			return chunk[position++];
+		}
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		synchronized (lock) {
+			if (len == 0)
+				return 0;
+
+			if (position >= count && !fill())
+				return -1;
+
+			int n = Math.min(len, count - position);
+			System.arraycopy(chunk, position, cbuf, off, n);
+			position += n;
+			return n;
+		}
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if (n < 0L)
+			throw new IllegalArgumentException("Skip value is negative");
+
+		synchronized (lock) {
+			long skipped = 0;
+			while (skipped < n) {
+				if (position >= count && !fill())
+					break;
+
+				int step = (int) Math.min(n - skipped, count - position);
+				position += step;
+				skipped += step;
+			}
+			return skipped;
+		}
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+		synchronized (lock) {
+			return position < count || in.ready();
+		}
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+		throw new IOException("mark() not supported");
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("reset() not supported");
+	}
+}
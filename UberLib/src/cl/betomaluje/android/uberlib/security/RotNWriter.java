@@ -0,0 +1,127 @@
+package cl.betomaluje.android.uberlib.security;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer that performs a Rot-N encryption (rotate by "N" places) of the
+ * characters before writing them to another writer. The text is buffered and
+ * transformed in chunks of a fixed size, so any amount of text can be written
+ * with constant memory. The arrays given by the caller are never modified.
+ *
+ * @author Alberto Maluje
+ */
+public class RotNWriter extends FilterWriter {
+
+	private final int displacement;
+
+	private final char[] chunk;
+
+	/** Number of encrypted characters waiting in the chunk */
+	private int count = 0;
+
+	/**
+	 * @param out
+	 *            : the writer to write the encrypted text to
+	 * @param displacement
+	 *            : the number of places ("N")
+	 */
+	public RotNWriter(Writer out, int displacement) {
+		this(out, displacement, RotNEncryption.DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param out
+	 *            : the writer to write the encrypted text to
+	 * @param displacement
+	 *            : the number of places ("N")
+	 * @param chunkSize
+	 *            : the number of characters transformed at once
+	 */
+	public RotNWriter(Writer out, int displacement, int chunkSize) {
+		super(out);
+
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive: "
+					+ chunkSize);
+
+		this.displacement = displacement;
+		this.chunk = new char[chunkSize];
+	}
+
+	/**
+	 * Writes the pending encrypted characters to the underlying writer
+	 */
+	private void flushChunk() throws IOException {
+		if (count > 0) {
+			out.write(chunk, 0, count);
+			count = 0;
+		}
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		synchronized (lock) {
+			if (count == chunk.length)
+				flushChunk();
+
+			chunk[count] = (char) c;
+			RotNEncryption.encrypt(chunk, count, chunk, count, 1, displacement);
+			count++;
+		}
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		synchronized (lock) {
+			while (len > 0) {
+				if (count == chunk.length)
+					flushChunk();
+
+				int n = Math.min(len, chunk.length - count);
+				RotNEncryption.encrypt(cbuf, off, chunk, count, n, displacement);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		synchronized (lock) {
+			while (len > 0) {
+				if (count == chunk.length)
+					flushChunk();
+
+				int n = Math.min(len, chunk.length - count);
+				str.getChars(off, off + n, chunk, count);
+				RotNEncryption.encrypt(chunk, count, chunk, count, n,
+						displacement);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		synchronized (lock) {
+			flushChunk();
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (lock) {
+			try {
+				flushChunk();
+			} finally {
+				out.close();
+			}
+		}
+	}
+}
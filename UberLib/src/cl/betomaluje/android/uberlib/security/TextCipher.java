@@ -0,0 +1,63 @@
+package cl.betomaluje.android.uberlib.security;
+
+/**
+ * Common interface for the ciphers that work over text, with the same
+ * init/update/doFinal semantics as {@link ByteCipher}. Implementations are not
+ * thread safe.
+ *
+ * @author Alberto Maluje
+ */
+public interface TextCipher {
+
+	/**
+	 * Prepares the cipher for a new text
+	 *
+	 * @param mode
+	 *            : {@link javax.crypto.Cipher#ENCRYPT_MODE} or
+	 *            {@link javax.crypto.Cipher#DECRYPT_MODE}
+	 */
+	void init(int mode);
+
+	/**
+	 * Processes the next part of the text
+	 *
+	 * @param input
+	 *            : the characters to process
+	 * @param inputOffset
+	 *            : the first index to read from input
+	 * @param inputLen
+	 *            : the number of characters to process
+	 * @param output
+	 *            : where the result is written
+	 * @param outputOffset
+	 *            : the first index to write in output
+	 * @return the number of characters written
+	 */
+	int update(char[] input, int inputOffset, int inputLen, char[] output,
+			int outputOffset);
+
+	/**
+	 * Finishes the text. The cipher must be initialised again before being
+	 * used for the next one.
+	 *
+	 * @param output
+	 *            : where the result is written
+	 * @param outputOffset
+	 *            : the first index to write in output
+	 * @return the number of characters written
+	 */
+	int doFinal(char[] output, int outputOffset);
+
+	/**
+	 * Processes a whole text at once, it's the same as calling init, update
+	 * and doFinal
+	 *
+	 * @param mode
+	 *            : {@link javax.crypto.Cipher#ENCRYPT_MODE} or
+	 *            {@link javax.crypto.Cipher#DECRYPT_MODE}
+	 * @param input
+	 *            : the text
+	 * @return the result
+	 */
+	String doFinal(int mode, String input);
+}
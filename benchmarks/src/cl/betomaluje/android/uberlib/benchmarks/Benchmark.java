@@ -0,0 +1,41 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+/**
+ * A single measured operation. The runner calls {@link #setUp()} once and
+ * then {@link #run()} in a loop, so run() should only contain the code being
+ * measured.
+ *
+ * @author Alberto Maluje
+ */
+public abstract class Benchmark {
+
+	private final String name;
+
+	public Benchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Prepares the input of the benchmark, it's not measured
+	 */
+	public void setUp() throws Exception {
+	}
+
+	/**
+	 * Runs the measured operation once
+	 *
+	 * @return any value derived from the result, so the JIT can't remove the
+	 *         operation
+	 */
+	public abstract long run() throws Exception;
+
+	/**
+	 * Releases whatever setUp created, it's not measured
+	 */
+	public void tearDown() throws Exception {
+	}
+}
@@ -0,0 +1,119 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the benchmarks of the library on a plain JVM and reports the
+ * throughput (ops/s) and the allocation rate (bytes allocated by the
+ * benchmark thread per operation) of each one.
+ *
+ * Usage: java cl.betomaluje.android.uberlib.benchmarks.BenchmarkRunner
+ * [name filter]
+ *
+ * @author Alberto Maluje
+ */
+public class BenchmarkRunner {
+
+	private static final long WARMUP_NANOS = 1000L * 1000 * 1000;
+	private static final long ITERATION_NANOS = 1000L * 1000 * 1000;
+	private static final int ITERATIONS = 5;
+
+	/** Gives the bytes allocated by a thread, null if the JVM can't tell */
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+
+	/** Keeps the results alive so the JIT can't drop the operations */
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		String filter = args.length > 0 ? args[0] : "";
+
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		RotNBenchmarks.register(benchmarks);
+		CipherBenchmarks.register(benchmarks);
+		ShakeBenchmarks.register(benchmarks);
+		MotionBenchmarks.register(benchmarks);
+		GestureBenchmarks.register(benchmarks);
+		DragBenchmarks.register(benchmarks);
+
+		System.out.println(String.format(Locale.US, "%-50s %16s %10s %14s",
+				"Benchmark", "ops/s", "error %", "bytes/op"));
+
+		for (Benchmark benchmark : benchmarks) {
+			if (benchmark.getName().contains(filter))
+				measure(benchmark);
+		}
+
+		if (sink == 42)
+			System.out.println();
+	}
+
+	private static void measure(Benchmark benchmark) throws Exception {
+		benchmark.setUp();
+		try {
+			long deadline = System.nanoTime() + WARMUP_NANOS;
+			while (System.nanoTime() < deadline)
+				sink += benchmark.run();
+
+			double[] throughput = new double[ITERATIONS];
+			long totalOps = 0;
+			long totalBytes = 0;
+
+			for (int i = 0; i < ITERATIONS; i++) {
+				long ops = 0;
+				long bytesBefore = allocatedBytes();
+				long start = System.nanoTime();
+				long now;
+				do {
+					sink += benchmark.run();
+					ops++;
+					now = System.nanoTime();
+				} while (now - start < ITERATION_NANOS);
+				totalBytes += allocatedBytes() - bytesBefore;
+				totalOps += ops;
+				throughput[i] = ops * 1e9 / (now - start);
+			}
+
+			double mean = 0;
+			for (double t : throughput)
+				mean += t;
+			mean /= ITERATIONS;
+
+			double variance = 0;
+			for (double t : throughput)
+				variance += (t - mean) * (t - mean);
+			double error = Math.sqrt(variance / (ITERATIONS - 1)) / mean * 100;
+
+			String bytesPerOp = ALLOCATIONS == null ? "n/a" : String.format(
+					Locale.US, "%.1f", (double) totalBytes / totalOps);
+
+			System.out.println(String.format(Locale.US,
+					"%-50s %16.1f %10.1f %14s", benchmark.getName(), mean,
+					error, bytesPerOp));
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	/**
+	 * Gets the bytes allocated so far by this thread (0 if the JVM can't tell)
+	 */
+	private static long allocatedBytes() {
+		if (ALLOCATIONS == null)
+			return 0;
+
+		return ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread()
+				.getId());
+	}
+
+	private static com.sun.management.ThreadMXBean allocationBean() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return (com.sun.management.ThreadMXBean) bean;
+
+		return null;
+	}
+}
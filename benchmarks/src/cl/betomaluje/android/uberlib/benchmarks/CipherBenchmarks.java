@@ -0,0 +1,74 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+
+import cl.betomaluje.android.uberlib.security.AesGcmCipher;
+import cl.betomaluje.android.uberlib.security.ByteCipher;
+import cl.betomaluje.android.uberlib.security.RotNCipher;
+
+/**
+ * Throughput and allocations per MB of the {@link ByteCipher}
+ * implementations, streaming through a reused buffer
+ *
+ * @author Alberto Maluje
+ */
+public class CipherBenchmarks {
+
+	private static final int MESSAGE_SIZE = 1024 * 1024;
+
+	private static final int CHUNK_SIZE = 8192;
+
+	public static void register(List<Benchmark> benchmarks) {
+		benchmarks.add(new CipherBenchmark("Cipher.RotN encrypt 1MB") {
+
+			@Override
+			ByteCipher createCipher() {
+				return new RotNCipher(13);
+			}
+		});
+
+		benchmarks.add(new CipherBenchmark("Cipher.AES-GCM encrypt 1MB") {
+
+			@Override
+			ByteCipher createCipher() throws Exception {
+				return new AesGcmCipher(AesGcmCipher.generateKey(128));
+			}
+		});
+	}
+
+	private static abstract class CipherBenchmark extends Benchmark {
+
+		private ByteCipher cipher;
+		private byte[] message;
+		private byte[] output;
+
+		CipherBenchmark(String name) {
+			super(name);
+		}
+
+		abstract ByteCipher createCipher() throws Exception;
+
+		@Override
+		public void setUp() throws Exception {
+			cipher = createCipher();
+			message = new byte[MESSAGE_SIZE];
+			new Random(MESSAGE_SIZE).nextBytes(message);
+			output = new byte[CHUNK_SIZE + 64];
+		}
+
+		@Override
+		public long run() throws Exception {
+			long written = 0;
+			cipher.init(Cipher.ENCRYPT_MODE);
+			for (int offset = 0; offset < MESSAGE_SIZE; offset += CHUNK_SIZE) {
+				written += cipher.update(message, offset, CHUNK_SIZE, output,
+						0);
+			}
+			written += cipher.doFinal(output, 0);
+			return written;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import cl.betomaluje.android.uberlib.core.DropTargetRegistry;
+import cl.betomaluje.android.uberlib.core.SpringSimulation;
+
+/**
+ * Benchmarks of the pure Java parts of DragDropTouchView
+ *
+ * @author Alberto Maluje
+ */
+public class DragBenchmarks {
+
+	/** Pointer positions per operation */
+	private static final int MOVES = 1024;
+
+	/** Drop targets registered, like a grid of icons */
+	private static final int TARGETS = 500;
+
+	/** Largest step of the pointer between moves of a fast drag, in pixels */
+	private static final int FAST_STEP = 20;
+
+	/** Largest step of a slow drag, like a finger looking for its target */
+	private static final int SLOW_STEP = 3;
+
+	private static final int SCREEN_WIDTH = 1080;
+	private static final int SCREEN_HEIGHT = 1920;
+
+	/** Views released per operation */
+	private static final int RELEASES = 64;
+
+	/** A frame at 60Hz, in seconds */
+	private static final float FRAME = 1 / 60f;
+
+	public static void register(List<Benchmark> benchmarks) {
+		benchmarks.add(registryMoves("Drag.DropTargetRegistry moves, "
+				+ TARGETS + " targets", FAST_STEP));
+		benchmarks.add(registryMoves("Drag.DropTargetRegistry slow moves, "
+				+ TARGETS + " targets", SLOW_STEP));
+
+		benchmarks.add(new Benchmark("Drag.linear hit-testing, " + TARGETS
+				+ " targets") {
+
+			private int[] moves;
+			private int[] rects;
+
+			@Override
+			public void setUp() {
+				moves = randomMoves(FAST_STEP);
+				rects = targetRects();
+			}
+
+			/**
+			 * What the apps did before the registry, for comparison
+			 */
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < MOVES * 2; i += 2) {
+					final int x = moves[i], y = moves[i + 1];
+					int found = DropTargetRegistry.NO_TARGET;
+					for (int t = 0; t < rects.length; t += 4) {
+						if (x >= rects[t] && x < rects[t + 2]
+								&& y >= rects[t + 1] && y < rects[t + 3])
+							found = t / 4;
+					}
+					result += found;
+				}
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Drag.SpringSimulation releases, "
+				+ RELEASES + " views") {
+
+			private float[] releases;
+			private SpringSimulation spring;
+
+			@Override
+			public void setUp() {
+				spring = new SpringSimulation();
+
+				// position and velocity of each view when it's released
+				Random random = new Random(RELEASES);
+				releases = new float[RELEASES * 4];
+				for (int i = 0; i < releases.length; i += 4) {
+					releases[i] = random.nextInt(SCREEN_WIDTH) - SCREEN_WIDTH
+							/ 2;
+					releases[i + 1] = random.nextInt(SCREEN_HEIGHT)
+							- SCREEN_HEIGHT / 2;
+					releases[i + 2] = random.nextInt(6000) - 3000;
+					releases[i + 3] = random.nextInt(6000) - 3000;
+				}
+			}
+
+			/**
+			 * Every frame of the animations until the views are at rest
+			 */
+			@Override
+			public long run() {
+				long frames = 0;
+				for (int i = 0; i < releases.length; i += 4) {
+					spring.start(releases[i], releases[i + 1], releases[i + 2],
+							releases[i + 3], 0, 0);
+					while (spring.step(FRAME))
+						frames++;
+				}
+				return frames;
+			}
+		});
+	}
+
+	private static Benchmark registryMoves(String name, final int maxStep) {
+		return new Benchmark(name) {
+
+			private int[] moves;
+			private DropTargetRegistry registry;
+
+			@Override
+			public void setUp() {
+				moves = randomMoves(maxStep);
+				registry = new DropTargetRegistry(SCREEN_WIDTH, SCREEN_HEIGHT);
+				registerTargets(registry);
+			}
+
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < MOVES * 2; i += 2)
+					result += registry.onDragMove(moves[i], moves[i + 1]);
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * A drag across the screen: a random walk of small steps
+	 *
+	 * @param maxStep
+	 *            : the largest step on each axis, in pixels
+	 */
+	private static int[] randomMoves(int maxStep) {
+		Random random = new Random(MOVES);
+		int[] moves = new int[MOVES * 2];
+		int x = SCREEN_WIDTH / 2, y = SCREEN_HEIGHT / 2;
+		for (int i = 0; i < moves.length; i += 2) {
+			x = Math.min(
+					Math.max(x + random.nextInt(maxStep * 2 + 1) - maxStep, 0),
+					SCREEN_WIDTH - 1);
+			y = Math.min(
+					Math.max(y + random.nextInt(maxStep * 2 + 1) - maxStep, 0),
+					SCREEN_HEIGHT - 1);
+			moves[i] = x;
+			moves[i + 1] = y;
+		}
+		return moves;
+	}
+
+	/**
+	 * Random targets, each one as left, top, right, bottom
+	 */
+	private static int[] targetRects() {
+		Random random = new Random(TARGETS);
+		int[] rects = new int[TARGETS * 4];
+		for (int i = 0; i < rects.length; i += 4) {
+			rects[i] = random.nextInt(SCREEN_WIDTH - 100);
+			rects[i + 1] = random.nextInt(SCREEN_HEIGHT - 100);
+			rects[i + 2] = rects[i] + 40 + random.nextInt(60);
+			rects[i + 3] = rects[i + 1] + 40 + random.nextInt(60);
+		}
+		return rects;
+	}
+
+	private static void registerTargets(DropTargetRegistry registry) {
+		int[] rects = targetRects();
+		for (int i = 0; i < rects.length; i += 4)
+			registry.register(i / 4, rects[i], rects[i + 1], rects[i + 2],
+					rects[i + 3]);
+	}
+}
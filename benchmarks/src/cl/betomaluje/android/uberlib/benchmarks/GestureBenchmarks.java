@@ -0,0 +1,304 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import cl.betomaluje.android.uberlib.core.CircleSeekBarMath;
+import cl.betomaluje.android.uberlib.core.FlingClassifier;
+import cl.betomaluje.android.uberlib.core.GestureRecognizer;
+import cl.betomaluje.android.uberlib.core.LatencyHistogram;
+import cl.betomaluje.android.uberlib.core.SwipeClassifier;
+import cl.betomaluje.android.uberlib.core.TouchEventQueue;
+import cl.betomaluje.android.uberlib.core.TouchEventRecord;
+import cl.betomaluje.android.uberlib.core.TouchPredictor;
+
+/**
+ * Benchmarks of the fling classification of SimpleGestureFilter and
+ * MyGestureDetector, and of the CircleSeekBar conversions
+ *
+ * @author Alberto Maluje
+ */
+public class GestureBenchmarks {
+
+	/** Number of flings classified per operation */
+	private static final int FLINGS = 1024;
+
+	/** Number of moves in each swipe fed to the recognizer */
+	static final int MOVES_PER_SWIPE = 12;
+
+	public static void register(List<Benchmark> benchmarks) {
+		benchmarks.add(new Benchmark("Gesture.SimpleGestureFilter onFling") {
+
+			private float[] flings;
+
+			@Override
+			public void setUp() {
+				flings = randomFlings();
+			}
+
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < FLINGS * 6; i += 6) {
+					result += SwipeClassifier.classify(flings[i],
+							flings[i + 1], flings[i + 2], flings[i + 3],
+							flings[i + 4], flings[i + 5], 100, 500, 100);
+				}
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Gesture.MyGestureDetector onFling") {
+
+			private float[] flings;
+
+			@Override
+			public void setUp() {
+				flings = randomFlings();
+			}
+
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < FLINGS * 6; i += 6) {
+					result += SwipeClassifier.classifyHorizontal(flings[i],
+							flings[i + 1], flings[i + 2], flings[i + 3],
+							flings[i + 4], 120, 250, 200);
+				}
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark(
+				"Gesture.GestureRecognizer queued swipes") {
+
+			private int[] actions;
+			private float[] positions;
+			private long[] times;
+			private TouchEventQueue queue;
+			private GestureRecognizer recognizer;
+			private long swipes;
+
+			@Override
+			public void setUp() {
+				int events = FLINGS * (MOVES_PER_SWIPE + 2);
+				actions = new int[events];
+				positions = new float[events * 2];
+				times = new long[events];
+				swipeEvents(actions, positions, times);
+
+				queue = new TouchEventQueue();
+				recognizer = new GestureRecognizer(
+						new GestureRecognizer.SimpleListener() {
+
+							@Override
+							public void onSwipe(int direction, int pointers) {
+								swipes += direction;
+							}
+						});
+			}
+
+			/**
+			 * One operation is FLINGS swipes, copied into the queue and
+			 * drained a swipe at a time like the worker thread would
+			 */
+			@Override
+			public long run() {
+				for (int i = 0; i < actions.length; i++) {
+					queue.add(actions[i], 0, positions[i * 2],
+							positions[i * 2 + 1], times[i]);
+
+					if (actions[i] == TouchEventRecord.ACTION_UP) {
+						TouchEventRecord record;
+						while ((record = queue.peek()) != null) {
+							recognizer.onTouchEvent(record);
+							queue.remove();
+						}
+					}
+				}
+				return swipes;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Gesture.FlingClassifier swipes") {
+
+			private int[] actions;
+			private float[] positions;
+			private long[] times;
+			private FlingClassifier classifier;
+
+			@Override
+			public void setUp() {
+				int events = FLINGS * (MOVES_PER_SWIPE + 2);
+				actions = new int[events];
+				positions = new float[events * 2];
+				times = new long[events];
+				swipeEvents(actions, positions, times);
+
+				classifier = new FlingClassifier(2);
+			}
+
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < actions.length; i++)
+					result += classifier.onTouchEvent(actions[i], 0,
+							positions[i * 2], positions[i * 2 + 1], times[i]);
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Gesture.TouchPredictor drags") {
+
+			private int[] actions;
+			private float[] positions;
+			private long[] times;
+			private TouchPredictor predictor;
+
+			@Override
+			public void setUp() {
+				int events = FLINGS * (MOVES_PER_SWIPE + 2);
+				actions = new int[events];
+				positions = new float[events * 2];
+				times = new long[events];
+				swipeEvents(actions, positions, times);
+
+				predictor = new TouchPredictor();
+			}
+
+			/**
+			 * One operation is FLINGS drags, predicting a frame ahead on
+			 * every move like DragDropTouchView
+			 */
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < actions.length; i++) {
+					if (actions[i] == TouchEventRecord.ACTION_DOWN) {
+						predictor.reset(positions[i * 2], positions[i * 2 + 1],
+								times[i]);
+					} else {
+						predictor.addSample(positions[i * 2],
+								positions[i * 2 + 1], times[i]);
+						result += (int) predictor
+								.getPredictedX(TouchPredictor.DEFAULT_HORIZON);
+					}
+				}
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Gesture.LatencyHistogram record") {
+
+			private long[] latencies;
+			private LatencyHistogram histogram;
+
+			@Override
+			public void setUp() {
+				Random random = new Random(FLINGS);
+				latencies = new long[FLINGS];
+				for (int i = 0; i < FLINGS; i++)
+					latencies[i] = (long) (Math.exp(random.nextGaussian()) * 20000);
+
+				histogram = new LatencyHistogram();
+			}
+
+			/**
+			 * One operation is FLINGS latencies, what the instrumentation
+			 * adds to the touch handlers
+			 */
+			@Override
+			public long run() {
+				for (int i = 0; i < FLINGS; i++)
+					histogram.record(latencies[i]);
+				return histogram.getTotalCount();
+			}
+		});
+
+		benchmarks.add(new Benchmark("CircleSeekBar angle to progress") {
+
+			private float[] angles;
+
+			@Override
+			public void setUp() {
+				Random random = new Random(FLINGS);
+				angles = new float[FLINGS];
+				for (int i = 0; i < FLINGS; i++)
+					angles[i] = (float) ((random.nextDouble() * 2 - 1) * Math.PI);
+			}
+
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < FLINGS; i++) {
+					int radians = CircleSeekBarMath.radiansFromAngle(angles[i]);
+					result += CircleSeekBarMath.progressWithInterval(
+							CircleSeekBarMath.textFromAngle(radians, 0, 360,
+									100), 5);
+				}
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("CircleSeekBar progress to angle") {
+
+			@Override
+			public long run() {
+				long result = 0;
+				for (int i = 0; i < FLINGS; i++) {
+					int radians = (int) CircleSeekBarMath.angleFromText(
+							i % 100, 100) - 90;
+					result += Float.floatToIntBits(CircleSeekBarMath
+							.angleFromRadians(radians));
+				}
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * Random straight swipes as touch events: a down, MOVES_PER_SWIPE moves
+	 * 16ms apart and an up
+	 */
+	static void swipeEvents(int[] actions, float[] positions, long[] times) {
+		Random random = new Random(FLINGS);
+		long time = 0;
+		for (int event = 0; event < actions.length;) {
+			float x = random.nextFloat() * 720;
+			float y = random.nextFloat() * 1280;
+			float stepX = (random.nextFloat() * 2 - 1) * 40;
+			float stepY = (random.nextFloat() * 2 - 1) * 40;
+			time += 1000;
+
+			for (int i = 0; i < MOVES_PER_SWIPE + 2; i++, event++) {
+				if (i == 0)
+					actions[event] = TouchEventRecord.ACTION_DOWN;
+				else if (i == MOVES_PER_SWIPE + 1)
+					actions[event] = TouchEventRecord.ACTION_UP;
+				else
+					actions[event] = TouchEventRecord.ACTION_MOVE;
+
+				positions[event * 2] = x + stepX * i;
+				positions[event * 2 + 1] = y + stepY * i;
+				times[event] = time + 16 * i;
+			}
+		}
+	}
+
+	/**
+	 * Random flings, each one as x1, y1, x2, y2, velocityX, velocityY
+	 */
+	private static float[] randomFlings() {
+		Random random = new Random(FLINGS);
+		float[] flings = new float[FLINGS * 6];
+		for (int i = 0; i < flings.length; i += 6) {
+			flings[i] = random.nextFloat() * 720;
+			flings[i + 1] = random.nextFloat() * 1280;
+			flings[i + 2] = random.nextFloat() * 720;
+			flings[i + 3] = random.nextFloat() * 1280;
+			flings[i + 4] = (random.nextFloat() * 2 - 1) * 4000;
+			flings[i + 5] = (random.nextFloat() * 2 - 1) * 4000;
+		}
+		return flings;
+	}
+}
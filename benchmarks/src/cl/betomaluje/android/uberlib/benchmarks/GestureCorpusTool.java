@@ -0,0 +1,180 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cl.betomaluje.android.uberlib.core.GestureRecognizer;
+import cl.betomaluje.android.uberlib.core.TouchEventRecord;
+
+/**
+ * Replays the recorded gestures of a corpus (benchmarks/corpus/gestures.txt)
+ * through GestureRecognizer and compares what it recognizes with what each
+ * gesture expects. The format is described at the top of the corpus.
+ *
+ * Usage: java cl.betomaluje.android.uberlib.benchmarks.GestureCorpusTool
+ * corpus-file
+ *
+ * It exits with 1 if any gesture isn't recognized as expected.
+ *
+ * @author Alberto Maluje
+ */
+public class GestureCorpusTool {
+
+	/**
+	 * Masked action of the fake ACTION_UP (-13) SimpleGestureFilter
+	 * dispatches after a confirmed single tap, which comes back through it
+	 */
+	private static final int FAKE_ACTION = -13 & 0xFF;
+
+	/** Names of the SwipeClassifier.SWIPE_* constants */
+	private static final String[] DIRECTIONS = { "none", "up", "down", "left",
+			"right", "up-left", "up-right", "down-left", "down-right" };
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: GestureCorpusTool corpus-file");
+			System.exit(1);
+		}
+
+		int gestures = 0, failures = 0;
+		BufferedReader reader = new BufferedReader(new FileReader(args[0]));
+		try {
+			String name = null;
+			GestureRecognizer recognizer = null;
+			final List<String> results = new ArrayList<String>();
+			String expected = null;
+
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+
+				String[] fields = line.split("\\s+");
+				String command = fields[0];
+
+				if (command.equals("gesture")) {
+					name = fields[1];
+					recognizer = newRecognizer(fields, results);
+					results.clear();
+					expected = null;
+				} else if (recognizer == null) {
+					throw new IOException("Line " + number
+							+ ": expected a gesture, got " + line);
+				} else if (command.equals("timeout")) {
+					recognizer.onTimeout(Long.parseLong(fields[1]));
+				} else if (command.equals("expect")) {
+					expected = join(fields, 1);
+				} else if (command.equals("end")) {
+					String actual = results.isEmpty() ? "none" : join(results);
+					gestures++;
+					if (actual.equals(expected)) {
+						System.out.println("ok    " + name);
+					} else {
+						failures++;
+						System.out.println("FAIL  " + name + ": expected "
+								+ expected + ", got " + actual);
+					}
+					recognizer = null;
+				} else {
+					recognizer.onTouchEvent(action(command, number),
+							Integer.parseInt(fields[1]),
+							Float.parseFloat(fields[2]),
+							Float.parseFloat(fields[3]),
+							Long.parseLong(fields[4]));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		System.out.println(gestures + " gestures, " + failures + " failed");
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	private static GestureRecognizer newRecognizer(String[] fields,
+			final List<String> results) {
+		float density = fields.length > 3 ? Float.parseFloat(fields[3]) : 1;
+		GestureRecognizer recognizer = new GestureRecognizer(
+				new GestureRecognizer.Listener() {
+
+					@Override
+					public void onSwipe(int direction, int pointers) {
+						results.add("swipe:" + DIRECTIONS[direction] + ":"
+								+ pointers);
+					}
+
+					@Override
+					public void onSingleTap() {
+						results.add("tap");
+					}
+
+					@Override
+					public void onSingleTapConfirmed() {
+						results.add("confirmed");
+					}
+
+					@Override
+					public void onDoubleTap() {
+						results.add("double-tap");
+					}
+				}, density);
+
+		String mode = fields[2];
+		if (mode.equals("four-way"))
+			recognizer.setSwipeMode(GestureRecognizer.SWIPE_MODE_FOUR_WAY);
+		else if (mode.equals("horizontal"))
+			recognizer.setSwipeMode(GestureRecognizer.SWIPE_MODE_HORIZONTAL);
+		else if (mode.equals("velocity"))
+			recognizer.setSwipeMode(GestureRecognizer.SWIPE_MODE_VELOCITY);
+		else
+			throw new IllegalArgumentException("Unknown swipe mode: " + mode);
+
+		// the thresholds of SimpleGestureFilter, and of MyGestureDetector
+		if (recognizer.getSwipeMode() == GestureRecognizer.SWIPE_MODE_HORIZONTAL) {
+			recognizer.setSwipeMinDistance(120);
+			recognizer.setSwipeMaxDistance(250);
+			recognizer.setSwipeMinVelocity(200);
+		}
+		return recognizer;
+	}
+
+	private static int action(String name, int number) throws IOException {
+		if (name.equals("down"))
+			return TouchEventRecord.ACTION_DOWN;
+		if (name.equals("up"))
+			return TouchEventRecord.ACTION_UP;
+		if (name.equals("move"))
+			return TouchEventRecord.ACTION_MOVE;
+		if (name.equals("cancel"))
+			return TouchEventRecord.ACTION_CANCEL;
+		if (name.equals("pointer-down"))
+			return TouchEventRecord.ACTION_POINTER_DOWN;
+		if (name.equals("pointer-up"))
+			return TouchEventRecord.ACTION_POINTER_UP;
+		if (name.equals("fake"))
+			return FAKE_ACTION;
+
+		throw new IOException("Line " + number + ": unknown action " + name);
+	}
+
+	private static String join(String[] fields, int from) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = from; i < fields.length; i++) {
+			if (i > from)
+				builder.append(' ');
+			builder.append(fields[i]);
+		}
+		return builder.toString();
+	}
+
+	private static String join(List<String> results) {
+		return join(results.toArray(new String[results.size()]), 0);
+	}
+}
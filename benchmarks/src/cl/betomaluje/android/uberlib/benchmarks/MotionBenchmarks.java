@@ -0,0 +1,87 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.util.List;
+
+import cl.betomaluje.android.uberlib.core.DoubleTapMotionDetector;
+import cl.betomaluje.android.uberlib.core.FlipMotionDetector;
+import cl.betomaluje.android.uberlib.core.MotionProcessor;
+import cl.betomaluje.android.uberlib.core.ShakeMotionDetector;
+import cl.betomaluje.android.uberlib.core.TiltMotionDetector;
+
+/**
+ * Benchmarks of the motion gestures sharing one accelerometer stream, on the
+ * same trace as the shake benchmarks
+ *
+ * @author Alberto Maluje
+ */
+public class MotionBenchmarks {
+
+	public static void register(List<Benchmark> benchmarks) {
+		benchmarks.add(new MotionBenchmark("Motion.MotionProcessor shake only") {
+
+			@Override
+			void addDetectors(MotionProcessor processor) {
+				processor.addDetector(new ShakeMotionDetector());
+			}
+		});
+
+		benchmarks.add(new MotionBenchmark(
+				"Motion.MotionProcessor all gestures") {
+
+			@Override
+			void addDetectors(MotionProcessor processor) {
+				processor.addDetector(new ShakeMotionDetector());
+				processor.addDetector(new TiltMotionDetector());
+				processor.addDetector(new FlipMotionDetector());
+				processor.addDetector(new DoubleTapMotionDetector());
+			}
+		});
+	}
+
+	static abstract class MotionBenchmark extends Benchmark {
+
+		private MotionProcessor processor;
+		private float[] trace;
+		private long[] timestamps;
+		private long gestures;
+
+		MotionBenchmark(String name) {
+			super(name);
+		}
+
+		abstract void addDetectors(MotionProcessor processor);
+
+		@Override
+		public void setUp() {
+			final int size = ShakeBenchmarks.TRACE_SIZE;
+			trace = ShakeBenchmarks.accelerometerTrace(size);
+			timestamps = new long[size];
+			for (int i = 0; i < size; i++)
+				timestamps[i] = 1000000000L + i * 1000000000L
+						/ ShakeBenchmarks.SAMPLE_RATE;
+
+			processor = new MotionProcessor();
+			addDetectors(processor);
+			processor.setListener(new MotionProcessor.Listener() {
+
+				@Override
+				public void onMotionGesture(int gesture, long timestampNanos) {
+					gestures++;
+				}
+			});
+		}
+
+		/**
+		 * One operation is a whole trace
+		 */
+		@Override
+		public long run() {
+			processor.reset();
+			final float[] samples = trace;
+			for (int i = 0, s = 0; i < timestamps.length; i++, s += 3)
+				processor.onSample(samples[s], samples[s + 1], samples[s + 2],
+						timestamps[i]);
+			return gestures;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cl.betomaluje.android.uberlib.security.RotNEncryption;
+
+/**
+ * Benchmarks of {@link RotNEncryption} at different input sizes
+ *
+ * @author Alberto Maluje
+ */
+public class RotNBenchmarks {
+
+	private static final int[] SIZES = { 64, 4 * 1024, 256 * 1024,
+			4 * 1024 * 1024 };
+
+	/** Sizes around the parallel crossover */
+	private static final int[] PARALLEL_SIZES = { 16 * 1024, 64 * 1024,
+			256 * 1024, 1024 * 1024, 4 * 1024 * 1024 };
+
+	/** Core counts of the device profiles we care about */
+	private static final int[] THREADS = { 4, 8 };
+
+	/**
+	 * Minimum chunk of the parallel benchmarks, small enough for the
+	 * smallest size to be split in two chunks per thread of every profile
+	 */
+	private static final int PARALLEL_MIN_CHUNK = 1024;
+
+	private static final int DISPLACEMENT = 13;
+
+	public static void register(List<Benchmark> benchmarks) {
+		for (final int size : SIZES) {
+			benchmarks.add(new Benchmark("RotN.encrpyt(String) " + size) {
+
+				private String text;
+
+				@Override
+				public void setUp() {
+					text = randomText(size);
+				}
+
+				@Override
+				public long run() {
+					return RotNEncryption.encrpyt(text, DISPLACEMENT).length();
+				}
+			});
+
+			benchmarks.add(new Benchmark("RotN.encrypt(char[]) " + size) {
+
+				private char[] chars;
+
+				@Override
+				public void setUp() {
+					chars = randomText(size).toCharArray();
+				}
+
+				@Override
+				public long run() {
+					RotNEncryption.encrypt(chars, 0, chars, 0, chars.length,
+							DISPLACEMENT);
+					return chars[0];
+				}
+			});
+
+			// the byte engine, over the UTF-8 of the same text
+			benchmarks.add(new Benchmark("RotN.encrypt(byte[]) " + size) {
+
+				private byte[] bytes;
+
+				@Override
+				public void setUp() {
+					bytes = utf8(randomText(size));
+				}
+
+				@Override
+				public long run() {
+					RotNEncryption.encrypt(bytes, 0, bytes, 0, bytes.length,
+							DISPLACEMENT);
+					return bytes[0];
+				}
+			});
+
+			benchmarks.add(new Benchmark("RotN.encrypt(direct ByteBuffer) "
+					+ size) {
+
+				private ByteBuffer buffer;
+
+				@Override
+				public void setUp() {
+					byte[] bytes = utf8(randomText(size));
+					buffer = ByteBuffer.allocateDirect(bytes.length);
+					buffer.put(bytes);
+				}
+
+				@Override
+				public long run() {
+					buffer.clear();
+					RotNEncryption.encrypt(buffer, DISPLACEMENT);
+					return buffer.get(0);
+				}
+			});
+		}
+
+		for (final int threads : THREADS) {
+			for (final int size : PARALLEL_SIZES) {
+				benchmarks.add(new Benchmark("RotN.encryptParallel " + threads
+						+ " threads " + size) {
+
+					private String text;
+					private ExecutorService executor;
+					private int threshold;
+
+					@Override
+					public void setUp() {
+						text = randomText(size);
+						executor = Executors.newFixedThreadPool(threads);
+						threshold = RotNEncryption.getParallelThreshold();
+						// always split, so the crossover can be seen against
+						// the sequential numbers of the same size
+						RotNEncryption.setParallelThreshold(0);
+					}
+
+					@Override
+					public long run() {
+						return RotNEncryption.encryptParallel(text,
+								DISPLACEMENT, executor, threads,
+								PARALLEL_MIN_CHUNK).length();
+					}
+
+					@Override
+					public void tearDown() {
+						RotNEncryption.setParallelThreshold(threshold);
+						executor.shutdown();
+					}
+				});
+			}
+		}
+	}
+
+	private static byte[] utf8(String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Mostly ASCII text with some Latin-1 and non Latin letters, like the
+	 * JSON we usually obfuscate
+	 */
+	static String randomText(int size) {
+		Random random = new Random(size);
+		char[] chars = new char[size];
+		for (int i = 0; i < size; i++) {
+			int kind = random.nextInt(20);
+			if (kind == 0)
+				chars[i] = (char) (0xC0 + random.nextInt(0x40));
+			else if (kind == 1)
+				chars[i] = (char) (0x3B1 + random.nextInt(25));
+			else
+				chars[i] = (char) (' ' + random.nextInt(95));
+		}
+		return new String(chars);
+	}
+}
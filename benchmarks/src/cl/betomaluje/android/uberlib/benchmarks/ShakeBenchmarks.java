@@ -0,0 +1,132 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import cl.betomaluje.android.uberlib.core.RingBufferShakeDetector;
+import cl.betomaluje.android.uberlib.core.ShakeDetector;
+import cl.betomaluje.android.uberlib.core.SimpleShakeDetector;
+
+/**
+ * Benchmarks of the shake detection math, replaying an accelerometer trace
+ * of a phone at rest, walking and being shaken
+ *
+ * @author Alberto Maluje
+ */
+public class ShakeBenchmarks {
+
+	/** Samples per second of SENSOR_DELAY_UI on most devices */
+	static final int SAMPLE_RATE = 60;
+
+	/** Length of the trace, in samples (one minute) */
+	static final int TRACE_SIZE = SAMPLE_RATE * 60;
+
+	public static void register(List<Benchmark> benchmarks) {
+		benchmarks.add(new ShakeBenchmark("Shake.SimpleShakeDetector trace") {
+
+			@Override
+			ShakeDetector createDetector() {
+				return new SimpleShakeDetector();
+			}
+		});
+
+		benchmarks.add(new ShakeBenchmark(
+				"Shake.RingBufferShakeDetector trace") {
+
+			@Override
+			ShakeDetector createDetector() {
+				return new RingBufferShakeDetector();
+			}
+		});
+
+		benchmarks.add(new ShakeBenchmark(
+				"Shake.RingBufferShakeDetector adaptive trace") {
+
+			@Override
+			ShakeDetector createDetector() {
+				RingBufferShakeDetector detector = new RingBufferShakeDetector();
+				detector.setAdaptive(true);
+				return detector;
+			}
+		});
+	}
+
+	static abstract class ShakeBenchmark extends Benchmark {
+
+		private ShakeDetector detector;
+		private float[] trace;
+		private long[] timestamps;
+		private long shakes;
+
+		ShakeBenchmark(String name) {
+			super(name);
+		}
+
+		abstract ShakeDetector createDetector();
+
+		@Override
+		public void setUp() {
+			trace = accelerometerTrace(TRACE_SIZE);
+			timestamps = new long[TRACE_SIZE];
+			for (int i = 0; i < TRACE_SIZE; i++)
+				timestamps[i] = 1000000000L + i * 1000000000L / SAMPLE_RATE;
+
+			detector = createDetector();
+			detector.setListener(new ShakeDetector.Listener() {
+
+				@Override
+				public void onShake() {
+					shakes++;
+				}
+
+				@Override
+				public void onStopShake() {
+				}
+			});
+		}
+
+		/**
+		 * One operation is a whole trace, the ops/s times TRACE_SIZE gives
+		 * the samples per second
+		 */
+		@Override
+		public long run() {
+			detector.reset();
+			final float[] samples = trace;
+			for (int i = 0, s = 0; i < TRACE_SIZE; i++, s += 3)
+				detector.onSample(samples[s], samples[s + 1], samples[s + 2],
+						timestamps[i]);
+			return shakes;
+		}
+	}
+
+	/**
+	 * Builds an interleaved x, y, z trace: 20s at rest, 20s walking and 20s
+	 * with a shake every 2 seconds
+	 */
+	static float[] accelerometerTrace(int samples) {
+		Random random = new Random(samples);
+		float[] trace = new float[samples * 3];
+		for (int i = 0; i < samples; i++) {
+			double t = (double) i / SAMPLE_RATE;
+			double x = random.nextGaussian() * 0.05;
+			double y = random.nextGaussian() * 0.05;
+			double z = 9.81 + random.nextGaussian() * 0.05;
+
+			int phase = i * 3 / samples;
+			if (phase == 1) {
+				// steps at ~2Hz
+				z += 2.5 * Math.sin(2 * Math.PI * 2 * t);
+				y += 1.0 * Math.sin(2 * Math.PI * 1 * t);
+			} else if (phase == 2 && t % 2 < 0.5) {
+				// side to side shake at ~6Hz
+				x += 15 * Math.sin(2 * Math.PI * 6 * t);
+			}
+
+			trace[i * 3] = (float) x;
+			trace[i * 3 + 1] = (float) y;
+			trace[i * 3 + 2] = (float) z;
+		}
+		return trace;
+	}
+}
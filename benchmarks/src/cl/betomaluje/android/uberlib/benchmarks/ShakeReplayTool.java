@@ -0,0 +1,214 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import cl.betomaluje.android.uberlib.core.RingBufferShakeDetector;
+import cl.betomaluje.android.uberlib.core.SensorTrace;
+import cl.betomaluje.android.uberlib.core.ShakeDetector;
+import cl.betomaluje.android.uberlib.core.ShakeReplay;
+import cl.betomaluje.android.uberlib.core.SimpleShakeDetector;
+
+/**
+ * Replays a trace recorded with SensorTraceRecorder into each shake detector
+ * and prints the detection latency, the false positives and the throughput.
+ *
+ * Usage: java cl.betomaluje.android.uberlib.benchmarks.ShakeReplayTool
+ * trace-file [start:end ...]
+ *
+ * where each start:end is a real shake in the trace, in seconds from its
+ * first sample. With --synthetic trace-file the synthetic trace of the
+ * benchmarks is written to the file first, with its shakes already known,
+ * and it exits with 1 if any detector misses one of them or fires outside
+ * them. The synthetic mode also replays a ride in a vehicle, whose vibration
+ * builds up until it's above the adaptive floor, with a few shakes at the
+ * end: the detectors on the linear acceleration must ride it out too.
+ *
+ * @author Alberto Maluje
+ */
+public class ShakeReplayTool {
+
+	/** Replays of each detector, the first ones warm the JIT up */
+	private static final int RUNS = 5;
+
+	/** Length of the vehicle trace, in seconds */
+	private static final int VEHICLE_SECONDS = 80;
+
+	/** Seconds at rest before the vehicle starts */
+	private static final int VEHICLE_START = 20;
+
+	/** Seconds the vibration takes to reach its full strength */
+	private static final int VEHICLE_RAMP = 20;
+
+	/** Standard deviation of the vibration on each axis, in m/s^2 */
+	private static final double VEHICLE_NOISE = 3;
+
+	/** Seconds of the vehicle trace when each shake starts */
+	private static final int[] VEHICLE_SHAKES = { 50, 60, 70 };
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: ShakeReplayTool trace-file "
+					+ "[start:end ...] | --synthetic trace-file");
+			System.exit(1);
+		}
+
+		SensorTrace trace;
+		long[] shakes;
+
+		final boolean synthetic = args[0].equals("--synthetic");
+		if (synthetic) {
+			trace = syntheticTrace();
+			trace.write(new File(args[1]));
+			shakes = syntheticShakes();
+		} else {
+			trace = SensorTrace.read(new File(args[0]));
+			shakes = parseShakes(trace, args);
+		}
+
+		ShakeReplay replay = new ShakeReplay(trace, shakes);
+
+		RingBufferShakeDetector adaptive = new RingBufferShakeDetector();
+		adaptive.setAdaptive(true);
+
+		boolean failed = false;
+		failed |= report(replay, "SimpleShakeDetector",
+				new SimpleShakeDetector());
+		failed |= report(replay, "RingBufferShakeDetector",
+				new RingBufferShakeDetector());
+		failed |= report(replay, "RingBufferShakeDetector adaptive", adaptive);
+
+		if (synthetic) {
+			ShakeReplay vehicle = new ShakeReplay(vehicleTrace(),
+					vehicleShakes());
+
+			// SimpleShakeDetector works on the raw sum of the axes, it takes
+			// any vibration as shakes and is only shown for comparison
+			report(vehicle, "SimpleShakeDetector in a vehicle (not checked)",
+					new SimpleShakeDetector());
+			failed |= report(vehicle, "RingBufferShakeDetector in a vehicle",
+					new RingBufferShakeDetector());
+			failed |= report(vehicle,
+					"RingBufferShakeDetector adaptive in a vehicle", adaptive);
+		}
+
+		// every shake of the synthetic traces is clear and nothing else is a
+		// shake: all must be detected, and only them
+		if (synthetic && failed)
+			System.exit(1);
+	}
+
+	/**
+	 * @return true if the detector missed any shake or detected one where
+	 *         there is none
+	 */
+	private static boolean report(ShakeReplay replay, String name,
+			ShakeDetector detector) {
+		ShakeReplay.Report report = null;
+		for (int i = 0; i < RUNS; i++)
+			report = replay.run(detector);
+
+		System.out.println(name + ": " + report);
+		return report.getDetected() < report.getExpected()
+				|| report.getFalsePositives() > 0;
+	}
+
+	private static long[] parseShakes(SensorTrace trace, String[] args) {
+		final long origin = trace.size() == 0 ? 0 : trace.getTimestamp(0);
+		long[] shakes = new long[(args.length - 1) * 2];
+		for (int i = 1; i < args.length; i++) {
+			String[] range = args[i].split(":");
+			if (range.length != 2)
+				throw new IllegalArgumentException("Expected start:end, got "
+						+ args[i]);
+
+			shakes[(i - 1) * 2] = origin + seconds(range[0]);
+			shakes[(i - 1) * 2 + 1] = origin + seconds(range[1]);
+		}
+		return shakes;
+	}
+
+	private static long seconds(String value) {
+		return (long) (Double.parseDouble(value) * 1e9);
+	}
+
+	private static SensorTrace syntheticTrace() {
+		final int size = ShakeBenchmarks.TRACE_SIZE;
+		long[] timestamps = new long[size];
+		for (int i = 0; i < size; i++)
+			timestamps[i] = i * 1000000000L / ShakeBenchmarks.SAMPLE_RATE;
+
+		return new SensorTrace(timestamps,
+				ShakeBenchmarks.accelerometerTrace(size));
+	}
+
+	/**
+	 * The synthetic trace shakes for half a second every 2 seconds of its
+	 * last third
+	 */
+	private static long[] syntheticShakes() {
+		final long second = 1000000000L;
+		final long start = ShakeBenchmarks.TRACE_SIZE * 2
+				/ (3 * ShakeBenchmarks.SAMPLE_RATE) * second;
+		final long end = ShakeBenchmarks.TRACE_SIZE
+				/ ShakeBenchmarks.SAMPLE_RATE * second;
+
+		long[] shakes = new long[(int) ((end - start) / (2 * second)) * 2];
+		for (int i = 0; i < shakes.length; i += 2) {
+			shakes[i] = start + i * second;
+			shakes[i + 1] = shakes[i] + second / 2;
+		}
+		return shakes;
+	}
+
+	/**
+	 * A phone at rest in a vehicle that starts moving: the vibration of the
+	 * road builds up over VEHICLE_RAMP seconds, to a level where most of its
+	 * samples are above the floor of the adaptive mode. Then the phone is
+	 * shaken, harder than in the synthetic trace of the benchmarks to stand
+	 * out of the vibration.
+	 */
+	private static SensorTrace vehicleTrace() {
+		final int rate = ShakeBenchmarks.SAMPLE_RATE;
+		final int size = VEHICLE_SECONDS * rate;
+		Random random = new Random(size);
+		long[] timestamps = new long[size];
+		float[] trace = new float[size * 3];
+
+		for (int i = 0; i < size; i++) {
+			timestamps[i] = i * 1000000000L / rate;
+			double t = (double) i / rate;
+
+			double vibration = VEHICLE_NOISE
+					* Math.min(Math.max((t - VEHICLE_START) / VEHICLE_RAMP, 0),
+							1);
+			double x = random.nextGaussian() * vibration;
+			double y = random.nextGaussian() * vibration;
+			double z = 9.81 + random.nextGaussian() * vibration;
+			x += random.nextGaussian() * 0.05;
+			y += random.nextGaussian() * 0.05;
+			z += random.nextGaussian() * 0.05;
+
+			for (int start : VEHICLE_SHAKES) {
+				if (t >= start && t < start + 0.5)
+					x += 20 * Math.sin(2 * Math.PI * 6 * (t - start));
+			}
+
+			trace[i * 3] = (float) x;
+			trace[i * 3 + 1] = (float) y;
+			trace[i * 3 + 2] = (float) z;
+		}
+		return new SensorTrace(timestamps, trace);
+	}
+
+	private static long[] vehicleShakes() {
+		final long second = 1000000000L;
+		long[] shakes = new long[VEHICLE_SHAKES.length * 2];
+		for (int i = 0; i < VEHICLE_SHAKES.length; i++) {
+			shakes[i * 2] = VEHICLE_SHAKES[i] * second;
+			shakes[i * 2 + 1] = shakes[i * 2] + second / 2;
+		}
+		return shakes;
+	}
+}
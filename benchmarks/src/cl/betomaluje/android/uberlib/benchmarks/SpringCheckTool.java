@@ -0,0 +1,184 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.util.Locale;
+
+import cl.betomaluje.android.uberlib.core.SpringSimulation;
+
+/**
+ * Checks the motion of SpringSimulation, the release animation of the drags:
+ * a point released from rest, or flung away from its place, must
+ * <ul>
+ * <li>settle exactly on its rest position, with no velocity, in a bounded
+ * time,</li>
+ * <li>overshoot it if and only if the damping ratio is below 1, and</li>
+ * <li>move the same at 30, 60 and 120 frames per second.</li>
+ * </ul>
+ * A flung point can overshoot even critically damped when it's flung towards
+ * its place, so only releases away from it are checked.
+ *
+ * Usage: java cl.betomaluje.android.uberlib.benchmarks.SpringCheckTool
+ *
+ * It exits with 1 if any check fails.
+ *
+ * @author Alberto Maluje
+ */
+public class SpringCheckTool {
+
+	/** Damping ratios that must bounce past the rest position */
+	private static final float[] UNDERDAMPED = { 0.25f, 0.5f,
+			SpringSimulation.DEFAULT_DAMPING_RATIO };
+
+	/** Damping ratios that must never pass it */
+	private static final float[] OVERDAMPED = { 1, 1.5f, 3 };
+
+	/** Stiffnesses checked with every damping ratio */
+	private static final float[] STIFFNESSES = { 200,
+			SpringSimulation.DEFAULT_STIFFNESS, 3000 };
+
+	/** Velocities the point is released with, away from its place */
+	private static final float[] VELOCITIES = { 0, 1000, 5000 };
+
+	/** Frame rates that must give the same motion, multiples of the first */
+	private static final int[] FRAME_RATES = { 30, 60, 120 };
+
+	private static final float FROM_X = 300, FROM_Y = -120;
+	private static final float TO_X = 40, TO_Y = 25;
+
+	/** Longest a release can take to settle, in seconds */
+	private static final float MAX_SETTLE_SECONDS = 5;
+
+	/**
+	 * Difference allowed between the positions at different frame rates, in
+	 * pixels: far below what can be seen, only float rounding
+	 */
+	private static final float FRAME_RATE_TOLERANCE = 0.01f;
+
+	private static int checks = 0, failures = 0;
+
+	public static void main(String[] args) {
+		for (float stiffness : STIFFNESSES) {
+			for (float ratio : UNDERDAMPED)
+				check(stiffness, ratio, true);
+			for (float ratio : OVERDAMPED)
+				check(stiffness, ratio, false);
+		}
+
+		System.out.println(checks + " springs, " + failures + " failed");
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	private static void check(float stiffness, float ratio, boolean bounces) {
+		for (float velocity : VELOCITIES) {
+			final String name = String.format(Locale.US,
+					"stiffness %.0f, damping ratio %.2f, velocity %.0f",
+					stiffness, ratio, velocity);
+			final String failure = check(stiffness, ratio, velocity, bounces);
+
+			checks++;
+			if (failure == null) {
+				System.out.println("ok    " + name);
+			} else {
+				failures++;
+				System.out.println("FAIL  " + name + ": " + failure);
+			}
+		}
+	}
+
+	/**
+	 * Releases the point at every frame rate
+	 *
+	 * @return why it failed, null if it didn't
+	 */
+	private static String check(float stiffness, float ratio, float velocity,
+			boolean bounces) {
+		// positions at the frames of the slowest rate, for each rate
+		final int frames = (int) (MAX_SETTLE_SECONDS * FRAME_RATES[0]);
+		final float[][] xs = new float[FRAME_RATES.length][frames];
+		final float[][] ys = new float[FRAME_RATES.length][frames];
+		final int[] settled = new int[FRAME_RATES.length];
+
+		for (int r = 0; r < FRAME_RATES.length; r++) {
+			final int rate = FRAME_RATES[r];
+			final int perFrame = rate / FRAME_RATES[0];
+
+			SpringSimulation spring = new SpringSimulation();
+			spring.setSpring(stiffness, ratio);
+			// away from the rest position, along the line to it
+			final double distance = Math.hypot(FROM_X - TO_X, FROM_Y - TO_Y);
+			spring.start(FROM_X, FROM_Y,
+					(float) (velocity * (FROM_X - TO_X) / distance),
+					(float) (velocity * (FROM_Y - TO_Y) / distance), TO_X, TO_Y);
+
+			boolean overshot = false;
+			int frame = 0;
+			boolean running = spring.isRunning();
+			while (running) {
+				if (frame == frames * perFrame)
+					return String.format(Locale.US,
+							"still moving after %.0f s at %d Hz",
+							MAX_SETTLE_SECONDS, rate);
+
+				running = spring.step(1f / rate);
+				frame++;
+
+				// past the rest position: on the other side of it, along
+				// the line it started on
+				if (running
+						&& (spring.getX() - TO_X) * (FROM_X - TO_X)
+								+ (spring.getY() - TO_Y) * (FROM_Y - TO_Y) < 0)
+					overshot = true;
+
+				if (frame % perFrame == 0 && frame / perFrame <= frames) {
+					xs[r][frame / perFrame - 1] = spring.getX();
+					ys[r][frame / perFrame - 1] = spring.getY();
+				}
+			}
+
+			if (spring.getX() != TO_X || spring.getY() != TO_Y
+					|| spring.getVelocityX() != 0
+					|| spring.getVelocityY() != 0)
+				return String.format(Locale.US,
+						"stopped at %f, %f moving at %f, %f at %d Hz",
+						spring.getX(), spring.getY(), spring.getVelocityX(),
+						spring.getVelocityY(), rate);
+
+			if (spring.step(1f / rate) || spring.getX() != TO_X
+					|| spring.getY() != TO_Y)
+				return "moved after settling at " + rate + " Hz";
+
+			if (overshot != bounces)
+				return (bounces ? "didn't overshoot" : "overshot") + " at "
+						+ rate + " Hz";
+
+			// the rest is only noticed on a frame, so at the slower rates
+			// it can be up to a frame later
+			settled[r] = (frame + perFrame - 1) / perFrame;
+			for (int i = settled[r]; i < frames; i++) {
+				xs[r][i] = TO_X;
+				ys[r][i] = TO_Y;
+			}
+		}
+
+		for (int r = 1; r < FRAME_RATES.length; r++) {
+			if (Math.abs(settled[r] - settled[0]) > 1)
+				return String.format(Locale.US,
+						"settled after %d frames at %d Hz, %d at %d Hz",
+						settled[0], FRAME_RATES[0], settled[r],
+						FRAME_RATES[r]);
+
+			// compared while both are still moving
+			final int moving = Math.min(settled[0], settled[r]) - 1;
+			for (int i = 0; i < moving; i++) {
+				if (Math.abs(xs[r][i] - xs[0][i]) > FRAME_RATE_TOLERANCE
+						|| Math.abs(ys[r][i] - ys[0][i]) > FRAME_RATE_TOLERANCE)
+					return String.format(Locale.US,
+							"at %.3f s it's at %f, %f at %d Hz but %f, %f "
+									+ "at %d Hz", (i + 1f) / FRAME_RATES[0],
+							xs[0][i], ys[0][i], FRAME_RATES[0], xs[r][i],
+							ys[r][i], FRAME_RATES[r]);
+			}
+		}
+		return null;
+	}
+}
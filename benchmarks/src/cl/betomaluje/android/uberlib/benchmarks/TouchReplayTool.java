@@ -0,0 +1,115 @@
+package cl.betomaluje.android.uberlib.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import cl.betomaluje.android.uberlib.core.GestureRecognizer;
+import cl.betomaluje.android.uberlib.core.LatencyHistogram;
+import cl.betomaluje.android.uberlib.core.TouchTrace;
+
+/**
+ * Replays a touch trace recorded with TouchInstrumentation through
+ * GestureRecognizer, in each swipe mode, and prints the gestures recognized
+ * and the processing time per event.
+ *
+ * Usage: java cl.betomaluje.android.uberlib.benchmarks.TouchReplayTool
+ * trace-file [max-p99-us]
+ *
+ * With max-p99-us it exits with 1 if the 99th percentile of any mode is
+ * slower, to catch regressions of the input path. With --synthetic trace-file
+ * the synthetic swipes of the benchmarks are written to the file first.
+ *
+ * @author Alberto Maluje
+ */
+public class TouchReplayTool {
+
+	/** Replays of each mode, the first ones warm the JIT up */
+	private static final int RUNS = 5;
+
+	/** Swipes of the synthetic trace */
+	private static final int SYNTHETIC_SWIPES = 1024;
+
+	/** In the order of the GestureRecognizer.SWIPE_MODE_* constants */
+	private static final String[] MODES = { "four-way", "horizontal",
+			"velocity" };
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: TouchReplayTool trace-file "
+					+ "[max-p99-us] | --synthetic trace-file [max-p99-us]");
+			System.exit(1);
+		}
+
+		int next = 0;
+		TouchTrace trace;
+		if (args[0].equals("--synthetic")) {
+			trace = syntheticTrace();
+			trace.write(new File(args[1]));
+			next = 2;
+		} else {
+			trace = TouchTrace.read(new File(args[0]));
+			next = 1;
+		}
+
+		final long budget = args.length > next ? Long
+				.parseLong(args[next]) * 1000 : Long.MAX_VALUE;
+
+		System.out.println(trace.size() + " events, " + trace.getDuration()
+				+ " ms");
+
+		boolean slow = false;
+		for (int mode = 0; mode < MODES.length; mode++) {
+			final int[] gestures = new int[1];
+			GestureRecognizer recognizer = new GestureRecognizer(
+					new GestureRecognizer.SimpleListener() {
+
+						@Override
+						public void onSwipe(int direction, int pointers) {
+							gestures[0]++;
+						}
+
+						@Override
+						public void onSingleTap() {
+							gestures[0]++;
+						}
+
+						@Override
+						public void onDoubleTap() {
+							gestures[0]++;
+						}
+					});
+			recognizer.setSwipeMode(mode);
+
+			LatencyHistogram histogram = new LatencyHistogram();
+			for (int i = 0; i < RUNS; i++) {
+				histogram.reset();
+				gestures[0] = 0;
+				recognizer.cancel();
+				trace.replay(recognizer, histogram);
+			}
+
+			final boolean tooSlow = histogram.getValueAtPercentile(99) > budget;
+			slow |= tooSlow;
+			System.out.println(MODES[mode] + ": " + gestures[0]
+					+ " gestures, " + histogram + (tooSlow ? " SLOW" : ""));
+		}
+
+		if (slow)
+			System.exit(1);
+	}
+
+	private static TouchTrace syntheticTrace() {
+		final int size = SYNTHETIC_SWIPES
+				* (GestureBenchmarks.MOVES_PER_SWIPE + 2);
+		int[] actions = new int[size];
+		float[] positions = new float[size * 2];
+		long[] times = new long[size];
+		GestureBenchmarks.swipeEvents(actions, positions, times);
+
+		byte[] actionBytes = new byte[size];
+		for (int i = 0; i < size; i++)
+			actionBytes[i] = (byte) actions[i];
+
+		return new TouchTrace(times, actionBytes, new byte[size], positions);
+	}
+}